@@ -0,0 +1,129 @@
+/** This is intended as an optimizer for OrthExtDistance based on alternating projections. The extension space of a tree restricted to an orthant is a convex polyhedral subset of the BHV space, which is CAT(0), so the closest pair of trees can be found by projecting the current tree of the first orthant extension onto the second one, then the new tree of the second one onto the first one, and so on. Each projection of a fixed tree onto one orthant extension is computed with ProjectedLBFGSOptimizer.projectOnto.
+
+Alternating projections are fast when the orthant extensions are far apart or meet at a wide angle, but converge slowly when they meet at a narrow angle. To handle both cases the optimizer keeps track of the rate of convergence (the ratio between the decrease of the distance in two consecutive sweeps), and if it stays above slowRate for two sweeps it hands the current point to a fallback optimizer, which finishes the optimization.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+public class AlternatingProjectionOptimizer implements OrthExtOptimizer{
+    private static final double DEFAULT_SLOW_RATE = 0.5; //By default, the sweeps are too slow when the distance decreases less than half as much as in the sweep before.
+
+    private ProjectedLBFGSOptimizer projector; //Used to project a fixed tree onto one orthant extension.
+    private OrthExtOptimizer fallback; //Optimizer used when the convergence is too slow (null to never switch).
+    private double slowRate; //Rate of convergence above which the alternating projections are considered too slow.
+
+    //Constructors
+    //Alternating projections switching to the reduced gradient when the rate of convergence is above 0.5, so a pair of orthant extensions meeting at a narrow angle does not spend all the iterations of the policy in slow sweeps.
+    public AlternatingProjectionOptimizer(){
+        this(new ReducedGradientOptimizer(), DEFAULT_SLOW_RATE);
+    }
+
+    //Alternating projections switching to the fallback optimizer when the rate of convergence is above slowRate. With a null fallback (and slowRate 1), only alternating projections are used.
+    public AlternatingProjectionOptimizer(OrthExtOptimizer fallback, double slowRate){
+        if ((slowRate <= 0) || (slowRate > 1)){
+            throw new IllegalArgumentException("The rate of convergence to switch optimizers should be in (0, 1].");
+        }
+        this.projector = new ProjectedLBFGSOptimizer();
+        this.fallback = fallback;
+        this.slowRate = slowRate;
+    }
+
+    public String getName(){
+        if (fallback == null){
+            return "alternating-projection";
+        }
+        return "alternating-projection/" + fallback.getName();
+    }
+
+    public OrthExtOptimizer getFallback(){
+        return fallback;
+    }
+
+    public double getSlowRate(){
+        return slowRate;
+    }
+
+    public OrthExtSolution optimize(OrthExtPair pair, double[] start1, double[] start2, ConvergencePolicy policy){
+        double[] x1 = start1.clone();
+        double[] x2 = start2.clone();
+
+        int iterCount = 0;
+        StopCriterion stopCriterion = StopCriterion.GRADIENT;
+
+        double currentDistance = pair.evaluate(x1, x2, null, null);
+        double previousDecrease = Double.NaN;
+        int slowSweeps = 0; //Consecutive sweeps with a rate of convergence above slowRate.
+
+        while (true){
+            if (Thread.currentThread().isInterrupted()){
+                stopCriterion = StopCriterion.CANCELLED;
+                break;
+            }
+            if (iterCount >= policy.getMaxIterations()){
+                stopCriterion = StopCriterion.MAX_ITERATIONS;
+                break;
+            }
+            if (pair.getGeodesicCount() >= policy.getMaxGeodesicCalls()){
+                stopCriterion = StopCriterion.MAX_GEODESIC_CALLS;
+                break;
+            }
+
+            //One sweep: the tree of the first orthant extension is projected onto the second one, and then back.
+            OrthExtSolution onto2 = projector.projectOnto(pair, 2, x1, x2, policy);
+            if ((onto2.getStopCriterion() == StopCriterion.PRUNED) || (onto2.getStopCriterion() == StopCriterion.CANCELLED)){
+                return new OrthExtSolution(x1, onto2.getX2(), iterCount + onto2.getIterCount(), onto2.getStopCriterion());
+            }
+            OrthExtSolution onto1 = projector.projectOnto(pair, 1, x1, onto2.getX2(), policy);
+            iterCount += onto2.getIterCount() + onto1.getIterCount();
+            if ((onto1.getStopCriterion() == StopCriterion.PRUNED) || (onto1.getStopCriterion() == StopCriterion.CANCELLED)){
+                return new OrthExtSolution(onto1.getX1(), onto2.getX2(), iterCount, onto1.getStopCriterion());
+            }
+
+            //Largest change in a length during the sweep.
+            double displacement = 0;
+            for (int i = 0; i < x1.length; i++){
+                displacement = Math.max(displacement, Math.abs(onto1.getX1()[i] - x1[i]));
+            }
+            for (int i = 0; i < x2.length; i++){
+                displacement = Math.max(displacement, Math.abs(onto2.getX2()[i] - x2[i]));
+            }
+            x1 = onto1.getX1();
+            x2 = onto2.getX2();
+
+            double previousDistance = currentDistance;
+            currentDistance = pair.evaluate(x1, x2, null, null);
+
+            //If both projections leave the trees where they were, the pair is a fixed point of the alternating projections, and therefore optimal.
+            if (displacement <= policy.getGradientTol()){
+                stopCriterion = StopCriterion.GRADIENT;
+                break;
+            }
+            if (policy.objectiveConverged(previousDistance, currentDistance)){
+                stopCriterion = StopCriterion.OBJECTIVE;
+                break;
+            }
+
+            //Monitoring the rate of convergence.
+            double decrease = previousDistance - currentDistance;
+            if ((fallback != null) && (previousDecrease > 0)){
+                if (decrease >= slowRate*previousDecrease){
+                    slowSweeps++;
+                } else {
+                    slowSweeps = 0;
+                }
+                if (slowSweeps >= 2){
+                    OrthExtSolution rest = fallback.optimize(pair, x1, x2, policy);
+                    return new OrthExtSolution(rest.getX1(), rest.getX2(), iterCount + rest.getIterCount(), rest.getStopCriterion());
+                }
+            }
+            previousDecrease = decrease;
+        }
+
+        return new OrthExtSolution(x1, x2, iterCount, stopCriterion);
+    }
+}
@@ -0,0 +1,125 @@
+/** This is intended as the class holding the tolerances and limits used to decide when the optimization inside OrthExtDistance stops. The same policy is passed from ExtensionSpaceDistance to every pair of orthant extensions, so the precision of a whole run can be chosen in one place.
+
+There are four presets, from the loosest to the tightest: screening (rough values to rank many pairs quickly), fast, standard and certified (the tolerances originally used by the algorithm, with no limits on iterations or geodesics). The constructors of OrthExtDistance and ExtensionSpaceDistance that do not receive a policy use the certified one.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+public class ConvergencePolicy{
+    private String name; //Name of the preset, or "custom".
+    private double gradientTol; //The reduced gradient is considered zero when all its entries are smaller than this in absolute value.
+    private double derivTauTol; //The line search stops when the derivative in the direction of change is smaller than this in absolute value.
+    private double relObjectiveTol; //Relative decrease of the distance in one iteration under which the current point is considered stationary (0 to disable).
+    private double absObjectiveTol; //Absolute decrease of the distance in one iteration under which the current point is considered stationary (0 to disable).
+    private double tauIntervalMin; //Smallest interval allowed in the line search (0 for no limit).
+    private int maxIterations; //Maximum number of iterations of the reduced gradient method.
+    private int maxGeodesicCalls; //Maximum number of geodesics computed for one pair of orthant extensions.
+
+    //Constructor
+    public ConvergencePolicy(String name, double gradientTol, double derivTauTol, double relObjectiveTol, double absObjectiveTol, double tauIntervalMin, int maxIterations, int maxGeodesicCalls){
+        if ((gradientTol < 0) || (derivTauTol < 0) || (relObjectiveTol < 0) || (absObjectiveTol < 0) || (tauIntervalMin < 0)){
+            throw new IllegalArgumentException("The tolerances of a convergence policy cannot be negative.");
+        }
+        if ((maxIterations < 1) || (maxGeodesicCalls < 1)){
+            throw new IllegalArgumentException("The maximum number of iterations and geodesics should be at least 1.");
+        }
+        this.name = name;
+        this.gradientTol = gradientTol;
+        this.derivTauTol = derivTauTol;
+        this.relObjectiveTol = relObjectiveTol;
+        this.absObjectiveTol = absObjectiveTol;
+        this.tauIntervalMin = tauIntervalMin;
+        this.maxIterations = maxIterations;
+        this.maxGeodesicCalls = maxGeodesicCalls;
+    }
+
+    //Presets
+
+    //Loose tolerances and small limits, to rank a large number of pairs. Distances are accurate to about 4 digits.
+    public static ConvergencePolicy screening(){
+        return new ConvergencePolicy("screening", 0.0001, 0.00000001, 0.0001, 0.000001, 0.00000001, 200, 5000);
+    }
+
+    public static ConvergencePolicy fast(){
+        return new ConvergencePolicy("fast", 0.000001, 0.000000000001, 0.00000001, 0.0000000001, 0.000000000001, 2000, 50000);
+    }
+
+    public static ConvergencePolicy standard(){
+        return new ConvergencePolicy("standard", 0.00000001, 0.0000000000001, 0.000000000001, 0.0, 0.00000000000001, 20000, 1000000);
+    }
+
+    //The tolerances originally hard coded in OrthExtDistance, without limits on the number of iterations or geodesics. The only change is the floor on the interval of the line search, which avoids looping on rounding noise.
+    public static ConvergencePolicy certified(){
+        return new ConvergencePolicy("certified", 0.00000001, 0.0000000000000001, 0.0, 0.0, 0.00000000000001, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    //Returns the preset with the given name, or null if there is none.
+    public static ConvergencePolicy fromName(String presetName){
+        if (presetName == null){
+            return null;
+        }
+        switch (presetName.toLowerCase()){
+            case "screening":
+                return screening();
+            case "fast":
+                return fast();
+            case "standard":
+                return standard();
+            case "certified":
+                return certified();
+            default:
+                return null;
+        }
+    }
+
+    //Decides if the change in distance from previousDistance to currentDistance is small enough to consider the current point stationary.
+    public boolean objectiveConverged(double previousDistance, double currentDistance){
+        if ((relObjectiveTol == 0) && (absObjectiveTol == 0)){
+            return false;
+        }
+        double decrease = previousDistance - currentDistance;
+        return (decrease >= 0) && (decrease <= Math.max(absObjectiveTol, relObjectiveTol*Math.abs(currentDistance)));
+    }
+
+    //Getters
+    public String getName(){
+        return name;
+    }
+
+    public double getGradientTol(){
+        return gradientTol;
+    }
+
+    public double getDerivTauTol(){
+        return derivTauTol;
+    }
+
+    public double getRelObjectiveTol(){
+        return relObjectiveTol;
+    }
+
+    public double getAbsObjectiveTol(){
+        return absObjectiveTol;
+    }
+
+    public double getTauIntervalMin(){
+        return tauIntervalMin;
+    }
+
+    public int getMaxIterations(){
+        return maxIterations;
+    }
+
+    public int getMaxGeodesicCalls(){
+        return maxGeodesicCalls;
+    }
+
+    public String toString(){
+        return name + " (gradient " + gradientTol + ", line search " + derivTauTol + ", objective " + relObjectiveTol + "/" + absObjectiveTol + ", interval " + tauIntervalMin + ", iterations " + maxIterations + ", geodesics " + maxGeodesicCalls + ")";
+    }
+}
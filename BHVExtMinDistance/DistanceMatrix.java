@@ -0,0 +1,297 @@
+/** This is intended as the matrix of distances between the extension spaces of many trees, for example gene trees on partial leaf sets, all extended to the same complete leaf set. The extension space of each tree is built only once, and the N(N-1)/2 pairs of trees are computed in parallel in a pool of numThreads threads created for this computation, the cells with more orthant pairs first. Each cell is an ExtensionSpaceDistance: by default with branch and bound keeping only the shorter distance (constructor 4), which is all a matrix needs.
+
+If a GeodesicCache is given, it is passed to the computation of every cell, so all the cells share it, and the final geodesic of a pair of trees already computed by another cell is not computed again.
+
+Every cell has a status: CONVERGED if the optimization of its best pair of orthants stopped by the tolerances (or the pair needed no optimization), LIMIT_REACHED if it stopped by the limits of the convergence policy, NOT_CONVERGED if it was abandoned for another reason (a variable that could not be reclassified, a cut-off or a cancellation), so in both cases the distance is only an upper bound, NO_PAIRS if there were no pairs of orthants, and FAILED if the computation threw an exception (the distance is then NaN and the error is kept). The matrix can be written dense (N rows of N values) or condensed (the N(N-1)/2 values above the diagonal, row by row), and the status of the cells in a separate file.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.io.*;
+import distanceAlg1.*;
+
+public class DistanceMatrix{
+    //Status of a cell of the matrix
+    public enum CellStatus{
+        CONVERGED, //The best pair of orthants stopped by the tolerances of the policy.
+        LIMIT_REACHED, //The best pair of orthants stopped by the limits of iterations or geodesics, so the distance is an upper bound.
+        NOT_CONVERGED, //The optimization of the best pair of orthants was abandoned before the tolerances were met (RECLASSIFICATION_FAILED, PRUNED or CANCELLED), so the distance is an upper bound.
+        NO_PAIRS, //One of the extension spaces has no orthants, so the distance is infinite.
+        FAILED //The computation of the cell threw an exception; the distance is NaN.
+    }
+
+    private int treeNum;
+    private List<String> names; //Names of the trees, for the output.
+    private Vector<String> completeLeafSet;
+    private boolean restricted;
+    private ConvergencePolicy policy;
+    private OrthExtOptimizer optimizer;
+    private boolean branchAndBound;
+    private GeodesicCache cache; //Shared by all the cells, or null.
+
+    private ExtensionSpace[] spaces;
+    //Cells above the diagonal, in condensed order (see Cell).
+    private double[] distances;
+    private CellStatus[] statuses;
+    private StopCriterion[] bestStopCriteria; //Stop criterion of the best pair of orthants of each cell (null if none).
+    private int[] optimizedCounts; //Number of pairs of orthants optimized in each cell.
+    private long[] cellMillis;
+    private String[] errors;
+
+    //Constructors
+    //Matrix with the certified policy, the reduced gradient and branch and bound, extending the trees to the union of their leaf sets.
+    public DistanceMatrix(List<PhyloTree> trees, int numThreads){
+        this(trees, null, null, false, ConvergencePolicy.certified(), new ReducedGradientOptimizer(), true, numThreads, null);
+    }
+
+    //names can be null (the trees are called T0, T1, ...), completeLeafSet can be null (the union of the leaf sets of the trees, sorted), and cache can be null (every geodesic is computed).
+    public DistanceMatrix(List<PhyloTree> trees, List<String> names, Vector<String> completeLeafSet, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, boolean branchAndBound, int numThreads, GeodesicCache cache){
+        if (numThreads < 1){
+            throw new IllegalArgumentException("The number of threads should be at least 1.");
+        }
+        this.treeNum = trees.size();
+        this.names = new ArrayList<String>();
+        for (int i = 0; i < treeNum; i++){
+            this.names.add(((names != null) && (i < names.size())) ? names.get(i) : "T" + i);
+        }
+        this.completeLeafSet = (completeLeafSet != null) ? completeLeafSet : UnionLeafSet(trees);
+        this.restricted = restricted;
+        this.policy = policy;
+        this.optimizer = optimizer;
+        this.branchAndBound = branchAndBound;
+        this.cache = cache;
+
+        int cellNum = treeNum*(treeNum - 1)/2;
+        distances = new double[cellNum];
+        statuses = new CellStatus[cellNum];
+        bestStopCriteria = new StopCriterion[cellNum];
+        optimizedCounts = new int[cellNum];
+        cellMillis = new long[cellNum];
+        errors = new String[cellNum];
+        spaces = new ExtensionSpace[treeNum];
+
+        AtomicInteger created = new AtomicInteger();
+        ExecutorService service = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r, "DistanceMatrix-worker-" + created.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            //The extension space of each tree, once.
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < treeNum; i++){
+                final int tree = i;
+                futures.add(service.submit(() -> {
+                    spaces[tree] = new ExtensionSpace(trees.get(tree), this.completeLeafSet, restricted);
+                }));
+            }
+            WaitAll(futures);
+
+            //The cells, with more orthant pairs first so the longest ones do not end up at the tail.
+            Integer[] order = new Integer[cellNum];
+            long[] pairNum = new long[cellNum];
+            int[] cellRows = new int[cellNum];
+            int[] cellColumns = new int[cellNum];
+            for (int i = 0; i < treeNum; i++){
+                for (int j = i + 1; j < treeNum; j++){
+                    int cell = Cell(i, j);
+                    order[cell] = cell;
+                    pairNum[cell] = ((long) spaces[i].getNumOrthants())*spaces[j].getNumOrthants();
+                    cellRows[cell] = i;
+                    cellColumns[cell] = j;
+                }
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(pairNum[b], pairNum[a]));
+
+            futures.clear();
+            for (int cell : order){
+                futures.add(service.submit(() -> ComputeCell(cell, cellRows[cell], cellColumns[cell])));
+            }
+            WaitAll(futures);
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    private static Vector<String> UnionLeafSet(List<PhyloTree> trees){
+        TreeSet<String> union = new TreeSet<String>();
+        for (PhyloTree tree : trees){
+            union.addAll(tree.getLeaf2NumMap());
+        }
+        return new Vector<String>(union);
+    }
+
+    private static void WaitAll(List<Future<?>> futures){
+        try {
+            for (Future<?> future : futures){
+                future.get();
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The computation of the distance matrix was interrupted.", e);
+        } catch (ExecutionException e){
+            throw new RuntimeException("An error occurred computing the distance matrix.", e.getCause());
+        }
+    }
+
+    //Computes one cell, keeping the error instead of stopping the whole matrix if it fails.
+    private void ComputeCell(int cell, int i, int j){
+        long Start = System.currentTimeMillis();
+        try {
+            OrthExtSolver solver = new OrthExtSolver(restricted, policy, optimizer, StartStrategy.STARTING_TREES, cache);
+            ExtensionSpaceDistance ESD;
+            if (branchAndBound){
+                ESD = new ExtensionSpaceDistance(spaces[i], spaces[j], solver, 1, Double.POSITIVE_INFINITY);
+            } else {
+                ESD = new ExtensionSpaceDistance(spaces[i], spaces[j], solver);
+            }
+            distances[cell] = ESD.getDistance();
+            optimizedCounts[cell] = branchAndBound ? ESD.getOptimizedCount() : ESD.getOOED().size();
+            if (ESD.getOOED().isEmpty()){
+                statuses[cell] = CellStatus.NO_PAIRS;
+            } else {
+                bestStopCriteria[cell] = ESD.getOOED().get(0).getStopCriterion();
+                statuses[cell] = StatusOf(bestStopCriteria[cell]);
+            }
+        } catch (RuntimeException e){
+            distances[cell] = Double.NaN;
+            statuses[cell] = CellStatus.FAILED;
+            errors[cell] = e.toString();
+        }
+        cellMillis[cell] = System.currentTimeMillis() - Start;
+    }
+
+    //Status of a cell whose best pair of orthants stopped by the criterion. Only the tolerances of the policy (or a pair of equivalent orthants, which needs no optimization) give a converged distance.
+    private static CellStatus StatusOf(StopCriterion criterion){
+        switch (criterion){
+            case GRADIENT:
+            case OBJECTIVE:
+            case IDENTICAL:
+                return CellStatus.CONVERGED;
+            case MAX_ITERATIONS:
+            case MAX_GEODESIC_CALLS:
+                return CellStatus.LIMIT_REACHED;
+            default:
+                return CellStatus.NOT_CONVERGED;
+        }
+    }
+
+    //Position of the cell (i, j), with i < j, in the condensed order: (0,1), (0,2), ..., (0,N-1), (1,2), ...
+    private int Cell(int i, int j){
+        return treeNum*i - i*(i + 1)/2 + (j - i - 1);
+    }
+
+    //Getters
+    public int size(){
+        return treeNum;
+    }
+
+    public double getDistance(int i, int j){
+        if (i == j){
+            return 0;
+        }
+        return distances[Cell(Math.min(i, j), Math.max(i, j))];
+    }
+
+    public CellStatus getStatus(int i, int j){
+        if (i == j){
+            return CellStatus.CONVERGED;
+        }
+        return statuses[Cell(Math.min(i, j), Math.max(i, j))];
+    }
+
+    public String getError(int i, int j){
+        return (i == j) ? null : errors[Cell(Math.min(i, j), Math.max(i, j))];
+    }
+
+    //The N(N-1)/2 distances above the diagonal, row by row.
+    public double[] getCondensed(){
+        return distances.clone();
+    }
+
+    public double[][] getDense(){
+        double[][] dense = new double[treeNum][treeNum];
+        for (int i = 0; i < treeNum; i++){
+            for (int j = 0; j < treeNum; j++){
+                dense[i][j] = getDistance(i, j);
+            }
+        }
+        return dense;
+    }
+
+    public ExtensionSpace getExtensionSpace(int i){
+        return spaces[i];
+    }
+
+    public List<String> getNames(){
+        return names;
+    }
+
+    public Vector<String> getCompleteLeafSet(){
+        return completeLeafSet;
+    }
+
+    //Number of cells with each status.
+    public Map<CellStatus, Integer> getStatusCounts(){
+        Map<CellStatus, Integer> counts = new EnumMap<CellStatus, Integer>(CellStatus.class);
+        for (CellStatus status : statuses){
+            counts.merge(status, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    //Writers
+    //N rows with the name of the tree and its N distances, separated by tabs, after a header with the names.
+    public void writeDense(File file) throws IOException{
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))){
+            StringBuilder line = new StringBuilder();
+            for (String name : names){
+                line.append('\t').append(name);
+            }
+            out.println(line);
+            for (int i = 0; i < treeNum; i++){
+                line.setLength(0);
+                line.append(names.get(i));
+                for (int j = 0; j < treeNum; j++){
+                    line.append('\t').append(getDistance(i, j));
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    //The distances above the diagonal, row by row, one per line.
+    public void writeCondensed(File file) throws IOException{
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))){
+            for (double distance : distances){
+                out.println(distance);
+            }
+        }
+    }
+
+    //One line per cell above the diagonal: the trees, the distance, the status, the stop criterion of the best pair, the pairs of orthants optimized, the time and the error, separated by tabs.
+    public void writeStatus(File file) throws IOException{
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))){
+            out.println("tree1\ttree2\tdistance\tstatus\tbest_stop\toptimized_pairs\tmillis\terror");
+            for (int i = 0; i < treeNum; i++){
+                for (int j = i + 1; j < treeNum; j++){
+                    int cell = Cell(i, j);
+                    out.println(names.get(i) + "\t" + names.get(j) + "\t" + distances[cell] + "\t" + statuses[cell] + "\t" + bestStopCriteria[cell] + "\t" + optimizedCounts[cell] + "\t" + cellMillis[cell] + "\t" + ((errors[cell] == null) ? "" : errors[cell].replace('\t', ' ').replace('\n', ' ')));
+                }
+            }
+        }
+    }
+
+    public void PrintSummary(){
+        System.out.println("Distance matrix between " + treeNum + " extension spaces (" + distances.length + " cells, " + policy.getName() + " policy, " + optimizer.getName() + (branchAndBound ? ", branch and bound" : "") + ")");
+        System.out.println("   Cells by status: " + getStatusCounts());
+    }
+}
@@ -0,0 +1,290 @@
+/** This is intended as a compact binary file with the enumeration of the maximal orthants of an extension space, so that a new JVM does not need to enumerate the same extension space again (the edgeCrossGraph, its maximal independent sets and the orthantGraph). An ExtensionSpace can then be built from the stored enumeration and a tree with the same topology (see constructor 4 of ExtensionSpace), and only its orthant extensions, which depend on the lengths of the edges, are computed.
+
+The file has, in this order and in big-endian:
+ * MAGIC, the mode (1 if restricted) and the complete leaf set (number of leaves and, for each leaf, the length and UTF-8 bytes of its name).
+ * The interned splits: number of splits, number of long words per split, and the words of every split over the complete leaf set. Every distinct split is stored once, and the rest of the file refers to it by its position.
+ * The topology of the original tree: the ID of the split with its leaves, and the number and IDs of its splits written as in ExtensionSpaceFactory, so a tree with another topology can be rejected.
+ * The number of orthants, the axis offsets (number of orthants + 1) and the axis split IDs of every orthant, in CSR form.
+ * The adjacency offsets (number of orthants + 1) and targets of the orthantGraph, also in CSR form.
+
+The file is written to a temporary file that is then renamed, so a reader never finds it half written. It is read through a memory-mapped FileChannel: the header and the leaf set are decoded, and the splits, axes and adjacency are kept as views of the mapping, so loading does not copy them. The orthantGraph is built from the views the first time it is needed, with one Bipartition per interned split shared by all the orthants that have it (the orthantGraph is read-only; the orthant extensions get clones).
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import distanceAlg1.*;
+
+public class EnumerationStore{
+    private static final int MAGIC = 0x42484531; //"BHE1"
+
+    private File file;
+    private Vector<String> completeLeafSet;
+    private boolean restricted;
+
+    //Views of the mapped file
+    private int splitNum;
+    private int words; //Long words per split.
+    private LongBuffer splitWords;
+    private int originalLeavesID;
+    private IntBuffer originalSplitIDs;
+    private int orthantNum;
+    private IntBuffer axisOffsets;
+    private IntBuffer axisIDs;
+    private IntBuffer adjOffsets;
+    private IntBuffer adjTargets;
+
+    private orthantGraph connectCluster; //Built the first time it is needed.
+
+    //Constructor: maps the file (see read).
+    private EnumerationStore(File file) throws IOException{
+        this.file = file;
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); //The mapping stays valid after the channel is closed.
+        }
+        try {
+            if (buffer.getInt() != MAGIC){
+                throw new IOException("The file " + file + " is not a stored enumeration of an extension space.");
+            }
+            restricted = (buffer.getInt() == 1);
+            int leafNum = buffer.getInt();
+            completeLeafSet = new Vector<String>(leafNum);
+            for (int i = 0; i < leafNum; i++){
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                completeLeafSet.add(new String(name, StandardCharsets.UTF_8));
+            }
+
+            splitNum = buffer.getInt();
+            words = buffer.getInt();
+            splitWords = Slice(buffer, 8, ((long) splitNum)*words).asLongBuffer();
+            originalLeavesID = buffer.getInt();
+            int originalSplitNum = buffer.getInt();
+            originalSplitIDs = Slice(buffer, 4, originalSplitNum).asIntBuffer();
+            orthantNum = buffer.getInt();
+            axisOffsets = Slice(buffer, 4, orthantNum + 1).asIntBuffer();
+            axisIDs = Slice(buffer, 4, axisOffsets.get(orthantNum)).asIntBuffer();
+            adjOffsets = Slice(buffer, 4, orthantNum + 1).asIntBuffer();
+            adjTargets = Slice(buffer, 4, adjOffsets.get(orthantNum)).asIntBuffer();
+            if (buffer.hasRemaining()){
+                throw new IOException("The stored enumeration " + file + " has " + buffer.remaining() + " unexpected bytes at the end.");
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e){
+            throw new IOException("The stored enumeration " + file + " is truncated or corrupt.", e);
+        }
+    }
+
+    //The next count values of the given size in the buffer, as a view, moving the buffer after them.
+    private static ByteBuffer Slice(ByteBuffer buffer, int size, long count){
+        long length = size*count;
+        if ((count < 0) || (length > buffer.remaining())){
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.limit(view.position() + (int) length);
+        buffer.position(buffer.position() + (int) length);
+        return view.slice();
+    }
+
+    //Writes the enumeration of the extension space ES, in the mode it was built in.
+    public static void write(File file, ExtensionSpace ES) throws IOException{
+        Vector<String> cLeafSet = ES.getCompleteLeafSet();
+        orthantGraph graph = ES.getConnectCluster();
+        int words = Math.max(1, (cLeafSet.size() + 63)/64);
+
+        //Interning of the splits
+        Map<BitSet, Integer> splitIDs = new HashMap<BitSet, Integer>();
+        List<BitSet> splits = new ArrayList<BitSet>();
+        BitSet originalLeaves = new BitSet(cLeafSet.size());
+        Set<BitSet> originalSplits = ExtensionSpaceFactory.CanonicalSplits(ES.getOriginalTree(), cLeafSet, originalLeaves);
+        int originalLeavesID = Intern(originalLeaves, splitIDs, splits);
+        int[] originalSplitIDs = new int[originalSplits.size()];
+        int s = 0;
+        for (BitSet split : originalSplits){
+            originalSplitIDs[s++] = Intern(split, splitIDs, splits);
+        }
+        Arrays.sort(originalSplitIDs);
+
+        int orthantNum = graph.getVertexNum();
+        int[] axisOffsets = new int[orthantNum + 1];
+        List<int[]> axes = new ArrayList<int[]>(orthantNum);
+        int[] adjOffsets = new int[orthantNum + 1];
+        List<int[]> adjacency = new ArrayList<int[]>(orthantNum);
+        for (int i = 0; i < orthantNum; i++){
+            Vector<Bipartition> orthantAxes = graph.getAxes(i);
+            int[] ids = new int[orthantAxes.size()];
+            for (int a = 0; a < ids.length; a++){
+                ids[a] = Intern(orthantAxes.get(a).getPartition(), splitIDs, splits);
+            }
+            axes.add(ids);
+            axisOffsets[i + 1] = axisOffsets[i] + ids.length;
+            int[] neighbours = graph.getAdjIDs(i);
+            adjacency.add(neighbours);
+            adjOffsets[i + 1] = adjOffsets[i] + neighbours.length;
+        }
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16))){
+            out.writeInt(MAGIC);
+            out.writeInt(ES.isRestricted() ? 1 : 0);
+            out.writeInt(cLeafSet.size());
+            for (String leaf : cLeafSet){
+                byte[] name = leaf.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+            }
+
+            out.writeInt(splits.size());
+            out.writeInt(words);
+            for (BitSet split : splits){
+                long[] splitWords = split.toLongArray();
+                for (int w = 0; w < words; w++){
+                    out.writeLong((w < splitWords.length) ? splitWords[w] : 0L);
+                }
+            }
+            out.writeInt(originalLeavesID);
+            out.writeInt(originalSplitIDs.length);
+            for (int id : originalSplitIDs){
+                out.writeInt(id);
+            }
+
+            out.writeInt(orthantNum);
+            for (int offset : axisOffsets){
+                out.writeInt(offset);
+            }
+            for (int[] ids : axes){
+                for (int id : ids){
+                    out.writeInt(id);
+                }
+            }
+            for (int offset : adjOffsets){
+                out.writeInt(offset);
+            }
+            for (int[] neighbours : adjacency){
+                for (int neighbour : neighbours){
+                    out.writeInt(neighbour);
+                }
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int Intern(BitSet split, Map<BitSet, Integer> splitIDs, List<BitSet> splits){
+        Integer id = splitIDs.get(split);
+        if (id == null){
+            id = splits.size();
+            BitSet copy = (BitSet) split.clone();
+            splitIDs.put(copy, id);
+            splits.add(copy);
+        }
+        return id;
+    }
+
+    //Maps the stored enumeration in the file.
+    public static EnumerationStore read(File file) throws IOException{
+        return new EnumerationStore(file);
+    }
+
+    //The split with the given ID, over the complete leaf set.
+    public BitSet getSplit(int id){
+        long[] splitLongs = new long[words];
+        for (int w = 0; w < words; w++){
+            splitLongs[w] = splitWords.get(id*words + w);
+        }
+        return BitSet.valueOf(splitLongs);
+    }
+
+    //Whether the tree t has the topology of the stored enumeration, over the same complete leaf set.
+    public boolean matches(PhyloTree t){
+        BitSet originalLeaves = new BitSet(completeLeafSet.size());
+        Set<BitSet> treeSplits;
+        try {
+            treeSplits = ExtensionSpaceFactory.CanonicalSplits(t, completeLeafSet, originalLeaves);
+        } catch (IllegalArgumentException e){
+            return false; //A leaf outside the complete leaf set.
+        }
+        if (!originalLeaves.equals(getSplit(originalLeavesID)) || (treeSplits.size() != originalSplitIDs.limit())){
+            return false;
+        }
+        for (int s = 0; s < originalSplitIDs.limit(); s++){
+            if (!treeSplits.contains(getSplit(originalSplitIDs.get(s)))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //The stored orthantGraph, built from the mapped file the first time.
+    public synchronized orthantGraph getOrthants(){
+        if (connectCluster == null){
+            Bipartition[] interned = new Bipartition[splitNum];
+            Vector<Vector<Bipartition>> axes = new Vector<Vector<Bipartition>>(orthantNum);
+            for (int i = 0; i < orthantNum; i++){
+                Vector<Bipartition> orthantAxes = new Vector<Bipartition>(axisOffsets.get(i + 1) - axisOffsets.get(i));
+                for (int p = axisOffsets.get(i); p < axisOffsets.get(i + 1); p++){
+                    int id = axisIDs.get(p);
+                    if (interned[id] == null){
+                        interned[id] = new Bipartition(getSplit(id));
+                    }
+                    orthantAxes.add(interned[id]);
+                }
+                axes.add(orthantAxes);
+            }
+            int[] offsets = new int[orthantNum + 1];
+            adjOffsets.get(0, offsets);
+            int[] targets = new int[adjTargets.limit()];
+            adjTargets.get(0, targets);
+            connectCluster = new orthantGraph(axes, offsets, targets);
+        }
+        return connectCluster;
+    }
+
+    //The stored orthantGraph, checking first that t has the stored topology (used by constructor 4 of ExtensionSpace).
+    orthantGraph getOrthantsFor(PhyloTree t){
+        if (!matches(t)){
+            throw new IllegalArgumentException("The tree does not have the topology of the enumeration stored in " + file + ".");
+        }
+        return getOrthants();
+    }
+
+    //Getters
+    public Vector<String> getCompleteLeafSet(){
+        return completeLeafSet;
+    }
+
+    public boolean isRestricted(){
+        return restricted;
+    }
+
+    public int getOrthantNum(){
+        return orthantNum;
+    }
+
+    public int getSplitNum(){
+        return splitNum;
+    }
+
+    //CSR views of the adjacency of the orthants, without building the orthantGraph.
+    public IntBuffer getAdjOffsets(){
+        return adjOffsets.duplicate();
+    }
+
+    public IntBuffer getAdjTargets(){
+        return adjTargets.duplicate();
+    }
+
+    public File getFile(){
+        return file;
+    }
+}
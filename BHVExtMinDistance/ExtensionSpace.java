@@ -30,12 +30,15 @@ public class ExtensionSpace{
     private Vector<OrthExt> listOrthants;
     //Number of maximal orthants to which the Extension Space belongs to.
     private int numOrthants;
+    //Whether the orthant extensions were built in the restricted mode (the only one of constructor 1).
+    private boolean restricted;
     
     //constructors
     
     public ExtensionSpace(PhyloTree t, Vector<String> cLeafSet){
         this.originalTree = new PhyloTree(t);
         this.completeLeafSet = Tools.myVectorCloneString(cLeafSet);
+        this.restricted = true;
         
         originalLeaves = new BitSet(this.completeLeafSet.size());
         Vector<String> oLeafSet = polyAlg.Tools.myVectorCloneString(t.getLeaf2NumMap());
@@ -77,6 +80,7 @@ public class ExtensionSpace{
     public ExtensionSpace(PhyloTree t, Vector<String> cLeafSet, boolean restricted){
         this.originalTree = new PhyloTree(t);
         this.completeLeafSet =  Tools.myVectorCloneString(cLeafSet);
+        this.restricted = restricted;
         
         originalLeaves = new BitSet(this.completeLeafSet.size());
         Vector<String> oLeafSet = polyAlg.Tools.myVectorCloneString(t.getLeaf2NumMap());
@@ -113,6 +117,30 @@ public class ExtensionSpace{
         }
     }// end constructor 2
     
+    //constructor 3: with the orthants already enumerated for a tree with the same topology (see ExtensionSpaceFactory). The enumeration only depends on the splits of the tree and the complete leaf set, so only the orthant extensions, which depend on the lengths of the edges, are built for this tree.
+    public ExtensionSpace(PhyloTree t, Vector<String> cLeafSet, boolean restricted, orthantGraph connectCluster){
+        this.originalTree = new PhyloTree(t);
+        this.completeLeafSet =  Tools.myVectorCloneString(cLeafSet);
+        this.restricted = restricted;
+        originalLeaves = new BitSet(this.completeLeafSet.size());
+        
+        this.connectCluster = connectCluster;
+        numOrthants = connectCluster.getVertexNum();
+        
+        listOrthants = new Vector<OrthExt>();
+        
+        for (int i = 0; i < numOrthants; i++){
+            Vector<Bipartition> tempAxes = connectCluster.getAxesClone(i);
+            OrthExt tempOrthExt = new OrthExt(new PhyloTree(t), tempAxes, Tools.myVectorCloneString(cLeafSet), restricted, i);
+            listOrthants.add(tempOrthExt);
+        }
+    }// end constructor 3
+    
+    //constructor 4: with the orthants read from a stored enumeration (see EnumerationStore), in the complete leaf set and mode of the stored enumeration. The tree should have the stored topology.
+    public ExtensionSpace(PhyloTree t, EnumerationStore stored){
+        this(t, stored.getCompleteLeafSet(), stored.isRestricted(), stored.getOrthantsFor(t));
+    }// end constructor 4
+    
     //Printers and Getters. 
     
     public void PrintSummary(){
@@ -195,4 +223,16 @@ public class ExtensionSpace{
         return this.numOrthants;
     }
     
+    public PhyloTree getOriginalTree(){
+        return this.originalTree;
+    }
+    
+    public Vector<String> getCompleteLeafSet(){
+        return this.completeLeafSet;
+    }
+    
+    public boolean isRestricted(){
+        return this.restricted;
+    }
+    
 }
\ No newline at end of file
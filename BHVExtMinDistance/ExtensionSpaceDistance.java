@@ -13,11 +13,13 @@ import java.util.concurrent.*;
 import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import distanceAlg1.*;
 import static polyAlg.PolyMain.getGeodesic;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 public class ExtensionSpaceDistance{
     //List of all the distances between the subset of the extension spaces restricted to particular orthants.
@@ -31,10 +33,38 @@ public class ExtensionSpaceDistance{
     private double Distance;
     //The geodesic between the extension spaces that produces the smaller distance.
     private Geodesic bestGeode;
+    //Tolerances and limits used for the optimization in every pair of orthant extensions.
+    private ConvergencePolicy policy;
+    //Method used to minimize the distance in every pair of orthant extensions.
+    private OrthExtOptimizer optimizer;
+    //Strategy for the starting point of every pair of orthant extensions.
+    private StartStrategy startStrategy = StartStrategy.STARTING_TREES;
+    //Lower bounds of the distance of every pair of orthant extensions, indexed by the IDs of the orthants (null unless the pairs were computed by branch and bound).
+    private double[][] lowerBounds;
+    //Number of pairs of orthant extensions discarded by branch and bound because a lower bound of their distance was larger than the distances already found.
+    private int prunedCount = 0;
+    //Number of those pairs whose optimization started but was abandoned when it was proved that they could not beat the cut-off.
+    private int abortedCount = 0;
+    //How the evaluation ended when the pairs were computed in a PairEvaluationScope (null otherwise).
+    private PairEvaluationScope.Outcome scopeOutcome = null;
+    //Record of all the pairs of orthant extensions in summary mode (null otherwise); the list of orthant extension distances then only has the shorter ones.
+    private PairSummaryTable summary = null;
+    //True if both extension spaces were found to be the same, so each unordered pair of orthant extensions was optimized only once (see PairSymmetry).
+    private boolean symmetric = false;
+    //Number of pairs of orthant extensions taken from a journal instead of being computed (see constructor 7).
+    private int restoredCount = 0;
+    //Proxy of the distance of every pair of orthant extensions, indexed by the IDs of the orthants (null unless the pairs were screened, see constructor 9).
+    private double[][] proxies;
+    //Number of pairs of orthant extensions refined after the screening.
+    private int refinedCount = 0;
+    //True if the list of orthant extension distances may miss shorter pairs that were never refined (see constructor 9).
+    private boolean heuristic = false;
     
     //Constructor
     public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2){
-        orderedOrthExtDistances = new ArrayList<OrthExtDistance>();
+        RankedCollector collector = new RankedCollector();
+        policy = ConvergencePolicy.certified();
+        optimizer = new ReducedGradientOptimizer();
         
         Vector<OrthExt> OEs1 = ES1.getOrthExts();
         Vector<OrthExt> OEs2 = ES2.getOrthExts();
@@ -42,31 +72,20 @@ public class ExtensionSpaceDistance{
         int oNum1 = OEs1.size();
         int oNum2 = OEs2.size();
         
+        OrthExtSolver solver = new OrthExtSolver(true, policy, optimizer); //One solver for all the pairs, reusing its scratch.
+        PairSymmetry symmetry = new PairSymmetry(OEs1, OEs2);
+        symmetric = symmetry.isSymmetric();
+        
         //For each pair of orthant extensions in the extension spaces we compute the Orthant Extension Distances in between them, find how it compares to the other distances already added to the list, and we add it to the correct position, also adding the orthants that produced this distance to each the list of orthants. 
         for (int k1 = 0; k1 < oNum1; k1++){
-            OrthExt OE1 = OEs1.get(k1);
             for (int k2 = 0; k2 < oNum2; k2++){
                 //System.out.println("************");
                 //System.out.println("STARTING O pair ("+k1+", "+k2+")");
-                OrthExt OE2 = OEs2.get(k2);
-                OrthExtDistance tempOED = new OrthExtDistance(OE1, OE2);
-                //System.out.println("THE DISTANCE WAS "+ tempOED.getDistance());
+                //The collector keeps the pairs ranked from the shorter distance (see RankedCollector), instead of inserting each one in its position in the list. Pairs already given by their mirror are skipped (see SolvePair).
+                SolvePair(solver, symmetry, OEs1, OEs2, k1, k2, collector::add);
                 //System.out.println("************");
                 //System.out.println("");
                 
-                
-                boolean Added = false;
-                for(int i = 0; i < orderedOrthExtDistances.size(); i++){
-                    if (tempOED.getDistance() < orderedOrthExtDistances.get(i).getDistance()){
-                        Added = true;
-                        orderedOrthExtDistances.add(i, tempOED);
-                        break;
-                    }
-                }
-                if (!Added){
-                    orderedOrthExtDistances.add(orderedOrthExtDistances.size(), tempOED);
-                }
-                
                 /*if ((orderedOrthExtDistances.size()>0) && (tempOED.getDistance() <= orderedOrthExtDistances.get(0).getDistance())){
                     orderedOrthExtDistances.add(0, tempOED);
                 } else {
@@ -75,16 +94,29 @@ public class ExtensionSpaceDistance{
             }
         }
         
-        //The best trees, distance and geodesic will be those at the beginning of our list. 
-        bestTree1 = orderedOrthExtDistances.get(0).getFirstTree();
-        bestTree2 = orderedOrthExtDistances.get(0).getSecondTree();
-        Distance = orderedOrthExtDistances.get(0).getDistance();
-        bestGeode = orderedOrthExtDistances.get(0).getFinalGeode();
+        Rank(collector);
     }//end of constructor 
     
     //Constructor 2: allowing for unrestricted version
     public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted){
-        orderedOrthExtDistances = new ArrayList<OrthExtDistance>();
+        this(ES1, ES2, restricted, ConvergencePolicy.certified());
+    }
+    
+    //Constructor 2 with a convergence policy (see ConvergencePolicy for the presets).
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy){
+        this(ES1, ES2, restricted, policy, new ReducedGradientOptimizer());
+    }
+    
+    //Constructor 2 with a convergence policy and the optimizer used in every pair of orthant extensions (see OrthExtOptimizer).
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer){
+        this(ES1, ES2, new OrthExtSolver(restricted, policy, optimizer));
+    }
+    
+    //Constructor 2 with the solver of the pairs (see OrthExtSolver), which gives the mode, the policy and the optimizer, and its GeodesicCache if it has one: the final geodesics of the pairs are then taken from the cache when the same pair of trees was already computed, for example by another cell of a DistanceMatrix. The solver should not be used by another thread at the same time.
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, OrthExtSolver solver){
+        RankedCollector collector = new RankedCollector();
+        this.policy = solver.getPolicy();
+        this.optimizer = solver.getOptimizer();
         
         Vector<OrthExt> OEs1 = ES1.getOrthExts();
         Vector<OrthExt> OEs2 = ES2.getOrthExts();
@@ -92,15 +124,16 @@ public class ExtensionSpaceDistance{
         int oNum1 = OEs1.size();
         int oNum2 = OEs2.size();
         
+        PairSymmetry symmetry = new PairSymmetry(OEs1, OEs2);
+        symmetric = symmetry.isSymmetric();
+        
         //For each pair of orthant extensions in the extension spaces we compute the Orthant Extension Distances in between them, find how it compares to the other distances already added to the list, and we add it to the correct position, also adding the orthants that produced this distance to each the list of orthants. 
         for (int k1 = 0; k1 < oNum1; k1++){
-            OrthExt OE1 = OEs1.get(k1);
             for (int k2 = 0; k2 < oNum2; k2++){
                 //System.out.println("************");
                 //System.out.println("STARTING O pair ("+k1+", "+k2+")");
-                OrthExt OE2 = OEs2.get(k2);
                 //long Start = System.currentTimeMillis();
-                OrthExtDistance tempOED = new OrthExtDistance(OE1, OE2, restricted);
+                SolvePair(solver, symmetry, OEs1, OEs2, k1, k2, collector::add);
                 //long End = System.currentTimeMillis();
                 //double TimeSeconds = ((double)(End - Start))/1000;
                 //System.out.println("THE DISTANCE WAS "+ tempOED.getDistance());
@@ -125,17 +158,416 @@ public class ExtensionSpaceDistance{
                 } else {
                     orderedOrthExtDistances.add(orderedOrthExtDistances.size(),tempOED);
                 }*/
-                orderedOrthExtDistances.add(tempOED);
             }
         }
         
-        //The best trees, distance and geodesic will be those at the beginning of our list. 
-        bestTree1 = orderedOrthExtDistances.get(0).getFirstTree();
-        bestTree2 = orderedOrthExtDistances.get(0).getSecondTree();
-        Distance = orderedOrthExtDistances.get(0).getDistance();
-        bestGeode = orderedOrthExtDistances.get(0).getFinalGeode();
+        Rank(collector);
     } //end of constructor 2
     
+    //Constructor 2 with warm starts: if warmStart is true, the pairs of orthant extensions are computed following the joint rotation graph (pairs sharing one orthant, with the other orthants adjacent by rotation, as in JointNNI), and each pair starts from the solution of an already computed neighbour.
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, boolean warmStart){
+        this(ES1, ES2, restricted, policy, optimizer, warmStart, StartStrategy.STARTING_TREES);
+    }
+    
+    //Constructor 2 with warm starts, choosing also the strategy for the starting point of the pairs (see StartStrategy).
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, boolean warmStart, StartStrategy startStrategy){
+        this.policy = policy;
+        this.optimizer = optimizer;
+        this.startStrategy = startStrategy;
+        
+        RankedCollector collector = new RankedCollector();
+        if (warmStart){
+            collector.addAll(AlongRotations(ES1, ES2, restricted));
+        } else {
+            OrthExtSolver solver = new OrthExtSolver(restricted, policy, optimizer, startStrategy);
+            Vector<OrthExt> OEs1 = ES1.getOrthExts();
+            Vector<OrthExt> OEs2 = ES2.getOrthExts();
+            PairSymmetry symmetry = new PairSymmetry(OEs1, OEs2);
+            symmetric = symmetry.isSymmetric();
+            for (int k1 = 0; k1 < OEs1.size(); k1++){
+                for (int k2 = 0; k2 < OEs2.size(); k2++){
+                    SolvePair(solver, symmetry, OEs1, OEs2, k1, k2, collector::add);
+                }
+            }
+        }
+        
+        Rank(collector);
+    } //end of constructor 2 with warm starts
+    
+    //Computes all the pairs of orthant extensions by a breadth first search over the joint rotation graph, warm starting every pair from the pair it was reached from. Each connected component starts from the starting trees.
+    private List<OrthExtDistance> AlongRotations(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted){
+        Vector<OrthExt> OEs1 = ES1.getOrthExts();
+        Vector<OrthExt> OEs2 = ES2.getOrthExts();
+        orthantGraph connectCluster1 = ES1.getConnectCluster();
+        orthantGraph connectCluster2 = ES2.getConnectCluster();
+        
+        int oNum1 = OEs1.size();
+        int oNum2 = OEs2.size();
+        
+        OrthExtSolver solver = new OrthExtSolver(restricted, policy, optimizer, startStrategy);
+        OrthExtDistance[] computed = new OrthExtDistance[oNum1*oNum2]; //Pair (k1, k2) is stored in position k1*oNum2 + k2.
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        
+        for (int seed = 0; seed < computed.length; seed++){
+            if (computed[seed] != null){
+                continue;
+            }
+            computed[seed] = solver.solve(OEs1.get(seed/oNum2), OEs2.get(seed%oNum2));
+            queue.add(seed);
+            
+            while (!queue.isEmpty()){
+                int current = queue.poll();
+                int k1 = current/oNum2;
+                int k2 = current%oNum2;
+                
+                //Same orthant in the first extension space, adjacent orthant in the second.
+                for (int a2 : connectCluster2.getAdjIDs(k2)){
+                    int next = k1*oNum2 + a2;
+                    if (computed[next] == null){
+                        computed[next] = solver.solve(OEs1.get(k1), OEs2.get(a2), computed[current]);
+                        queue.add(next);
+                    }
+                }
+                //Adjacent orthant in the first extension space, same orthant in the second.
+                for (int a1 : connectCluster1.getAdjIDs(k1)){
+                    int next = a1*oNum2 + k2;
+                    if (computed[next] == null){
+                        computed[next] = solver.solve(OEs1.get(a1), OEs2.get(k2), computed[current]);
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        
+        return new ArrayList<OrthExtDistance>(Arrays.asList(computed));
+    }
+    
+    //Constructor 4: branch and bound. Only the topK shorter distances are needed (topK = 1 for the distance between the extension spaces), so a cheap lower bound (see PairLowerBound) is computed for every pair of orthant extensions, and the pairs are optimized in increasing order of their bound until the bound is larger than the topK-th shorter distance found so far. The remaining pairs are skipped. Once topK distances are known, the topK-th one is also used as cut-off in the optimization of the next pairs, which are abandoned as soon as they cannot beat it. The list of orthant extension distances keeps only the topK shorter ones, in increasing order.
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, int topK){
+        this(ES1, ES2, restricted, policy, optimizer, topK, Double.POSITIVE_INFINITY);
+    }
+    
+    //Constructor 4 with a cut-off: only distances shorter than cutoff are wanted (for example, the k-th shorter distance found so far in a search among many extension spaces, see NearestNeighbourSearch), so the pairs whose bound is not below it are skipped and the optimizations are abandoned as soon as they cannot beat it. If no pair is shorter than cutoff, the list of orthant extension distances is empty and the distance is infinite.
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, int topK, double cutoff){
+        this(ES1, ES2, new OrthExtSolver(restricted, policy, optimizer), topK, cutoff);
+    }
+    
+    //Constructor 4 with a cut-off and the solver of the pairs (see OrthExtSolver), which gives the mode, the policy and the optimizer, and its GeodesicCache of the final geodesics if it has one (as in constructor 2). The solver should not be used by another thread at the same time.
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, OrthExtSolver solver, int topK, double cutoff){
+        if (topK < 1){
+            throw new IllegalArgumentException("The number of orthant pairs to keep should be at least 1.");
+        }
+        this.policy = solver.getPolicy();
+        this.optimizer = solver.getOptimizer();
+        
+        Vector<OrthExt> OEs1 = ES1.getOrthExts();
+        Vector<OrthExt> OEs2 = ES2.getOrthExts();
+        
+        int oNum1 = OEs1.size();
+        int oNum2 = OEs2.size();
+        
+        //Bounds for all the pairs, and the pairs (as k1*oNum2 + k2) in increasing order of their bound.
+        lowerBounds = new double[oNum1][oNum2];
+        Integer[] order = new Integer[oNum1*oNum2];
+        for (int k1 = 0; k1 < oNum1; k1++){
+            for (int k2 = 0; k2 < oNum2; k2++){
+                lowerBounds[k1][k2] = solver.lowerBound(OEs1.get(k1), OEs2.get(k2));
+                order[k1*oNum2 + k2] = k1*oNum2 + k2;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(lowerBounds[a/oNum2][a%oNum2], lowerBounds[b/oNum2][b%oNum2]));
+        
+        RankedCollector collector = new RankedCollector(topK);
+        prunedCount = 0;
+        abortedCount = 0;
+        for (int i = 0; i < order.length; i++){
+            int k1 = order[i]/oNum2;
+            int k2 = order[i]%oNum2;
+            double threshold = Math.min(collector.getThreshold(), cutoff);
+            //Once the list is full, a pair whose bound is larger than the last distance in the list cannot enter it, and neither can the pairs after it. The same happens with the cut-off.
+            if ((lowerBounds[k1][k2] > threshold) || (lowerBounds[k1][k2] >= cutoff)){
+                prunedCount += order.length - i;
+                break;
+            }
+            OrthExtDistance tempOED = solver.solve(OEs1.get(k1), OEs2.get(k2), null, threshold);
+            if (tempOED.isPruned()){
+                prunedCount++;
+                abortedCount++;
+                continue;
+            }
+            if (tempOED.getDistance() >= cutoff){
+                continue;
+            }
+            collector.add(tempOED);
+        }
+        
+        Rank(collector);
+    } //end of constructor 4
+    
+    //Constructor 5: the pairs of orthant extensions are computed as subtasks of the scope (see PairEvaluationScope), which limits their concurrency and CPU use and can be cancelled by a deadline, by a pair at distance zero, or from another thread. If the scope was cancelled, only the pairs computed until then are in the list (see getScopeOutcome); if there are none, the distance is infinite and there are no best trees.
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, PairEvaluationScope scope){
+        this.policy = policy;
+        this.optimizer = optimizer;
+        
+        OrthExtDistance[] computed = scope.evaluate(ES1.getOrthExts(), ES2.getOrthExts(), () -> new OrthExtSolver(restricted, policy, optimizer));
+        scopeOutcome = scope.getOutcome();
+        
+        RankedCollector collector = new RankedCollector();
+        for (OrthExtDistance OED : computed){
+            if (OED != null){
+                collector.add(OED);
+            }
+        }
+        Rank(collector);
+    } //end of constructor 5
+    
+    //Constructor 6: summary mode. Every pair of orthant extensions of the extension spaces of the table is computed and recorded in the table (see PairSummaryTable), which keeps all of them in primitive columns but only the shorter ones as full objects, so the pairs do not keep their trees and geodesics alive. The list of orthant extension distances has only those full objects; the best trees, distance and geodesic are still those of the best pair.
+    public ExtensionSpaceDistance(PairSummaryTable summary, ConvergencePolicy policy, OrthExtOptimizer optimizer){
+        this.policy = policy;
+        this.optimizer = optimizer;
+        this.summary = summary;
+        
+        OrthExtSolver solver = new OrthExtSolver(summary.isRestricted(), policy, optimizer);
+        Vector<OrthExt> OEs1 = summary.getES1().getOrthExts();
+        Vector<OrthExt> OEs2 = summary.getES2().getOrthExts();
+        PairSymmetry symmetry = new PairSymmetry(OEs1, OEs2);
+        symmetric = symmetry.isSymmetric();
+        for (int k1 = 0; k1 < OEs1.size(); k1++){
+            for (int k2 = 0; k2 < OEs2.size(); k2++){
+                SolvePair(solver, symmetry, OEs1, OEs2, k1, k2, summary::add);
+            }
+        }
+        
+        Rank(summary.getFullCollector());
+    } //end of constructor 6
+    
+    //Constructor 7: checkpointed. Every pair of orthant extensions is appended to the journal in journalFile as soon as it is computed (see PairJournal). If the journal already has pairs of the same computation (same trees, leaf set, orthants, mode, policy and optimizer), for example because the JVM was restarted, they are not computed again: their trees and geodesics are rebuilt from the final values in the journal, and the computation continues with the remaining pairs.
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, File journalFile) throws IOException{
+        this.policy = policy;
+        this.optimizer = optimizer;
+        
+        Vector<OrthExt> OEs1 = ES1.getOrthExts();
+        Vector<OrthExt> OEs2 = ES2.getOrthExts();
+        int oNum1 = OEs1.size();
+        int oNum2 = OEs2.size();
+        
+        OrthExtSolver solver = new OrthExtSolver(restricted, policy, optimizer);
+        RankedCollector collector = new RankedCollector();
+        
+        try (PairJournal journal = new PairJournal(journalFile, PairJournal.fingerprint(ES1, ES2, restricted, policy, optimizer))){
+            //Pairs already in the journal, stored in position k1*oNum2 + k2.
+            OrthExtDistance[] restored = new OrthExtDistance[oNum1*oNum2];
+            for (PairJournal.Record record : journal.getRecords()){
+                int position = record.getO1ID()*oNum2 + record.getO2ID();
+                if (restored[position] == null){
+                    restored[position] = solver.restore(OEs1.get(record.getO1ID()), OEs2.get(record.getO2ID()), record.getFinalValues1(), record.getFinalValues2(), record.getIterCount(), record.getStopCriterion());
+                    collector.add(restored[position]);
+                    restoredCount++;
+                }
+            }
+            
+            Consumer<OrthExtDistance> sink = OED -> {
+                try {
+                    journal.append(OED);
+                } catch (IOException e){
+                    throw new UncheckedIOException(e);
+                }
+                collector.add(OED);
+            };
+            PairSymmetry symmetry = new PairSymmetry(OEs1, OEs2);
+            symmetric = symmetry.isSymmetric();
+            try {
+                for (int k1 = 0; k1 < oNum1; k1++){
+                    for (int k2 = 0; k2 < oNum2; k2++){
+                        if (restored[k1*oNum2 + k2] != null){
+                            continue;
+                        }
+                        //A mirrored pair is given by its source when the source is computed. If the source was in the journal but the mirror was not (the JVM ended between both), the mirror is taken from the restored source.
+                        if (symmetry.getRole(k1, k2) == PairSymmetry.Role.MIRROR){
+                            int[] mirror = symmetry.getMirror(k1, k2);
+                            OrthExtDistance source = restored[mirror[0]*oNum2 + mirror[1]];
+                            if (source != null){
+                                sink.accept(source.mirror(OEs1.get(k1), OEs2.get(k2)));
+                            }
+                            continue;
+                        }
+                        SolvePair(solver, symmetry, OEs1, OEs2, k1, k2, sink);
+                    }
+                }
+            } catch (UncheckedIOException e){
+                throw e.getCause();
+            }
+        }
+        
+        Rank(collector);
+    } //end of constructor 7
+    
+    //Constructor 8: sharded. The pairs of orthant extensions are split into shardCount shards (see ShardJob), every shard is computed by the runner (for example, in a local process with LocalProcessShardRunner), all of them at the same time, and the journals of the shards, kept in workDirectory, are merged into the ranked list. The extension spaces should be built with ExtensionSpace(tree, leaf set, restricted), as the workers do; otherwise the workers find that their orthant extensions have other axes and the shards fail (see ShardJob.buildExtensionSpaces). Since the journals stay in workDirectory, running the same computation again only computes the pairs that are missing.
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, int shardCount, ShardRunner runner, File workDirectory) throws IOException{
+        if (shardCount < 1){
+            throw new IllegalArgumentException("The number of shards should be at least 1.");
+        }
+        this.policy = policy;
+        this.optimizer = optimizer;
+        
+        workDirectory.mkdirs();
+        File[] journalFiles = new File[shardCount];
+        ExecutorService service = Executors.newFixedThreadPool(shardCount, r -> {
+            Thread t = new Thread(r, "ExtensionSpaceDistance-shard");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int shard = 0; shard < shardCount; shard++){
+                ShardJob job = new ShardJob(ES1, ES2, restricted, policy, optimizer, shard, shardCount);
+                File journalFile = new File(workDirectory, "shard-" + shard + "-of-" + shardCount + ".journal");
+                journalFiles[shard] = journalFile;
+                futures.add(service.submit(() -> {
+                    runner.run(job, journalFile);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures){
+                future.get();
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The computation of the shards was interrupted.", e);
+        } catch (ExecutionException e){
+            if (e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException("An error occurred computing a shard.", e.getCause());
+        } finally {
+            service.shutdownNow();
+        }
+        
+        //Merging: the journals are opened with the fingerprint of these extension spaces, so a worker that built different ones is detected.
+        Vector<OrthExt> OEs1 = ES1.getOrthExts();
+        Vector<OrthExt> OEs2 = ES2.getOrthExts();
+        int oNum2 = OEs2.size();
+        OrthExtSolver solver = new OrthExtSolver(restricted, policy, optimizer);
+        RankedCollector collector = new RankedCollector();
+        BitSet merged = new BitSet(OEs1.size()*oNum2);
+        String fingerprint = PairJournal.fingerprint(ES1, ES2, restricted, policy, optimizer);
+        for (File journalFile : journalFiles){
+            try (PairJournal journal = new PairJournal(journalFile, fingerprint)){
+                for (PairJournal.Record record : journal.getRecords()){
+                    int position = record.getO1ID()*oNum2 + record.getO2ID();
+                    if (!merged.get(position)){
+                        merged.set(position);
+                        collector.add(solver.restore(OEs1.get(record.getO1ID()), OEs2.get(record.getO2ID()), record.getFinalValues1(), record.getFinalValues2(), record.getIterCount(), record.getStopCriterion()));
+                    }
+                }
+            }
+        }
+        if (merged.cardinality() != OEs1.size()*oNum2){
+            throw new IllegalStateException("The shards computed " + merged.cardinality() + " of the " + (OEs1.size()*oNum2) + " orthant pairs.");
+        }
+        
+        Rank(collector);
+    } //end of constructor 8
+    
+    //Constructor 9: screening and refinement. Only the topK shorter distances are wanted, so every pair of orthant extensions is first ranked by a cheap proxy, the distance between the starting trees of both orthant extensions (one geodesic, no optimization), and the full optimization is only run on the best ranked pairs: first the initial count of the plan (see ScreeningPlan), and then twice as many each round, until the topK pairs found (and their order) do not change from one round to the next, or all the pairs are refined. Once topK distances are known, the topK-th one is used as cut-off in the optimization of the next pairs. The proxy is only an upper bound of the distance of the pair, so a pair ranked low can still be shorter: unless all the pairs were refined, the result is heuristic (see isHeuristic). The list of orthant extension distances keeps only the topK shorter ones found, in increasing order.
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, ScreeningPlan plan){
+        int topK = plan.getTopK();
+        this.policy = policy;
+        this.optimizer = optimizer;
+        
+        Vector<OrthExt> OEs1 = ES1.getOrthExts();
+        Vector<OrthExt> OEs2 = ES2.getOrthExts();
+        
+        int oNum1 = OEs1.size();
+        int oNum2 = OEs2.size();
+        
+        //Screening: proxies for all the pairs, and the pairs (as k1*oNum2 + k2) in increasing order of their proxy.
+        proxies = new double[oNum1][oNum2];
+        Integer[] order = new Integer[oNum1*oNum2];
+        for (int k1 = 0; k1 < oNum1; k1++){
+            for (int k2 = 0; k2 < oNum2; k2++){
+                proxies[k1][k2] = (plan.getProxyCache() == null) ? getGeodesic(OEs1.get(k1).getStartTree(), OEs2.get(k2).getStartTree(), null).getDist() : plan.getProxyCache().approximateDistance(OEs1.get(k1).getStartTree(), OEs2.get(k2).getStartTree());
+                order[k1*oNum2 + k2] = k1*oNum2 + k2;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(proxies[a/oNum2][a%oNum2], proxies[b/oNum2][b%oNum2]));
+        
+        //Refinement, widening the refined pairs until the topK ones are stable.
+        OrthExtSolver solver = new OrthExtSolver(restricted, policy, optimizer);
+        RankedCollector collector = new RankedCollector(topK);
+        List<Long> previousTop = null;
+        int limit = Math.min(order.length, plan.getInitialCount());
+        refinedCount = 0;
+        abortedCount = 0;
+        while (true){
+            for (; refinedCount < limit; refinedCount++){
+                int k1 = order[refinedCount]/oNum2;
+                int k2 = order[refinedCount]%oNum2;
+                OrthExtDistance tempOED = solver.solve(OEs1.get(k1), OEs2.get(k2), null, collector.getThreshold());
+                if (tempOED.isPruned()){
+                    abortedCount++;
+                    continue;
+                }
+                collector.add(tempOED);
+            }
+            if (limit == order.length){
+                break;
+            }
+            List<Long> top = new ArrayList<Long>();
+            for (OrthExtDistance OED : collector.toSortedList()){
+                top.add(((long) OED.getO1ID())*oNum2 + OED.getO2ID());
+            }
+            if (top.equals(previousTop)){
+                break;
+            }
+            previousTop = top;
+            limit = (int) Math.min(order.length, 2L*limit);
+        }
+        heuristic = (refinedCount < order.length);
+        
+        Rank(collector);
+    } //end of constructor 9
+    
+    //Constructor from pairs already computed and ranked, used by PairResultPublisher when all the pairs have been published.
+    ExtensionSpaceDistance(RankedCollector collector, ConvergencePolicy policy, OrthExtOptimizer optimizer){
+        this.policy = policy;
+        this.optimizer = optimizer;
+        Rank(collector);
+    }
+    
+    //Computes the pair (k1, k2) and gives it to sink. If the extension spaces are the same (see PairSymmetry), a pair of equivalent orthant extensions is answered directly with distance zero, and an optimized pair also gives its mirror, so the mirrored pairs themselves are skipped.
+    private static void SolvePair(OrthExtSolver solver, PairSymmetry symmetry, Vector<OrthExt> OEs1, Vector<OrthExt> OEs2, int k1, int k2, Consumer<OrthExtDistance> sink){
+        switch (symmetry.getRole(k1, k2)){
+            case IDENTICAL:
+                sink.accept(solver.identical(OEs1.get(k1), OEs2.get(k2)));
+                break;
+            case SOLVE:
+                OrthExtDistance tempOED = solver.solve(OEs1.get(k1), OEs2.get(k2));
+                sink.accept(tempOED);
+                if (symmetry.isSymmetric() && (tempOED.getStopCriterion() != StopCriterion.CANCELLED)){
+                    int[] mirror = symmetry.getMirror(k1, k2);
+                    sink.accept(tempOED.mirror(OEs1.get(mirror[0]), OEs2.get(mirror[1])));
+                }
+                break;
+            case MIRROR:
+                break;
+        }
+    }
+    
+    //Takes the ranked list of orthant extension distances from the collector. The best trees, distance and geodesic are those of the pair with the shorter distance; if there are no pairs, the distance is infinite.
+    private void Rank(RankedCollector collector){
+        orderedOrthExtDistances = collector.toSortedList();
+        OrthExtDistance best = collector.getBest();
+        if (best == null){
+            Distance = Double.POSITIVE_INFINITY;
+            return;
+        }
+        bestTree1 = best.getFirstTree();
+        bestTree2 = best.getSecondTree();
+        Distance = best.getDistance();
+        bestGeode = best.getFinalGeode();
+    }
+    
     //Constructor 3: allowing for unrestricted version and parallelizing 
     /*public List<OrthExtDistance> ParallelComputation(Vector<OrthExt> OESS1, Vector<OrthExt> OESS2, boolean restricted, int numT) throws InterruptedException, ExecutionException {
         ExecutorService service = Executors.newFixedThreadPool(numT);
@@ -162,7 +594,76 @@ public class ExtensionSpaceDistance{
         return outputs;
     }*/
     
+    //Computes all the pairs of orthant extensions in a pool of numThreads threads of its own, each one taking the blocks of its queue of PairScheduler (all the pairs of an OE1 with the same worker, longest first), and ranks them in collector.
+    private void InPool(Vector<OrthExt> OEs1, Vector<OrthExt> OEs2, boolean restricted, int numThreads, RankedCollector collector){
+        PairScheduler scheduler = new PairScheduler(OEs1, OEs2, numThreads);
+        PairSymmetry symmetry = new PairSymmetry(OEs1, OEs2);
+        symmetric = symmetry.isSymmetric();
+        
+        //Each worker keeps its own solver and its own collector, so the pairs are computed without synchronization and without a new engine per pair. The collectors are merged at the end.
+        List<RankedCollector> workerCollectors = new ArrayList<RankedCollector>(numThreads);
+        for (int w = 0; w < numThreads; w++){
+            workerCollectors.add(new RankedCollector(collector.getCapacity()));
+        }
+        
+        ThreadFactory factory = new ThreadFactory(){
+            private int created = 0;
+            public synchronized Thread newThread(Runnable r){
+                Thread t = new Thread(r, "ExtensionSpaceDistance-worker-" + (created++));
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        ExecutorService service = Executors.newFixedThreadPool(numThreads, factory);
+        try {
+            //One task per worker, which takes the blocks of its queue until there are none left.
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int w = 0; w < numThreads; w++){
+                final int worker = w;
+                futures.add(service.submit(() -> {
+                    OrthExtSolver solver = new OrthExtSolver(restricted, policy, optimizer);
+                    RankedCollector workerCollector = workerCollectors.get(worker);
+                    PairScheduler.Block block;
+                    while ((block = scheduler.nextBlock(worker)) != null){
+                        for (int k2 = block.getFrom(); k2 < block.getTo(); k2++){
+                            SolvePair(solver, symmetry, OEs1, OEs2, block.getK1(), k2, workerCollector::add);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures){
+                future.get();
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The computation of the orthant pairs was interrupted.", e);
+        } catch (ExecutionException e){
+            throw new RuntimeException("An error occurred computing an orthant pair.", e.getCause());
+        } finally {
+            service.shutdownNow();
+        }
+        
+        //Every task has finished (future.get), so the collectors of the workers can be read.
+        for (RankedCollector workerCollector : workerCollectors){
+            collector.merge(workerCollector);
+        }
+    }
+    
     public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, int numThreads){
+        this(ES1, ES2, restricted, numThreads, ConvergencePolicy.certified());
+    }
+    
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, int numThreads, ConvergencePolicy policy){
+        this(ES1, ES2, restricted, numThreads, policy, new ReducedGradientOptimizer());
+    }
+    
+    //Constructor 3 with a convergence policy and an optimizer. The pairs are computed in a pool of numThreads threads created for this computation (see InPool), so the common pool of the JVM is not used.
+    public ExtensionSpaceDistance(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, int numThreads, ConvergencePolicy policy, OrthExtOptimizer optimizer){
+        if (numThreads < 1){
+            throw new IllegalArgumentException("The number of threads should be at least 1.");
+        }
+        this.policy = policy;
+        this.optimizer = optimizer;
         
         Vector<OrthExt> OEs1 = ES1.getOrthExts();
         Vector<OrthExt> OEs2 = ES2.getOrthExts();
@@ -177,14 +678,11 @@ public class ExtensionSpaceDistance{
             System.out.println("An error occurred");
         }*/
         
-        orderedOrthExtDistances = OEs1.parallelStream().flatMap(OE1 -> OEs2.parallelStream().map(OE2 -> new OrthExtDistance(OE1, OE2, restricted))).collect(Collectors.toList());
+        RankedCollector collector = new RankedCollector();
+        InPool(OEs1, OEs2, restricted, numThreads, collector);
 
         
-        //The best trees, distance and geodesic will be those at the beginning of our list. 
-        bestTree1 = orderedOrthExtDistances.get(0).getFirstTree();
-        bestTree2 = orderedOrthExtDistances.get(0).getSecondTree();
-        Distance = orderedOrthExtDistances.get(0).getDistance();
-        bestGeode = orderedOrthExtDistances.get(0).getFinalGeode();
+        Rank(collector);
     } //end of constructor 3*/
     
     //Printers and Getters
@@ -209,6 +707,163 @@ public class ExtensionSpaceDistance{
         return bestGeode;
     }
     
+    public ConvergencePolicy getPolicy(){
+        return policy;
+    }
+    
+    public OrthExtOptimizer getOptimizer(){
+        return optimizer;
+    }
+    
+    public StartStrategy getStartStrategy(){
+        return startStrategy;
+    }
+    
+    //Number of pairs of orthant extensions that started from the solution of a neighbouring pair.
+    public int getWarmStartedCount(){
+        int count = 0;
+        for (OrthExtDistance OED : orderedOrthExtDistances){
+            if (OED.isWarmStarted()){
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    //Number of pairs of orthant extensions that started from the pair-aware starting point.
+    public int getPairAwareStartedCount(){
+        int count = 0;
+        for (OrthExtDistance OED : orderedOrthExtDistances){
+            if (OED.isPairAwareStarted()){
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    //Total number of iterations and geodesics used over all the pairs of orthant extensions.
+    public long getTotalIterations(){
+        long total = 0;
+        for (OrthExtDistance OED : orderedOrthExtDistances){
+            total += OED.getIterCount();
+        }
+        return total;
+    }
+    
+    public long getTotalGeodesicCount(){
+        long total = 0;
+        for (OrthExtDistance OED : orderedOrthExtDistances){
+            total += OED.getGeodesicCount();
+        }
+        return total;
+    }
+    
+    //How the evaluation ended if the pairs were computed in a PairEvaluationScope (constructor 5), null otherwise.
+    public PairEvaluationScope.Outcome getScopeOutcome(){
+        return scopeOutcome;
+    }
+    
+    public int getRestoredCount(){
+        return restoredCount;
+    }
+    
+    public boolean isSymmetric(){
+        return symmetric;
+    }
+    
+    //Record of all the pairs in summary mode (see constructor 6), null otherwise.
+    public PairSummaryTable getSummary(){
+        return summary;
+    }
+    
+    //Branch and bound statistics (see constructor 4).
+    public boolean isPruned(){
+        return lowerBounds != null;
+    }
+    
+    public int getPrunedCount(){
+        return prunedCount;
+    }
+    
+    public int getAbortedCount(){
+        return abortedCount;
+    }
+    
+    //Number of pairs of orthant extensions whose optimization was started (including the aborted ones).
+    public int getOptimizedCount(){
+        if (proxies != null){
+            return refinedCount;
+        }
+        if (lowerBounds == null){
+            return orderedOrthExtDistances.size();
+        }
+        return lowerBounds.length*lowerBounds[0].length - prunedCount + abortedCount;
+    }
+    
+    //Lower bound of the distance between the orthant extensions with IDs O1ID and O2ID (NaN unless the pairs were computed by branch and bound).
+    public double getLowerBound(int O1ID, int O2ID){
+        if (lowerBounds == null){
+            return Double.NaN;
+        }
+        return lowerBounds[O1ID][O2ID];
+    }
+    
+    //Screening statistics (see constructor 9).
+    //True if the pairs were screened and not all of them were refined, so a shorter pair may have been missed.
+    public boolean isHeuristic(){
+        return heuristic;
+    }
+    
+    //Proxy of the distance between the orthant extensions with IDs O1ID and O2ID (NaN unless the pairs were screened).
+    public double getProxy(int O1ID, int O2ID){
+        if (proxies == null){
+            return Double.NaN;
+        }
+        return proxies[O1ID][O2ID];
+    }
+    
+    public void PrintScreeningSummary(){
+        if (proxies == null){
+            System.out.println("The orthant pairs were not screened.");
+            return;
+        }
+        int total = proxies.length*proxies[0].length;
+        System.out.println("Screening: " + refinedCount + " of " + total + " orthant pairs refined, " + abortedCount + " of them abandoned at the cut-off" + (heuristic ? " (heuristic result)" : " (all pairs refined)"));
+        System.out.println("   Geodesics used: " + getTotalGeodesicCount() + ", iterations: " + getTotalIterations());
+    }
+    
+    public void PrintPruningSummary(){
+        if (lowerBounds == null){
+            System.out.println("The orthant pairs were not computed by branch and bound.");
+            return;
+        }
+        int total = lowerBounds.length*lowerBounds[0].length;
+        double smallestBound = Double.POSITIVE_INFINITY;
+        double largestBound = 0;
+        int boundsBelowDistance = 0;
+        for (double[] row : lowerBounds){
+            for (double bound : row){
+                smallestBound = Math.min(smallestBound, bound);
+                largestBound = Math.max(largestBound, bound);
+                if (bound <= Distance){
+                    boundsBelowDistance++;
+                }
+            }
+        }
+        System.out.println("Branch and bound: " + getOptimizedCount() + " of " + total + " orthant pairs optimized, " + prunedCount + " pruned (" + (100.0*prunedCount/total) + "%), " + abortedCount + " of them during the optimization");
+        System.out.println("   Lower bounds between " + smallestBound + " and " + largestBound + ", " + boundsBelowDistance + " of them not above the distance " + Distance);
+        System.out.println("   Geodesics used: " + getTotalGeodesicCount() + ", iterations: " + getTotalIterations());
+    }
+    
+    //Number of pairs of orthant extensions stopped by each criterion.
+    public Map<StopCriterion, Integer> getStopCriterionCounts(){
+        Map<StopCriterion, Integer> counts = new EnumMap<StopCriterion, Integer>(StopCriterion.class);
+        for (OrthExtDistance OED : orderedOrthExtDistances){
+            counts.merge(OED.getStopCriterion(), 1, Integer::sum);
+        }
+        return counts;
+    }
+    
     public void PrintSummary(boolean withTrees, boolean withIterCount){
         System.out.println("There are a total of "+ orderedOrthExtDistances.size()+" orthant pairs");
         for(int i = 0; i < orderedOrthExtDistances.size(); i++){
@@ -222,7 +877,7 @@ public class ExtensionSpaceDistance{
                 System.out.println(treePrinter.toString(orderedOrthExtDistances.get(i).getSecondTree()));
             }
             if (withIterCount){
-                System.out.println("   Number of Iterations: " + orderedOrthExtDistances.get(i).getIterCount());
+                System.out.println("   Number of Iterations: " + orderedOrthExtDistances.get(i).getIterCount() + " (stopped by " + orderedOrthExtDistances.get(i).getStopCriterion() + ")");
             }
             System.out.println("---------------------------------------------------------------");
         }
@@ -244,7 +899,7 @@ public class ExtensionSpaceDistance{
                 System.out.println(treePrinter.toString(orderedOrthExtDistances.get(i).getSecondTree()));
             }
             if (withIterCount){
-                System.out.println("   Number of Iterations: " + orderedOrthExtDistances.get(i).getIterCount());
+                System.out.println("   Number of Iterations: " + orderedOrthExtDistances.get(i).getIterCount() + " (stopped by " + orderedOrthExtDistances.get(i).getStopCriterion() + ")");
             }
             System.out.println("---------------------------------------------------------------");
         }
@@ -274,7 +929,7 @@ public class ExtensionSpaceDistance{
                     myWriter.write("  Best Tree 2: \n" + treePrinter.toString(orderedOrthExtDistances.get(i).getSecondTree()) + "\n");   
                 }
                 if (withIterCount){
-                    myWriter.write("   Number of Iterations: " + orderedOrthExtDistances.get(i).getIterCount());
+                    myWriter.write("   Number of Iterations: " + orderedOrthExtDistances.get(i).getIterCount() + " (stopped by " + orderedOrthExtDistances.get(i).getStopCriterion() + ")\n");
                 }
                 myWriter.write("---------------------------------------------------------------\n");
                 myWriter.write(" \n");
@@ -315,7 +970,7 @@ public class ExtensionSpaceDistance{
                     myWriter.write("  Best Tree 2: \n" + treePrinter.toString(orderedOrthExtDistances.get(i).getSecondTree()) + "\n");   
                 }
                 if (withIterCount){
-                    myWriter.write("   Number of Iterations: " + orderedOrthExtDistances.get(i).getIterCount());
+                    myWriter.write("   Number of Iterations: " + orderedOrthExtDistances.get(i).getIterCount() + " (stopped by " + orderedOrthExtDistances.get(i).getStopCriterion() + ")\n");
                 }
                 myWriter.write("---------------------------------------------------------------\n");
                 myWriter.write(" \n");
@@ -332,62 +987,19 @@ public class ExtensionSpaceDistance{
     // Graphical representations to explore the relationship between NNI and shorter distances. 
     
     //We are creating a graph that shows, for each pair of orthants, which are "adjacent", which means: one of the orthants is identical to the other for one of the extension spaces, and the other ones in the pair are neighbours by rotation.
-    public Map<Integer, List<Integer>> JointNNI(ExtensionSpace ES1, ExtensionSpace ES2){
-        orthantGraph connectCluster1 = ES1.getConnectCluster();
-        orthantGraph connectCluster2 = ES2.getConnectCluster();
-        
-        Map<Integer, List<Integer>> ReturnValue = new HashMap<>();
-        
-        for(int i = 0; i < orderedOrthExtDistances.size(); i++){
-            List<Integer> adjTemp = new ArrayList<Integer>();
-            for(int j = 0; j < orderedOrthExtDistances.size(); j++){
-                if(((orderedOrthExtDistances.get(i).getO1ID() == orderedOrthExtDistances.get(j).getO1ID()) && (connectCluster2.getAdjIDsList(orderedOrthExtDistances.get(i).getO2ID()).contains(orderedOrthExtDistances.get(j).getO2ID()))) || ((orderedOrthExtDistances.get(i).getO2ID() == orderedOrthExtDistances.get(j).getO2ID()) && (connectCluster1.getAdjIDsList(orderedOrthExtDistances.get(i).getO1ID()).contains(orderedOrthExtDistances.get(j).getO1ID())))){
-                    adjTemp.add(j);
-                }
-            }
-            ReturnValue.put(i, adjTemp);
-            
-        }
-        
-        return(ReturnValue);
+    //The vertices are the positions in the ordered list of orthant extension distances, and the graph is given in compressed rows (see PairGraph; toMap gives it as adjacency lists).
+    public PairGraph JointNNI(ExtensionSpace ES1, ExtensionSpace ES2){
+        return PairGraph.joint(orderedOrthExtDistances, ES1.getConnectCluster(), ES2.getConnectCluster());
     }
     
-    public Map<Integer, List<Integer>> StartTreeNNI(ExtensionSpace ES1){
-        orthantGraph connectCluster1 = ES1.getConnectCluster();
-        
-        Map<Integer, List<Integer>> ReturnValue = new HashMap<>();
-        
-        for(int i = 0; i < orderedOrthExtDistances.size(); i++){
-            List<Integer> adjTemp = new ArrayList<Integer>();
-            for(int j = 0; j < orderedOrthExtDistances.size(); j++){
-                if((orderedOrthExtDistances.get(i).getO1ID() == orderedOrthExtDistances.get(j).getO1ID()) || (connectCluster1.getAdjIDsList(orderedOrthExtDistances.get(i).getO1ID()).contains(orderedOrthExtDistances.get(j).getO1ID()))){
-                    adjTemp.add(j);
-                }
-            }
-            ReturnValue.put(i, adjTemp);
-            
-        }
-        
-        return(ReturnValue);
+    //Graph joining the pairs whose orthants in the first extension space are the same or neighbours by rotation.
+    public PairGraph StartTreeNNI(ExtensionSpace ES1){
+        return PairGraph.startTree(orderedOrthExtDistances, ES1.getConnectCluster());
     }
     
-    public Map<Integer, List<Integer>> EndTreeNNI(ExtensionSpace ES2){
-        orthantGraph connectCluster2 = ES2.getConnectCluster();
-        
-        Map<Integer, List<Integer>> ReturnValue = new HashMap<>();
-        
-        for(int i = 0; i < orderedOrthExtDistances.size(); i++){
-            List<Integer> adjTemp = new ArrayList<Integer>();
-            for(int j = 0; j < orderedOrthExtDistances.size(); j++){
-                if((connectCluster2.getAdjIDsList(orderedOrthExtDistances.get(i).getO2ID()).contains(orderedOrthExtDistances.get(j).getO2ID())) || (orderedOrthExtDistances.get(i).getO2ID() == orderedOrthExtDistances.get(j).getO2ID())){
-                    adjTemp.add(j);
-                }
-            }
-            ReturnValue.put(i, adjTemp);
-            
-        }
-        
-        return(ReturnValue);
+    //Graph joining the pairs whose orthants in the second extension space are the same or neighbours by rotation.
+    public PairGraph EndTreeNNI(ExtensionSpace ES2){
+        return PairGraph.endTree(orderedOrthExtDistances, ES2.getConnectCluster());
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,214 @@
+/** This is intended as a factory of extension spaces that reuses the enumeration of the maximal orthants (the edgeCrossGraph, its maximal independent sets and the resulting orthantGraph) between trees with the same topology. The enumeration only depends on the splits of the original tree and on the complete leaf set (and on the mode), not on the lengths of the edges, and it is the expensive part of building an ExtensionSpace. Samples of trees, such as bootstrap or MCMC samples, repeat a few topologies many times, so only the orthant extensions, which depend on the lengths (fixed lengths and starting tree), are built again for every tree (see constructor 3 of ExtensionSpace).
+
+The topology is identified by a canonical key: the complete leaf set in its order, the mode, the leaves of the tree and the set of its splits written over the complete leaf set, each one as the side without the last leaf of the tree. So the order of the leaves or of the edges inside the tree does not matter. The enumerations are kept in up to 16 segments, each one a LinkedHashMap in access order with its own lock and a share of the maximum number of topologies, and the least recently used one is evicted when a segment is full. The shares add up to the maximum, so the factory never keeps more topologies than that. When several threads ask for the same new topology at the same time, only one of them enumerates it and the others wait for it.
+
+The orthantGraphs in the cache are shared by all the extension spaces built from them, so they should not be modified.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import distanceAlg1.*;
+
+public class ExtensionSpaceFactory{
+    private static final int SEGMENTS = 16;
+
+    private int maxEntries; //Maximum number of topologies kept.
+    private List<LinkedHashMap<Key, CompletableFuture<orthantGraph>>> segments;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+
+    //Canonical key of a topology
+    private static class Key{
+        private List<Object> parts;
+        private int hash;
+
+        Key(List<Object> parts){
+            this.parts = parts;
+            this.hash = parts.hashCode();
+        }
+
+        public int hashCode(){
+            return hash;
+        }
+
+        public boolean equals(Object o){
+            if (!(o instanceof Key)){
+                return false;
+            }
+            Key other = (Key) o;
+            return (hash == other.hash) && parts.equals(other.parts);
+        }
+    }
+
+    //Constructor
+    public ExtensionSpaceFactory(int maxEntries){
+        if (maxEntries < 1){
+            throw new IllegalArgumentException("The extension space factory should keep at least 1 topology.");
+        }
+        this.maxEntries = maxEntries;
+
+        //The capacities of the segments add up to maxEntries, so a small factory has fewer segments (one per topology).
+        int segmentNum = Math.min(SEGMENTS, maxEntries);
+        segments = new ArrayList<LinkedHashMap<Key, CompletableFuture<orthantGraph>>>(segmentNum);
+        for (int i = 0; i < segmentNum; i++){
+            final int perSegment = maxEntries/segmentNum + ((i < maxEntries%segmentNum) ? 1 : 0);
+            segments.add(new LinkedHashMap<Key, CompletableFuture<orthantGraph>>(16, 0.75f, true){
+                protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<orthantGraph>> eldest){
+                    if (size() > perSegment){
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            });
+        }
+    }
+
+    //Extension space of the tree t in the space with the complete leaf set cLeafSet, enumerating its orthants only if no tree with the same topology is in the cache.
+    public ExtensionSpace get(PhyloTree t, Vector<String> cLeafSet, boolean restricted){
+        return new ExtensionSpace(t, cLeafSet, restricted, getOrthants(t, cLeafSet, restricted));
+    }
+
+    //The enumeration of the maximal orthants of the extension space of t.
+    public orthantGraph getOrthants(PhyloTree t, Vector<String> cLeafSet, boolean restricted){
+        Key key = KeyOf(t, cLeafSet, restricted);
+        LinkedHashMap<Key, CompletableFuture<orthantGraph>> segment = segments.get((key.hash & 0x7fffffff) % segments.size());
+
+        CompletableFuture<orthantGraph> enumeration;
+        boolean owner = false;
+        synchronized (segment){
+            enumeration = segment.get(key);
+            if (enumeration == null){
+                enumeration = new CompletableFuture<orthantGraph>();
+                segment.put(key, enumeration);
+                owner = true;
+            }
+        }
+
+        if (!owner){
+            hits.incrementAndGet();
+            try {
+                return enumeration.join();
+            } catch (CompletionException e){
+                throw new RuntimeException("The enumeration of the orthants failed in another thread.", e.getCause());
+            }
+        }
+
+        //The first thread asking for the topology enumerates it outside the lock.
+        misses.incrementAndGet();
+        try {
+            edgeCrossGraph GraphAllEdges = new edgeCrossGraph(new PhyloTree(t), cLeafSet, restricted);
+            GraphAllEdges.MIScalculator();
+            orthantGraph connectCluster = new orthantGraph(GraphAllEdges);
+            enumeration.complete(connectCluster);
+            return connectCluster;
+        } catch (RuntimeException | Error e){
+            synchronized (segment){
+                segment.remove(key, enumeration);
+            }
+            enumeration.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static Key KeyOf(PhyloTree t, Vector<String> cLeafSet, boolean restricted){
+        BitSet originalLeaves = new BitSet(cLeafSet.size());
+        Set<BitSet> splits = CanonicalSplits(t, cLeafSet, originalLeaves);
+
+        List<Object> parts = new ArrayList<Object>();
+        parts.add(new ArrayList<String>(cLeafSet));
+        parts.add(restricted);
+        parts.add(originalLeaves);
+        parts.add(splits);
+        return new Key(parts);
+    }
+
+    //The splits of the edges of t over the complete leaf set, each one as the side without the last leaf of t, so they do not depend on the order of the leaves or edges inside t. The leaves of t are set in originalLeaves.
+    static Set<BitSet> CanonicalSplits(PhyloTree t, Vector<String> cLeafSet, BitSet originalLeaves){
+        Vector<String> oLeafSet = t.getLeaf2NumMap();
+        int[] orgLeaves2compLeaves = new int[oLeafSet.size()];
+        int lastLeaf = -1;
+        for (int i = 0; i < oLeafSet.size(); i++){
+            orgLeaves2compLeaves[i] = cLeafSet.indexOf(oLeafSet.get(i));
+            if (orgLeaves2compLeaves[i] == -1){
+                throw new IllegalArgumentException("The tree has the leaf " + oLeafSet.get(i) + ", which is not part of the complete leaf set.");
+            }
+            originalLeaves.set(orgLeaves2compLeaves[i]);
+            lastLeaf = Math.max(lastLeaf, orgLeaves2compLeaves[i]);
+        }
+
+        Set<BitSet> splits = new HashSet<BitSet>();
+        for (PhyloTreeEdge e : t.getEdges()){
+            BitSet split = new BitSet(cLeafSet.size());
+            BitSet partition = e.getOriginalEdge().getPartition();
+            for (int i = 0; i < oLeafSet.size(); i++){
+                if (partition.get(i)){
+                    split.set(orgLeaves2compLeaves[i]);
+                }
+            }
+            if (split.get(lastLeaf)){
+                split.xor(originalLeaves);
+            }
+            splits.add(split);
+        }
+        return splits;
+    }
+
+    //Empties the cache and resets the metrics.
+    public void clear(){
+        for (LinkedHashMap<Key, CompletableFuture<orthantGraph>> segment : segments){
+            synchronized (segment){
+                segment.clear();
+            }
+        }
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    //Metrics
+    public long getHits(){
+        return hits.get();
+    }
+
+    public long getMisses(){
+        return misses.get();
+    }
+
+    public long getEvictions(){
+        return evictions.get();
+    }
+
+    public double getHitRate(){
+        long total = hits.get() + misses.get();
+        return (total == 0) ? 0 : ((double) hits.get())/total;
+    }
+
+    public int size(){
+        int total = 0;
+        for (LinkedHashMap<Key, CompletableFuture<orthantGraph>> segment : segments){
+            synchronized (segment){
+                total += segment.size();
+            }
+        }
+        return total;
+    }
+
+    public int getMaxEntries(){
+        return maxEntries;
+    }
+
+    public void PrintSummary(){
+        System.out.println("Extension space factory: " + size() + " of " + maxEntries + " topologies, " + getHits() + " hits, " + getMisses() + " misses (hit rate " + getHitRate() + "), " + getEvictions() + " evictions");
+    }
+}
@@ -0,0 +1,240 @@
+/** This is intended as a bounded cache of geodesics between pairs of trees, shared by all the pairs of orthant extensions (and the threads computing them). Identical pairs of trees appear often, for example the starting trees of an OrthExt paired with many orthants, or pairs whose optimum is at the same trees, and the cache avoids computing the same geodesic with PolyMain.getGeodesic again.
+
+Each pair of trees is identified by a canonical key: the leaf sets of both trees, the splits of the edges (as the words of their bit sets) sorted, and the exact lengths of the interior and leaf edges. The geodesic goes from the first to the second tree, so the order of the pair is part of the key. The keys keep everything they need, with nothing interned in the cache, so the memory used is bounded by the number of entries. The entries are split in up to 16 segments, each one a LinkedHashMap in access order with its own lock and a share of the maximum number of entries, and the least recently used entry of a segment is evicted when the segment is full. The shares add up to the maximum, so the cache never keeps more geodesics than that, although an entry can be evicted while other segments still have room. The geodesics returned are shared, so they should not be modified.
+
+getGeodesicCached only answers with the geodesic of the very same pair of trees, so it can be used for the final geodesic of a pair of orthant extensions. With a positive quantum, approximateDistance also answers with the distance of a pair whose lengths round to the same multiples of the quantum (a proxy, as in the screening of ExtensionSpaceDistance, see ScreeningPlan); those entries have their own keys and are never returned by getGeodesicCached.
+
+There is no global cache: it is given explicitly to the computations that use it (see OrthExtSolver, DistanceMatrix and ScreeningPlan), which compute every geodesic with PolyMain.getGeodesic when they have none.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import distanceAlg1.*;
+import static polyAlg.PolyMain.getGeodesic;
+
+public class GeodesicCache{
+    private static final int SEGMENTS = 16;
+
+    private int maxEntries; //Maximum number of geodesics kept.
+    private double quantum; //Lengths are rounded to multiples of the quantum in the keys of approximateDistance (0 for exact lengths).
+    private List<LinkedHashMap<Key, Geodesic>> segments;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+
+    //Canonical key of a pair of trees. The leaf sets are kept so trees on different leaf orders never share keys.
+    private static class Key{
+        private long[] data;
+        private List<String> leaves1;
+        private List<String> leaves2;
+        private int hash;
+
+        Key(long[] data, List<String> leaves1, List<String> leaves2){
+            this.data = data;
+            this.leaves1 = leaves1;
+            this.leaves2 = leaves2;
+            this.hash = 31*(31*Arrays.hashCode(data) + leaves1.hashCode()) + leaves2.hashCode();
+        }
+
+        public int hashCode(){
+            return hash;
+        }
+
+        public boolean equals(Object o){
+            if (!(o instanceof Key)){
+                return false;
+            }
+            Key other = (Key) o;
+            return (hash == other.hash) && Arrays.equals(data, other.data) && leaves1.equals(other.leaves1) && leaves2.equals(other.leaves2);
+        }
+    }
+
+    //Constructor
+    public GeodesicCache(int maxEntries, double quantum){
+        if (maxEntries < 1){
+            throw new IllegalArgumentException("The geodesic cache should keep at least 1 entry.");
+        }
+        if (quantum < 0){
+            throw new IllegalArgumentException("The quantum of the geodesic cache cannot be negative.");
+        }
+        this.maxEntries = maxEntries;
+        this.quantum = quantum;
+
+        //The capacities of the segments add up to maxEntries, so a small cache has fewer segments (one per entry).
+        int segmentNum = Math.min(SEGMENTS, maxEntries);
+        segments = new ArrayList<LinkedHashMap<Key, Geodesic>>(segmentNum);
+        for (int i = 0; i < segmentNum; i++){
+            final int perSegment = maxEntries/segmentNum + ((i < maxEntries%segmentNum) ? 1 : 0);
+            segments.add(new LinkedHashMap<Key, Geodesic>(16, 0.75f, true){
+                protected boolean removeEldestEntry(Map.Entry<Key, Geodesic> eldest){
+                    if (size() > perSegment){
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            });
+        }
+    }
+
+    //Cache with exact lengths.
+    public GeodesicCache(int maxEntries){
+        this(maxEntries, 0);
+    }
+
+    //Geodesic from T1 to T2 with the cache, or computed directly if cache is null.
+    public static Geodesic geodesic(GeodesicCache cache, PhyloTree T1, PhyloTree T2){
+        if (cache == null){
+            return getGeodesic(T1, T2, null);
+        }
+        return cache.getGeodesicCached(T1, T2);
+    }
+
+    //Geodesic from T1 to T2, computed only if the same pair of trees (with the same exact lengths) is not in the cache.
+    public Geodesic getGeodesicCached(PhyloTree T1, PhyloTree T2){
+        return Lookup(KeyOf(T1, T2, false), T1, T2);
+    }
+
+    //Distance from T1 to T2, or, with a positive quantum, the distance of a pair in the cache whose lengths are rounded to the same multiples of the quantum. It then differs from the distance of T1 and T2 at most by the distances from each tree to the one in the cache, whose lengths differ by less than a quantum.
+    public double approximateDistance(PhyloTree T1, PhyloTree T2){
+        if (quantum == 0){
+            return getGeodesicCached(T1, T2).getDist();
+        }
+        return Lookup(KeyOf(T1, T2, true), T1, T2).getDist();
+    }
+
+    private Geodesic Lookup(Key key, PhyloTree T1, PhyloTree T2){
+        LinkedHashMap<Key, Geodesic> segment = segments.get((key.hash & 0x7fffffff) % segments.size());
+        synchronized (segment){
+            Geodesic cached = segment.get(key);
+            if (cached != null){
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        //The geodesic is computed outside of the lock; if two threads compute the same one, the second simply replaces the first.
+        Geodesic geode = getGeodesic(T1, T2, null);
+        synchronized (segment){
+            segment.put(key, geode);
+        }
+        return geode;
+    }
+
+    private long Quantise(double length, boolean quantised){
+        if (!quantised){
+            return Double.doubleToLongBits(length + 0.0);
+        }
+        return Math.round(length/quantum);
+    }
+
+    //Lexicographic order of the words of two splits.
+    private static int CompareWords(long[] a, long[] b){
+        for (int w = 0; w < Math.min(a.length, b.length); w++){
+            if (a[w] != b[w]){
+                return Long.compare(a[w], b[w]);
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    //Appends the canonical description of the tree: number of edges, (number of words, words of the split, length) sorted by split, and the leaf lengths.
+    private void Describe(PhyloTree T, boolean quantised, ArrayList<Long> out){
+        Vector<PhyloTreeEdge> edges = T.getEdges();
+        Integer[] order = new Integer[edges.size()];
+        long[][] words = new long[edges.size()][];
+        for (int i = 0; i < edges.size(); i++){
+            words[i] = edges.get(i).getPartition().toLongArray();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> CompareWords(words[a], words[b]));
+        out.add((long) edges.size());
+        for (int i : order){
+            out.add((long) words[i].length);
+            for (long word : words[i]){
+                out.add(word);
+            }
+            out.add(Quantise(edges.get(i).getNorm(), quantised));
+        }
+        EdgeAttribute[] leafAttribs = T.getLeafEdgeAttribs();
+        if (leafAttribs != null){
+            for (EdgeAttribute ea : leafAttribs){
+                out.add((ea == null) ? Long.MIN_VALUE : Quantise(ea.get(0), quantised));
+            }
+        }
+    }
+
+    //Key of the pair, exact or with the lengths rounded to the quantum. The first value tells both kinds apart.
+    private Key KeyOf(PhyloTree T1, PhyloTree T2, boolean quantised){
+        ArrayList<Long> description = new ArrayList<Long>();
+        description.add(quantised ? 1L : 0L);
+        Describe(T1, quantised, description);
+        description.add(Long.MAX_VALUE); //Separator between the trees
+        Describe(T2, quantised, description);
+        long[] data = new long[description.size()];
+        for (int i = 0; i < data.length; i++){
+            data[i] = description.get(i);
+        }
+        return new Key(data, new ArrayList<String>(T1.getLeaf2NumMap()), new ArrayList<String>(T2.getLeaf2NumMap()));
+    }
+
+    //Empties the cache and resets the metrics.
+    public void clear(){
+        for (LinkedHashMap<Key, Geodesic> segment : segments){
+            synchronized (segment){
+                segment.clear();
+            }
+        }
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    //Metrics
+    public long getHits(){
+        return hits.get();
+    }
+
+    public long getMisses(){
+        return misses.get();
+    }
+
+    public long getEvictions(){
+        return evictions.get();
+    }
+
+    public double getHitRate(){
+        long total = hits.get() + misses.get();
+        return (total == 0) ? 0 : ((double) hits.get())/total;
+    }
+
+    public int size(){
+        int total = 0;
+        for (LinkedHashMap<Key, Geodesic> segment : segments){
+            synchronized (segment){
+                total += segment.size();
+            }
+        }
+        return total;
+    }
+
+    public int getMaxEntries(){
+        return maxEntries;
+    }
+
+    public double getQuantum(){
+        return quantum;
+    }
+
+    public void PrintSummary(){
+        System.out.println("Geodesic cache: " + size() + " of " + maxEntries + " entries, " + getHits() + " hits, " + getMisses() + " misses (hit rate " + getHitRate() + "), " + getEvictions() + " evictions");
+    }
+}
@@ -0,0 +1,676 @@
+/** This is intended as a light version of the GTP geodesic algorithm (Owen and Provan, 2011), specialised for the optimization inside OrthExtDistance. The splits of both trees are fixed while the optimization runs, and only their lengths change, so the incompatibility between splits is computed once and the geodesic is then obtained from primitive arrays of lengths, without building PhyloTree, Geodesic or RatioSequence objects.
+
+The kernel returns the length of the geodesic, the partition of the edges in ratios (the ratio sequence), and the gradient of half the squared length with respect to the lengths of both trees, which are the values used by the reduced gradient method.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import distanceAlg1.*;
+
+public class GeodesicKernel{
+    private static final double TOLERANCE = 0.000000000001; //A vertex cover of weight smaller than 1 - TOLERANCE refines a ratio.
+    private static final double FLOW_EPSILON = 0.00000000000001; //Residual capacities below this value are considered zero.
+
+    private int n1; //Number of interior edges in the first tree
+    private int n2; //Number of interior edges in the second tree
+    private int words; //Number of long words used per row of the incompatibility matrix
+    private long[] incompatible; //Bit matrix: bit j of row i is set if the i-th split of the first tree crosses the j-th split of the second tree.
+
+    private int[] common1; //Index of the same split in the second tree, -1 if there is none.
+    private int[] common2; //Index of the same split in the first tree, -1 if there is none.
+    private boolean[] alone1; //Splits in the first tree compatible with every split of the second tree, but not present in it.
+    private boolean[] alone2;
+
+    //Connected components of the incompatibility graph, which are the starting ratios of the algorithm.
+    private int numComponents;
+    private int[] compAStart; //Each component is a segment [compAStart, compAEnd) of permA and [compBStart, compBEnd) of permB
+    private int[] compAEnd;
+    private int[] compBStart;
+    private int[] compBEnd;
+    private int[] compPermA; //Order of the edges of each tree as they appear in the components.
+    private int[] compPermB;
+
+    private boolean ownArrays; //True if the incompatibility matrix and the common maps were allocated by the kernel, so reset can write them.
+    private int capacity1; //Number of edges of each tree the scratch arrays have room for (see Reserve).
+    private int capacity2;
+    private BitSet splitScratch = new BitSet();
+
+    //Scratch space, kept between calls (and between pairs of trees, see reset) so no allocation happens when computing a geodesic.
+    private double[] len1;
+    private double[] len2;
+    private double[] leaf1;
+    private double[] leaf2;
+    private int[] permA;
+    private int[] permB;
+    private int[] tempA;
+    private int[] tempB;
+    private int[] stack;
+    private double[] resA;
+    private double[] resB;
+    private double[] flow;
+    private boolean[] visitedA;
+    private boolean[] visitedB;
+    private int[] prevA;
+    private int[] prevB;
+    private int[] queue;
+
+    //Ratio sequence of the last geodesic computed. Ratio r contains the edges permA[ratioAStart[r]..ratioAEnd[r]) of the first tree and permB[ratioBStart[r]..ratioBEnd[r]) of the second tree.
+    private int numRatios;
+    private int[] ratioAStart;
+    private int[] ratioAEnd;
+    private int[] ratioBStart;
+    private int[] ratioBEnd;
+    private double[] ratioE; //Norm of the edges of the first tree in each ratio
+    private double[] ratioF; //Norm of the edges of the second tree in each ratio
+    private int[] ratioOrder; //Ratios sorted by E/F, which is the order in which they appear in the geodesic
+    private int[] ratioOf1; //Position in the ratio sequence of every edge in the first tree, -1 for common edges.
+    private int[] ratioOf2;
+
+    private double distance; //Length of the last geodesic computed
+    private boolean withLeaves;
+
+    //Quick function to determine if two BitSets represent the same bipartition.
+    private static boolean equivalentBip(BitSet Bit1, BitSet Bit2, int numberLeaves){
+        return (Bit2.equals(Bit1) || ((!Bit2.intersects(Bit1)) && (Bit1.cardinality() + Bit2.cardinality() == numberLeaves)));
+    }
+
+    //Two splits are compatible if one side of one of them contains, or is disjoint from, one side of the other. temp is scratch space, so no BitSet is allocated.
+    private static boolean crosses(BitSet Bit1, BitSet Bit2, int numberLeaves, BitSet temp){
+        if (!Bit1.intersects(Bit2)){
+            return false;
+        }
+        temp.clear();
+        temp.or(Bit1);
+        temp.andNot(Bit2);
+        if (temp.isEmpty()){
+            return false;
+        }
+        temp.clear();
+        temp.or(Bit2);
+        temp.andNot(Bit1);
+        if (temp.isEmpty()){
+            return false;
+        }
+        temp.or(Bit1);
+        return (temp.cardinality() != numberLeaves);
+    }
+
+    //Constructor from the primitive description: the number of edges in each tree, the incompatibility bit matrix (rows of ((numEdges2 + 63)/64) words), and the index of the same split in the other tree (-1 if there is none). The arrays given are kept, and never written by the kernel.
+    public GeodesicKernel(int numEdges1, int numEdges2, long[] incompatibility, int[] commonMap1, int[] commonMap2){
+        n1 = numEdges1;
+        n2 = numEdges2;
+        words = (n2 + 63) >>> 6;
+        incompatible = incompatibility;
+        common1 = commonMap1;
+        common2 = commonMap2;
+        ownArrays = false;
+        Prepare();
+    }
+
+    //Constructor from the edges of both trees, which fix the splits used in every later computation (until reset).
+    public GeodesicKernel(Vector<PhyloTreeEdge> edges1, Vector<PhyloTreeEdge> edges2, int numberLeaves){
+        reset(edges1, edges2, numberLeaves);
+    }
+
+    //Sets up the kernel for the splits of the edges of two other trees, reusing its arrays: they only grow, to the largest pair of trees seen, so a kernel kept for many pairs (see OrthExtSolver) stops allocating once it has seen the largest one. The results of the last geodesic are lost.
+    public void reset(Vector<PhyloTreeEdge> edges1, Vector<PhyloTreeEdge> edges2, int numberLeaves){
+        n1 = edges1.size();
+        n2 = edges2.size();
+        words = (n2 + 63) >>> 6;
+        if (!ownArrays){
+            //The arrays of the primitive constructor belong to the caller.
+            incompatible = null;
+            common1 = null;
+            common2 = null;
+            ownArrays = true;
+        }
+        if ((incompatible == null) || (incompatible.length < n1*words)){
+            incompatible = new long[n1*words];
+        } else {
+            Arrays.fill(incompatible, 0, n1*words, 0L);
+        }
+        if ((common1 == null) || (common1.length < n1)){
+            common1 = new int[n1];
+        }
+        if ((common2 == null) || (common2.length < n2)){
+            common2 = new int[n2];
+        }
+
+        for (int i = 0; i < n1; i++){
+            BitSet Bit1 = edges1.get(i).getOriginalEdge().getPartition();
+            for (int j = 0; j < n2; j++){
+                if (crosses(Bit1, edges2.get(j).getOriginalEdge().getPartition(), numberLeaves, splitScratch)){
+                    incompatible[i*words + (j >>> 6)] |= (1L << (j & 63));
+                }
+            }
+        }
+        CommonMap(edges1, edges2, numberLeaves, common1);
+        CommonMap(edges2, edges1, numberLeaves, common2);
+
+        Prepare();
+    }
+
+    private static void CommonMap(Vector<PhyloTreeEdge> edges1, Vector<PhyloTreeEdge> edges2, int numberLeaves, int[] map){
+        for (int i = 0; i < edges1.size(); i++){
+            map[i] = -1;
+            for (int j = 0; j < edges2.size(); j++){
+                if (equivalentBip(edges1.get(i).getOriginalEdge().getPartition(), edges2.get(j).getOriginalEdge().getPartition(), numberLeaves)){
+                    map[i] = j;
+                    break;
+                }
+            }
+        }
+    }
+
+    //Makes room in the scratch arrays for n1 and n2 edges, keeping the arrays that are already large enough.
+    private void Reserve(){
+        if (n1 > capacity1){
+            capacity1 = n1;
+            alone1 = new boolean[n1];
+            len1 = new double[n1];
+            permA = new int[n1];
+            tempA = new int[n1];
+            resA = new double[n1];
+            visitedA = new boolean[n1];
+            prevA = new int[n1];
+            ratioOf1 = new int[n1];
+            compPermA = new int[n1];
+        }
+        if (n2 > capacity2){
+            capacity2 = n2;
+            alone2 = new boolean[n2];
+            len2 = new double[n2];
+            permB = new int[n2];
+            tempB = new int[n2];
+            resB = new double[n2];
+            visitedB = new boolean[n2];
+            prevB = new int[n2];
+            ratioOf2 = new int[n2];
+            compPermB = new int[n2];
+        }
+        if ((ratioAStart == null) || (ratioAStart.length < n1 + n2)){
+            queue = new int[n1 + n2];
+            stack = new int[4*(n1 + n2 + 1)];
+            ratioAStart = new int[n1 + n2];
+            ratioAEnd = new int[n1 + n2];
+            ratioBStart = new int[n1 + n2];
+            ratioBEnd = new int[n1 + n2];
+            ratioE = new double[n1 + n2];
+            ratioF = new double[n1 + n2];
+            ratioOrder = new int[n1 + n2];
+            compAStart = new int[n1 + n2];
+            compAEnd = new int[n1 + n2];
+            compBStart = new int[n1 + n2];
+            compBEnd = new int[n1 + n2];
+        }
+    }
+
+    //Finds the splits alone in their tree and the components, once the incompatibility matrix and the common maps are set.
+    private void Prepare(){
+        Reserve();
+
+        boolean[] touched2 = visitedB; //Scratch space, only used by the flows later.
+        Arrays.fill(touched2, 0, n2, false);
+        for (int i = 0; i < n1; i++){
+            boolean any = false;
+            for (int k = 0; k < words; k++){
+                long row = incompatible[i*words + k];
+                if (row != 0){
+                    any = true;
+                    while (row != 0){
+                        touched2[(k << 6) + Long.numberOfTrailingZeros(row)] = true;
+                        row &= row - 1;
+                    }
+                }
+            }
+            alone1[i] = (!any) && (common1[i] == -1);
+        }
+        for (int j = 0; j < n2; j++){
+            alone2[j] = (!touched2[j]) && (common2[j] == -1);
+        }
+
+        findComponents();
+    }
+
+    private boolean isIncompatible(int i, int j){
+        return ((incompatible[i*words + (j >>> 6)] >>> (j & 63)) & 1L) != 0;
+    }
+
+    //Connected components of the incompatibility graph (ignoring common edges). They only depend on the splits, so they are computed once per pair of trees.
+    private void findComponents(){
+        boolean[] seenA = visitedA; //Scratch space, only used by the flows later.
+        boolean[] seenB = visitedB;
+        Arrays.fill(seenA, 0, n1, false);
+        Arrays.fill(seenB, 0, n2, false);
+        int posA = 0;
+        int posB = 0;
+        int maxProduct = 0;
+        numComponents = 0;
+
+        for (int s = 0; s < n1; s++){
+            if (seenA[s] || (common1[s] != -1) || alone1[s]){
+                continue;
+            }
+            int startA = posA;
+            int startB = posB;
+            seenA[s] = true;
+            compPermA[posA++] = s;
+            //Breadth first search, using the permutation arrays themselves as queues.
+            int headA = startA;
+            int headB = startB;
+            while ((headA < posA) || (headB < posB)){
+                if (headA < posA){
+                    int i = compPermA[headA++];
+                    for (int j = 0; j < n2; j++){
+                        if (!seenB[j] && isIncompatible(i, j)){
+                            seenB[j] = true;
+                            compPermB[posB++] = j;
+                        }
+                    }
+                } else {
+                    int j = compPermB[headB++];
+                    for (int i = 0; i < n1; i++){
+                        if (!seenA[i] && isIncompatible(i, j)){
+                            seenA[i] = true;
+                            compPermA[posA++] = i;
+                        }
+                    }
+                }
+            }
+            compAStart[numComponents] = startA;
+            compAEnd[numComponents] = posA;
+            compBStart[numComponents] = startB;
+            compBEnd[numComponents] = posB;
+            maxProduct = Math.max(maxProduct, (posA - startA)*(posB - startB));
+            numComponents++;
+        }
+
+        if ((flow == null) || (flow.length < maxProduct)){
+            flow = new double[maxProduct];
+        }
+    }
+
+    //Minimum weight vertex cover of the incompatibility graph restricted to the ratio given by the segments, with weights a^2/|A|^2 and b^2/|B|^2, computed as a maximum flow. On return visitedA/visitedB mark the vertices reachable from the source in the residual graph, so the cover is (A not visited) and (B visited). Returns the weight of the cover.
+    private double minCover(int aStart, int aEnd, int bStart, int bEnd, double normA2, double normB2){
+        int p = aEnd - aStart;
+        int q = bEnd - bStart;
+        for (int a = 0; a < p; a++){
+            double l = len1[permA[aStart + a]];
+            resA[a] = l*l/normA2;
+        }
+        for (int b = 0; b < q; b++){
+            double l = len2[permB[bStart + b]];
+            resB[b] = l*l/normB2;
+        }
+        Arrays.fill(flow, 0, p*q, 0.0);
+
+        double total = 0;
+        while (true){
+            for (int a = 0; a < p; a++){
+                visitedA[a] = false;
+            }
+            for (int b = 0; b < q; b++){
+                visitedB[b] = false;
+            }
+            int head = 0;
+            int tail = 0;
+            for (int a = 0; a < p; a++){
+                if (resA[a] > FLOW_EPSILON){
+                    visitedA[a] = true;
+                    prevA[a] = -1;
+                    queue[tail++] = a;
+                }
+            }
+            int sinkB = -1;
+            while ((head < tail) && (sinkB == -1)){
+                int node = queue[head++];
+                if (node < p){
+                    int gA = permA[aStart + node];
+                    for (int b = 0; b < q; b++){
+                        if (!visitedB[b] && isIncompatible(gA, permB[bStart + b])){
+                            visitedB[b] = true;
+                            prevB[b] = node;
+                            if (resB[b] > FLOW_EPSILON){
+                                sinkB = b;
+                                break;
+                            }
+                            queue[tail++] = p + b;
+                        }
+                    }
+                } else {
+                    int b = node - p;
+                    for (int a = 0; a < p; a++){
+                        if (!visitedA[a] && (flow[a*q + b] > FLOW_EPSILON)){
+                            visitedA[a] = true;
+                            prevA[a] = b;
+                            queue[tail++] = a;
+                        }
+                    }
+                }
+            }
+            if (sinkB == -1){
+                break;
+            }
+
+            //Bottleneck of the augmenting path, walking back from the sink.
+            double bottleneck = resB[sinkB];
+            int b = sinkB;
+            int a = prevB[b];
+            while (prevA[a] != -1){
+                int bPrev = prevA[a];
+                bottleneck = Math.min(bottleneck, flow[a*q + bPrev]);
+                b = bPrev;
+                a = prevB[b];
+            }
+            bottleneck = Math.min(bottleneck, resA[a]);
+
+            //Augmenting the flow through the path.
+            resB[sinkB] -= bottleneck;
+            b = sinkB;
+            a = prevB[b];
+            while (true){
+                flow[a*q + b] += bottleneck;
+                if (prevA[a] == -1){
+                    resA[a] -= bottleneck;
+                    break;
+                }
+                int bPrev = prevA[a];
+                flow[a*q + bPrev] -= bottleneck;
+                b = bPrev;
+                a = prevB[b];
+            }
+            total += bottleneck;
+        }
+        return total;
+    }
+
+    //Computes the geodesic between the trees with interior edge lengths l1 and l2 (in the order of the edges given to the constructor) and leaf edge lengths lf1 and lf2 (which can be null if leaves should be ignored). If the gradient arrays are not null, they are filled with the gradient of half the squared distance with respect to each length. Returns the length of the geodesic.
+    public double compute(double[] l1, double[] l2, double[] lf1, double[] lf2, double[] grad1, double[] grad2, double[] gradLeaf1, double[] gradLeaf2){
+        System.arraycopy(l1, 0, len1, 0, n1);
+        System.arraycopy(l2, 0, len2, 0, n2);
+        withLeaves = (lf1 != null) && (lf2 != null);
+        if (withLeaves){
+            if ((leaf1 == null) || (leaf1.length != lf1.length)){
+                leaf1 = new double[lf1.length];
+                leaf2 = new double[lf2.length];
+            }
+            System.arraycopy(lf1, 0, leaf1, 0, lf1.length);
+            System.arraycopy(lf2, 0, leaf2, 0, lf2.length);
+        }
+
+        System.arraycopy(compPermA, 0, permA, 0, n1);
+        System.arraycopy(compPermB, 0, permB, 0, n2);
+
+        //Each component starts as one ratio, and ratios are refined while a vertex cover of weight smaller than one exists. The refinement keeps the segments in order, so the ratios of one component are always sorted.
+        numRatios = 0;
+        int top = 0;
+        for (int c = numComponents - 1; c >= 0; c--){
+            stack[top++] = compAStart[c];
+            stack[top++] = compAEnd[c];
+            stack[top++] = compBStart[c];
+            stack[top++] = compBEnd[c];
+        }
+        while (top > 0){
+            int bEnd = stack[--top];
+            int bStart = stack[--top];
+            int aEnd = stack[--top];
+            int aStart = stack[--top];
+
+            double normA2 = 0;
+            for (int a = aStart; a < aEnd; a++){
+                normA2 += len1[permA[a]]*len1[permA[a]];
+            }
+            double normB2 = 0;
+            for (int b = bStart; b < bEnd; b++){
+                normB2 += len2[permB[b]]*len2[permB[b]];
+            }
+
+            if ((normA2 > 0) && (normB2 > 0) && (aEnd - aStart > 0) && (bEnd - bStart > 0) && ((aEnd - aStart) + (bEnd - bStart) > 2)){
+                double coverWeight = minCover(aStart, aEnd, bStart, bEnd, normA2, normB2);
+                if (coverWeight < 1 - TOLERANCE){
+                    //Cover = A1 (not reachable) and B2 (reachable). The ratio (A1, B1) goes before (A2, B2).
+                    int p = aEnd - aStart;
+                    int q = bEnd - bStart;
+                    int countA1 = 0;
+                    int countA2 = 0;
+                    for (int a = 0; a < p; a++){
+                        if (!visitedA[a]){
+                            permA[aStart + countA1++] = permA[aStart + a];
+                        } else {
+                            tempA[countA2++] = permA[aStart + a];
+                        }
+                    }
+                    System.arraycopy(tempA, 0, permA, aStart + countA1, countA2);
+                    int countB1 = 0;
+                    int countB2 = 0;
+                    for (int b = 0; b < q; b++){
+                        if (!visitedB[b]){
+                            permB[bStart + countB1++] = permB[bStart + b];
+                        } else {
+                            tempB[countB2++] = permB[bStart + b];
+                        }
+                    }
+                    System.arraycopy(tempB, 0, permB, bStart + countB1, countB2);
+
+                    if ((countA1 + countB1 > 0) && (countA2 + countB2 > 0)){
+                        //Second ratio pushed first, so the first one is processed (and recorded) first.
+                        stack[top++] = aStart + countA1;
+                        stack[top++] = aEnd;
+                        stack[top++] = bStart + countB1;
+                        stack[top++] = bEnd;
+                        stack[top++] = aStart;
+                        stack[top++] = aStart + countA1;
+                        stack[top++] = bStart;
+                        stack[top++] = bStart + countB1;
+                        continue;
+                    }
+                }
+            }
+
+            ratioAStart[numRatios] = aStart;
+            ratioAEnd[numRatios] = aEnd;
+            ratioBStart[numRatios] = bStart;
+            ratioBEnd[numRatios] = bEnd;
+            ratioE[numRatios] = Math.sqrt(normA2);
+            ratioF[numRatios] = Math.sqrt(normB2);
+            numRatios++;
+        }
+
+        //Sorting the ratios of all components by E/F to obtain the ratio sequence of the geodesic.
+        for (int r = 0; r < numRatios; r++){
+            int k = r;
+            while ((k > 0) && (ratioE[ratioOrder[k-1]]*ratioF[r] > ratioE[r]*ratioF[ratioOrder[k-1]])){
+                ratioOrder[k] = ratioOrder[k-1];
+                k--;
+            }
+            ratioOrder[k] = r;
+        }
+        Arrays.fill(ratioOf1, -1);
+        Arrays.fill(ratioOf2, -1);
+        for (int k = 0; k < numRatios; k++){
+            int r = ratioOrder[k];
+            for (int a = ratioAStart[r]; a < ratioAEnd[r]; a++){
+                ratioOf1[permA[a]] = k;
+            }
+            for (int b = ratioBStart[r]; b < ratioBEnd[r]; b++){
+                ratioOf2[permB[b]] = k;
+            }
+        }
+
+        //Length of the geodesic and, if requested, the gradient of half its square.
+        double dist2 = 0;
+        for (int r = 0; r < numRatios; r++){
+            double EF = ratioE[r] + ratioF[r];
+            dist2 += EF*EF;
+            if (grad1 != null){
+                for (int a = ratioAStart[r]; a < ratioAEnd[r]; a++){
+                    int i = permA[a];
+                    if (ratioE[r] == 0){
+                        //At a block of zero length half the square is not differentiable, and each edge gets the one-sided derivative F along it, which is what the optimizers use to choose their direction. The whole vector is not a subgradient when the block has more than one edge (see OrthExtPair.geodesicLowerBound).
+                        grad1[i] = ratioF[r];
+                    } else {
+                        grad1[i] = len1[i]*(1 + (ratioF[r]/ratioE[r]));
+                    }
+                }
+            }
+            if (grad2 != null){
+                for (int b = ratioBStart[r]; b < ratioBEnd[r]; b++){
+                    int j = permB[b];
+                    if (ratioF[r] == 0){
+                        grad2[j] = ratioE[r];
+                    } else {
+                        grad2[j] = len2[j]*(1 + (ratioE[r]/ratioF[r]));
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < n1; i++){
+            if (common1[i] != -1){
+                double diff = len1[i] - len2[common1[i]];
+                dist2 += diff*diff;
+                if (grad1 != null){
+                    grad1[i] = diff;
+                }
+            } else if (alone1[i]){
+                dist2 += len1[i]*len1[i];
+                if (grad1 != null){
+                    grad1[i] = len1[i];
+                }
+            }
+        }
+        for (int j = 0; j < n2; j++){
+            if (common2[j] != -1){
+                if (grad2 != null){
+                    grad2[j] = len2[j] - len1[common2[j]];
+                }
+            } else if (alone2[j]){
+                dist2 += len2[j]*len2[j];
+                if (grad2 != null){
+                    grad2[j] = len2[j];
+                }
+            }
+        }
+        if (withLeaves){
+            for (int k = 0; k < leaf1.length; k++){
+                double diff = leaf1[k] - leaf2[k];
+                dist2 += diff*diff;
+                if (gradLeaf1 != null){
+                    gradLeaf1[k] = diff;
+                }
+                if (gradLeaf2 != null){
+                    gradLeaf2[k] = -diff;
+                }
+            }
+        }
+
+        distance = Math.sqrt(dist2);
+        return distance;
+    }
+
+    //Same as before, only computing the distance.
+    public double compute(double[] l1, double[] l2, double[] lf1, double[] lf2){
+        return compute(l1, l2, lf1, lf2, null, null, null, null);
+    }
+
+    //Derivative of half the squared length of the last geodesic computed, in the direction of change given for each length (leaf directions can be null). Ratios with one empty side do not contribute on that side, as in the derivative of the ratio sequence used in OrthExtDistance.
+    public double directionalDerivative(double[] dir1, double[] dir2, double[] dirLeaf1, double[] dirLeaf2){
+        double deriv = 0;
+        for (int r = 0; r < numRatios; r++){
+            if (ratioE[r] > 0){
+                double ENum = 0;
+                for (int a = ratioAStart[r]; a < ratioAEnd[r]; a++){
+                    ENum += dir1[permA[a]]*len1[permA[a]];
+                }
+                deriv += ENum*(1 + (ratioF[r]/ratioE[r]));
+            }
+            if (ratioF[r] > 0){
+                double FNum = 0;
+                for (int b = ratioBStart[r]; b < ratioBEnd[r]; b++){
+                    FNum += dir2[permB[b]]*len2[permB[b]];
+                }
+                deriv += FNum*(1 + (ratioE[r]/ratioF[r]));
+            }
+        }
+        for (int i = 0; i < n1; i++){
+            if (common1[i] != -1){
+                deriv += (dir1[i] - dir2[common1[i]])*(len1[i] - len2[common1[i]]);
+            } else if (alone1[i]){
+                deriv += dir1[i]*len1[i];
+            }
+        }
+        for (int j = 0; j < n2; j++){
+            if (alone2[j]){
+                deriv += dir2[j]*len2[j];
+            }
+        }
+        if (withLeaves && (dirLeaf1 != null) && (dirLeaf2 != null)){
+            for (int k = 0; k < leaf1.length; k++){
+                deriv += (dirLeaf1[k] - dirLeaf2[k])*(leaf1[k] - leaf2[k]);
+            }
+        }
+        return deriv;
+    }
+
+    //Getters for the last geodesic computed.
+
+    public double getDistance(){
+        return distance;
+    }
+
+    public int getNumRatios(){
+        return numRatios;
+    }
+
+    //Position in the ratio sequence of every interior edge in the first tree (-1 for common edges).
+    public int[] getRatioOf1(){
+        return ratioOf1;
+    }
+
+    public int[] getRatioOf2(){
+        return ratioOf2;
+    }
+
+    //Norm of the edges of the first tree in the k-th ratio of the sequence.
+    public double getELength(int k){
+        return ratioE[ratioOrder[k]];
+    }
+
+    public double getFLength(int k){
+        return ratioF[ratioOrder[k]];
+    }
+
+    //Number of edges of the first tree in the k-th ratio of the sequence.
+    public int getESize(int k){
+        return ratioAEnd[ratioOrder[k]] - ratioAStart[ratioOrder[k]];
+    }
+
+    public int getFSize(int k){
+        return ratioBEnd[ratioOrder[k]] - ratioBStart[ratioOrder[k]];
+    }
+
+    public int getNumEdges1(){
+        return n1;
+    }
+
+    public int getNumEdges2(){
+        return n2;
+    }
+
+    public int[] getCommonMap1(){
+        return common1;
+    }
+
+    public int[] getCommonMap2(){
+        return common2;
+    }
+
+    public boolean isIncompatibleSplits(int i, int j){
+        return isIncompatible(i, j);
+    }
+}
@@ -0,0 +1,118 @@
+/** This is intended as a set of variable indexes (integers from 0 to capacity - 1) for the bookkeeping of the basic, superbasic and non-basic variables in ReducedGradientOptimizer. The elements are kept in an int array in insertion order, and an int array indexed by variable gives the position of each variable in the set (-1 if it is not there), so membership and position are found in constant time and there is no boxing.
+
+remove and removeAll keep the order of the remaining elements, as Vector does, since the order of the superbasic variables decides the order of the sums in the optimizer. Unlike Vector, add does not add a variable that is already in the set (it returns false): a variable has only one position. The Vectors it replaces never held repeated variables (every variable was added to B, S, N or the candidate lists at most once, and the additions to N were guarded with contains), so the optimizer behaves as before.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+
+public class IndexSet{
+    private int[] elements; //Elements in order, only the first size entries are used.
+    private int size;
+    private int[] position; //Position of each variable in elements, -1 if the variable is not in the set.
+
+    //Constructor for a set of variables between 0 and capacity - 1.
+    public IndexSet(int capacity){
+        elements = new int[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+        size = 0;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    public int get(int i){
+        return elements[i];
+    }
+
+    public boolean contains(int v){
+        return position[v] != -1;
+    }
+
+    //Position of v in the set, or -1 if it is not in the set.
+    public int indexOf(int v){
+        return position[v];
+    }
+
+    //Adds v at the end of the set, if it is not already there (a Vector would add it again). Returns false if it was already there.
+    public boolean add(int v){
+        if (position[v] != -1){
+            return false;
+        }
+        elements[size] = v;
+        position[v] = size;
+        size++;
+        return true;
+    }
+
+    public void addAll(IndexSet other){
+        for (int i = 0; i < other.size; i++){
+            add(other.elements[i]);
+        }
+    }
+
+    //Replaces the element in position i by v, which should not be in the set.
+    public void set(int i, int v){
+        position[elements[i]] = -1;
+        elements[i] = v;
+        position[v] = i;
+    }
+
+    //Removes v keeping the order of the remaining elements.
+    public boolean remove(int v){
+        int p = position[v];
+        if (p == -1){
+            return false;
+        }
+        for (int i = p + 1; i < size; i++){
+            elements[i - 1] = elements[i];
+            position[elements[i - 1]] = i - 1;
+        }
+        size--;
+        position[v] = -1;
+        return true;
+    }
+
+    //Removes all the elements of other, keeping the order of the remaining elements.
+    public void removeAll(IndexSet other){
+        int kept = 0;
+        for (int i = 0; i < size; i++){
+            int v = elements[i];
+            if (other.contains(v)){
+                position[v] = -1;
+            } else {
+                elements[kept] = v;
+                position[v] = kept;
+                kept++;
+            }
+        }
+        size = kept;
+    }
+
+    public void clear(){
+        for (int i = 0; i < size; i++){
+            position[elements[i]] = -1;
+        }
+        size = 0;
+    }
+
+    public int[] toArray(){
+        return Arrays.copyOf(elements, size);
+    }
+
+    public String toString(){
+        return Arrays.toString(toArray());
+    }
+}
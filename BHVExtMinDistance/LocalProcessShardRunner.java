@@ -0,0 +1,69 @@
+/** This is intended as the runner of the shards of ExtensionSpaceDistance (see constructor 8) in local processes: each shard is written to a job file and computed by a new JVM running ShardWorker, with the same Java and class path as this one. The output of the workers goes to the output of this process.
+
+A worker that fails is started again up to maxAttempts times; since the journal of the shard keeps the pairs already computed, the new attempt only computes the rest.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.io.*;
+
+public class LocalProcessShardRunner implements ShardRunner{
+    private List<String> jvmOptions; //Options for the JVM of the workers, such as -Xmx.
+    private int maxAttempts;
+
+    //Constructors
+    public LocalProcessShardRunner(){
+        this(new ArrayList<String>(), 2);
+    }
+
+    public LocalProcessShardRunner(List<String> jvmOptions, int maxAttempts){
+        if (maxAttempts < 1){
+            throw new IllegalArgumentException("The number of attempts should be at least 1.");
+        }
+        this.jvmOptions = new ArrayList<String>(jvmOptions);
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void run(ShardJob job, File journalFile) throws IOException, InterruptedException{
+        File jobFile = new File(journalFile.getPath() + ".job");
+        job.write(jobFile);
+
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        command.add(jobFile.getPath());
+        command.add(journalFile.getPath());
+
+        int exitCode = -1;
+        for (int attempt = 0; (attempt < maxAttempts) && (exitCode != 0); attempt++){
+            Process worker = new ProcessBuilder(command).inheritIO().start();
+            try {
+                exitCode = worker.waitFor();
+            } catch (InterruptedException e){
+                worker.destroyForcibly();
+                throw e;
+            }
+        }
+        if (exitCode != 0){
+            throw new IOException("The worker of shard " + job.getShardIndex() + " failed with exit code " + exitCode + ".");
+        }
+        jobFile.delete();
+    }
+
+    public List<String> getJvmOptions(){
+        return jvmOptions;
+    }
+
+    public int getMaxAttempts(){
+        return maxAttempts;
+    }
+}
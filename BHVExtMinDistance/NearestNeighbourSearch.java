@@ -0,0 +1,228 @@
+/** This is intended as a search of the k extension spaces closest to a query among a database of extension spaces, for example of reference trees on partial leaf sets, all extended to the same complete leaf set, without computing the distance from the query to every one of them.
+
+The search has two stages. First, a cheap lower bound of the distance from the query to every extension space of the database is computed, in a pool of numThreads threads: the smaller of the lower bounds of its pairs of orthant extensions (see PairLowerBound), which needs no geodesic. Then the extension spaces are refined in increasing order of their bound with branch and bound (constructor 4 of ExtensionSpaceDistance with topK = 1), using the k-th shorter distance found so far as cut-off, so the pairs of orthants that cannot beat it are skipped or abandoned. The search stops as soon as k distances are known and the bound of the next extension space is not below the k-th one: none of the remaining ones can be closer, so the k nearest neighbours are certified (up to the convergence of the optimizations of the pairs, see ConvergencePolicy).
+
+The lower bound of an extension space is the minimum over its pairs of orthants of a certified bound, so it is never larger than the distance. The distance between the original trees pruned to their common leaves is not used as bound, because it is not always below the distance between the extension spaces.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import distanceAlg1.*;
+
+public class NearestNeighbourSearch{
+    private List<ExtensionSpace> database;
+    private Vector<String> completeLeafSet;
+    private boolean restricted;
+    private ConvergencePolicy policy;
+    private OrthExtOptimizer optimizer;
+    private int numThreads;
+
+    //One of the nearest neighbours of the query.
+    public static class Neighbour{
+        private int index; //Position of the extension space in the database.
+        private double distance;
+        private ExtensionSpaceDistance ESD; //Branch and bound computation of the distance, with the best trees and geodesic.
+
+        Neighbour(int index, ExtensionSpaceDistance ESD){
+            this.index = index;
+            this.distance = ESD.getDistance();
+            this.ESD = ESD;
+        }
+
+        public int getIndex(){
+            return index;
+        }
+
+        public double getDistance(){
+            return distance;
+        }
+
+        public ExtensionSpaceDistance getExtensionSpaceDistance(){
+            return ESD;
+        }
+    }
+
+    //Result of a query: the neighbours in increasing order of distance, and how many extension spaces each stage dealt with.
+    public static class Result{
+        private List<Neighbour> neighbours;
+        private double[] bounds; //Lower bound of the distance to every extension space of the database.
+        private int refinedCount; //Extension spaces whose distance was computed (even if it was abandoned at the cut-off).
+        private int cutOffCount; //Of those, the ones abandoned because they could not beat the k-th distance.
+        private int skippedCount; //Extension spaces never refined because their bound was not below the k-th distance.
+
+        Result(List<Neighbour> neighbours, double[] bounds, int refinedCount, int cutOffCount, int skippedCount){
+            this.neighbours = neighbours;
+            this.bounds = bounds;
+            this.refinedCount = refinedCount;
+            this.cutOffCount = cutOffCount;
+            this.skippedCount = skippedCount;
+        }
+
+        public List<Neighbour> getNeighbours(){
+            return neighbours;
+        }
+
+        public double getLowerBound(int index){
+            return bounds[index];
+        }
+
+        public int getRefinedCount(){
+            return refinedCount;
+        }
+
+        public int getCutOffCount(){
+            return cutOffCount;
+        }
+
+        public int getSkippedCount(){
+            return skippedCount;
+        }
+
+        public void PrintSummary(){
+            System.out.println("Nearest neighbours among " + bounds.length + " extension spaces: " + refinedCount + " refined (" + cutOffCount + " abandoned at the cut-off), " + skippedCount + " skipped by their bound");
+            for (Neighbour neighbour : neighbours){
+                System.out.println("   " + neighbour.getIndex() + ": " + neighbour.getDistance());
+            }
+        }
+    }
+
+    //Constructors
+    //Search with the certified policy and the reduced gradient, in as many threads as processors.
+    public NearestNeighbourSearch(List<ExtensionSpace> database, boolean restricted){
+        this(database, restricted, ConvergencePolicy.certified(), new ReducedGradientOptimizer(), Runtime.getRuntime().availableProcessors());
+    }
+
+    //All the extension spaces of the database should be over the same complete leaf set, and built in the given mode.
+    public NearestNeighbourSearch(List<ExtensionSpace> database, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, int numThreads){
+        if (numThreads < 1){
+            throw new IllegalArgumentException("The number of threads should be at least 1.");
+        }
+        if (database.isEmpty()){
+            throw new IllegalArgumentException("The database of extension spaces is empty.");
+        }
+        this.database = new ArrayList<ExtensionSpace>(database);
+        this.completeLeafSet = database.get(0).getCompleteLeafSet();
+        for (ExtensionSpace ES : database){
+            if (!ES.getCompleteLeafSet().equals(completeLeafSet)){
+                throw new IllegalArgumentException("All the extension spaces of the database should have the same complete leaf set.");
+            }
+        }
+        this.restricted = restricted;
+        this.policy = policy;
+        this.optimizer = optimizer;
+        this.numThreads = numThreads;
+    }
+
+    //The k nearest neighbours of the tree, extended to the complete leaf set of the database.
+    public Result query(PhyloTree tree, int k){
+        return query(new ExtensionSpace(tree, completeLeafSet, restricted), k);
+    }
+
+    //The k nearest neighbours of the extension space (or all the database if it has fewer than k).
+    public Result query(ExtensionSpace query, int k){
+        if (k < 1){
+            throw new IllegalArgumentException("The number of neighbours should be at least 1.");
+        }
+        if (!query.getCompleteLeafSet().equals(completeLeafSet)){
+            throw new IllegalArgumentException("The query should have the complete leaf set of the database.");
+        }
+
+        //First stage: the bounds. Only the smallest bound of each extension space is kept: the bounds of all its pairs of orthants would take memory for the whole database during the query, and they are computed again (in constructor 4) only for the few extension spaces refined.
+        double[] bounds = Bounds(query);
+        Integer[] order = new Integer[database.size()];
+        for (int c = 0; c < order.length; c++){
+            order[c] = c;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(bounds[a], bounds[b]));
+
+        //Second stage: refinement in increasing order of the bound, keeping the k shorter distances sorted.
+        List<Neighbour> neighbours = new ArrayList<Neighbour>(k + 1);
+        int refinedCount = 0;
+        int cutOffCount = 0;
+        int skippedCount = 0;
+        for (int i = 0; i < order.length; i++){
+            int c = order[i];
+            double cutoff = (neighbours.size() < k) ? Double.POSITIVE_INFINITY : neighbours.get(k - 1).getDistance();
+            if (bounds[c] >= cutoff){
+                skippedCount = order.length - i; //The bounds of the rest are not smaller.
+                break;
+            }
+            refinedCount++;
+            ExtensionSpaceDistance ESD = new ExtensionSpaceDistance(query, database.get(c), restricted, policy, optimizer, 1, cutoff);
+            if (ESD.getOOED().isEmpty() && (cutoff < Double.POSITIVE_INFINITY)){
+                cutOffCount++;
+                continue;
+            }
+            Neighbour neighbour = new Neighbour(c, ESD);
+            int position = 0;
+            while ((position < neighbours.size()) && (neighbours.get(position).getDistance() <= neighbour.getDistance())){
+                position++;
+            }
+            neighbours.add(position, neighbour);
+            if (neighbours.size() > k){
+                neighbours.remove(k);
+            }
+        }
+
+        return new Result(neighbours, bounds, refinedCount, cutOffCount, skippedCount);
+    }
+
+    //Lower bound of the distance from the query to every extension space of the database (infinite if one of them has no orthants).
+    private double[] Bounds(ExtensionSpace query){
+        double[] bounds = new double[database.size()];
+        AtomicInteger created = new AtomicInteger();
+        ExecutorService service = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r, "NearestNeighbourSearch-worker-" + created.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int c = 0; c < bounds.length; c++){
+                final int candidate = c;
+                futures.add(service.submit(() -> {
+                    OrthExtSolver solver = new OrthExtSolver(restricted, policy, optimizer);
+                    double bound = Double.POSITIVE_INFINITY;
+                    for (OrthExt OE1 : query.getOrthExts()){
+                        for (OrthExt OE2 : database.get(candidate).getOrthExts()){
+                            bound = Math.min(bound, solver.lowerBound(OE1, OE2));
+                        }
+                    }
+                    bounds[candidate] = bound;
+                }));
+            }
+            for (Future<?> future : futures){
+                future.get();
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The nearest neighbour search was interrupted.", e);
+        } catch (ExecutionException e){
+            throw new RuntimeException("An error occurred computing the bounds of the nearest neighbour search.", e.getCause());
+        } finally {
+            service.shutdownNow();
+        }
+        return bounds;
+    }
+
+    //Getters
+    public int size(){
+        return database.size();
+    }
+
+    public ExtensionSpace getExtensionSpace(int index){
+        return database.get(index);
+    }
+
+    public Vector<String> getCompleteLeafSet(){
+        return completeLeafSet;
+    }
+}
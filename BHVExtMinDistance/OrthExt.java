@@ -777,7 +777,46 @@ public class OrthExt{
     public Vector<Integer> getCloneEdges2Axis(){
         return new Vector<Integer>(this.Edges2Axis);
     }
-    
+
+    //For each variable (column of the mapping matrix) of this orthant extension, the index of the same variable in other, which should be an orthant extension of the same extension space, or -1 if other does not have this axis. Variables for the leaf edges in the unrestricted case are the same in both.
+    public int[] variableCorrespondence(OrthExt other){
+        int ol = this.backMap.length - this.orthantAxis.size();
+        int[] correspondence = new int[this.backMap.length];
+        for (int v = 0; v < ol; v++){
+            correspondence[v] = v;
+        }
+        for (int k = 0; k < this.orthantAxis.size(); k++){
+            correspondence[k + ol] = -1;
+            for (int j = 0; j < other.orthantAxis.size(); j++){
+                if (this.orthantAxis.get(k).getPartition().equals(other.orthantAxis.get(j).getPartition())){
+                    correspondence[k + ol] = j + ol;
+                    break;
+                }
+            }
+        }
+        return correspondence;
+    }
+
+    //Turns the guess into a point of the orthant extension: the values in each row of the mapping matrix are rescaled to add up to the fixed length of the row (negative values are treated as 0), and rows adding up to 0 split their fixed length evenly, as in the starting tree.
+    public double[] feasibleValues(double[] guess){
+        double[] values = new double[this.backMap.length];
+        for (int r = 0; r < this.fixedLengths.length; r++){
+            Vector<Integer> row = this.mapList.get(r);
+            double sum = 0;
+            for (int v : row){
+                sum += Math.max(guess[v], 0);
+            }
+            for (int v : row){
+                if (sum > 0){
+                    values[v] = Math.max(guess[v], 0)*this.fixedLengths[r]/sum;
+                } else {
+                    values[v] = this.fixedLengths[r]/row.size();
+                }
+            }
+        }
+        return values;
+    }
+
     //Function to print the axes of the orthants with a nice format. 
     public void PrintOrthantAxes(){
          System.out.print("Axes in the extension orthant: ");
@@ -0,0 +1,19 @@
+/** Common interface for the methods that minimize the distance between two orthant extensions. An optimizer receives the pair (see OrthExtPair), a feasible starting point for the variables of each orthant extension, and the convergence policy, and returns the final point.
+
+Optimizers are shared by all the pairs of an ExtensionSpaceDistance, which may run in parallel, so they should not keep state between calls.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+public interface OrthExtOptimizer{
+    //Minimizes the distance between the trees given by the variables of the pair, starting at start1 and start2 (which are not modified).
+    public OrthExtSolution optimize(OrthExtPair pair, double[] start1, double[] start2, ConvergencePolicy policy);
+    
+    //Name used in reports.
+    public String getName();
+}
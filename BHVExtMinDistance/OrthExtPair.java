@@ -0,0 +1,461 @@
+/** This is intended as the primitive representation of a pair of orthant extensions used by the optimizers of OrthExtDistance. The splits of the edges do not change during the optimization, only their lengths, so geodesics are computed with a GeodesicKernel over arrays of lengths, and PhyloTree objects are only built for the final result.
+
+The variables of each orthant extension are indexed as the columns of its mapping matrix (see OrthExt). In the unrestricted case the leaf edges of the original leaves are also variables, and they take the first positions. Edges or leaves missing in one of the trees copy the value of the corresponding variable in the other one.
+
+A pair keeps scratch arrays, so it should only be used by one thread at a time. A new pair can take over the kernel and the scratch arrays of a pair that is no longer used (see OrthExtSolver), which cannot be used after that.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import distanceAlg1.*;
+import polyAlg.*;
+
+public class OrthExtPair{
+    private OrthExt OE1;
+    private OrthExt OE2;
+    
+    private GeodesicKernel kernel;
+    private boolean restrictedPair;
+    private double tauMaxGap; //How far from tau_max the derivative is checked in the line search of the reduced gradient method.
+    private PhyloTree baseT1; //Trees giving the splits of the edges (in order) and the lengths that are not variables.
+    private PhyloTree baseT2;
+    private double[] baseEdges1; //Lengths of the interior edges in the base trees
+    private double[] baseEdges2;
+    private double[] baseLeaves1; //Lengths of the leaf edges in the base trees, in the order of the complete leaf set.
+    private double[] baseLeaves2;
+    private double[] edges1; //Scratch arrays where the lengths of the current trees are written before computing a geodesic.
+    private double[] edges2;
+    private double[] leaves1;
+    private double[] leaves2;
+    private double[] edgeGrad1; //Gradients returned by the kernel for each edge.
+    private double[] edgeGrad2;
+    private double[] leafGrad1;
+    private double[] leafGrad2;
+    private double[] dirEdges1; //Scratch arrays for directions of change.
+    private double[] dirEdges2;
+    private double[] dirLeaves1;
+    private double[] dirLeaves2;
+    private double[] subgradient1; //Scratch arrays for the gradients rescaled at blocks of zero length (see geodesicLowerBound).
+    private double[] subgradient2;
+    
+    //For each variable (indexed as the columns of the mapping matrix of the OrthExt), the edge or leaf of each tree whose length is given by this variable (-1 if none).
+    private int[] var2Edge1;
+    private int[] var2Edge2;
+    private int[] var2Leaf1;
+    private int[] var2Leaf2;
+    private int[] var2OtherEdge1; //Edge of the second tree that copies the value of the variable of the first tree.
+    private int[] var2OtherEdge2;
+    private int[] var2OtherLeaf1;
+    private int[] var2OtherLeaf2;
+    private int[] scanOrder1; //Order in which the variables are checked when looking for the boundary of the line search.
+    private int[] scanOrder2;
+    
+    private int geodesicCount; //Number of geodesics computed with this pair.
+    
+    private double cutoff = Double.POSITIVE_INFINITY; //If the distance of the pair is proved to be larger than this, the optimizers stop (see cutoffExceeded).
+    private double lowerBound = 0; //Largest lower bound of the distance of the pair found so far.
+    
+    //Constructor. T1 and T2 are the trees whose edges are listed in cur1Edges2Axis and cur2Edges2Axis, and ET1toET2 and ET2toET1 (null in the restricted case) link the edges copied from the other tree.
+    public OrthExtPair(OrthExt OE1, OrthExt OE2, PhyloTree T1, PhyloTree T2, Vector<Integer> cur1Edges2Axis, Vector<Integer> cur2Edges2Axis, Map<Integer, Integer> ET1toET2, Map<Integer, Integer> ET2toET1, boolean restricted, double tauMaxGap){
+        this(OE1, OE2, T1, T2, cur1Edges2Axis, cur2Edges2Axis, ET1toET2, ET2toET1, restricted, tauMaxGap, null);
+    }
+    
+    //Constructor reusing the GeodesicKernel of a pair that is no longer in use (recycled, which can be null), whose arrays only grow (see GeodesicKernel.reset), and its scratch arrays when they have the right size. Used by OrthExtSolver, where consecutive pairs usually have the same number of edges. T1 and T2 are only read, so they can be the starting trees of the orthant extensions themselves.
+    public OrthExtPair(OrthExt OE1, OrthExt OE2, PhyloTree T1, PhyloTree T2, Vector<Integer> cur1Edges2Axis, Vector<Integer> cur2Edges2Axis, Map<Integer, Integer> ET1toET2, Map<Integer, Integer> ET2toET1, boolean restricted, double tauMaxGap, OrthExtPair recycled){
+        this.OE1 = OE1;
+        this.OE2 = OE2;
+        restrictedPair = restricted;
+        this.tauMaxGap = tauMaxGap;
+        baseT1 = T1;
+        baseT2 = T2;
+        
+        int numberLeaves = OE1.getCompleteLeafSet().size();
+        boolean reuse = (recycled != null) && (recycled != this);
+        if (reuse && (recycled.kernel != null)){
+            kernel = recycled.kernel;
+            kernel.reset(T1.getEdges(), T2.getEdges(), numberLeaves);
+        } else {
+            kernel = new GeodesicKernel(T1.getEdges(), T2.getEdges(), numberLeaves);
+        }
+        
+        baseEdges1 = new double[T1.getEdges().size()];
+        baseEdges2 = new double[T2.getEdges().size()];
+        for (int i = 0; i < baseEdges1.length; i++){
+            baseEdges1[i] = T1.getEdge(i).getNorm();
+        }
+        for (int i = 0; i < baseEdges2.length; i++){
+            baseEdges2[i] = T2.getEdge(i).getNorm();
+        }
+        baseLeaves1 = new double[numberLeaves];
+        baseLeaves2 = new double[numberLeaves];
+        for (int i = 0; i < numberLeaves; i++){
+            baseLeaves1[i] = T1.getLeafEdgeAttribs()[i].get(0);
+            baseLeaves2[i] = T2.getLeafEdgeAttribs()[i].get(0);
+        }
+        
+        edges1 = Scratch(reuse ? recycled.edges1 : null, baseEdges1.length);
+        edges2 = Scratch(reuse ? recycled.edges2 : null, baseEdges2.length);
+        leaves1 = Scratch(reuse ? recycled.leaves1 : null, numberLeaves);
+        leaves2 = Scratch(reuse ? recycled.leaves2 : null, numberLeaves);
+        edgeGrad1 = Scratch(reuse ? recycled.edgeGrad1 : null, baseEdges1.length);
+        edgeGrad2 = Scratch(reuse ? recycled.edgeGrad2 : null, baseEdges2.length);
+        leafGrad1 = Scratch(reuse ? recycled.leafGrad1 : null, numberLeaves);
+        leafGrad2 = Scratch(reuse ? recycled.leafGrad2 : null, numberLeaves);
+        dirEdges1 = Scratch(reuse ? recycled.dirEdges1 : null, baseEdges1.length);
+        dirEdges2 = Scratch(reuse ? recycled.dirEdges2 : null, baseEdges2.length);
+        dirLeaves1 = Scratch(reuse ? recycled.dirLeaves1 : null, numberLeaves);
+        dirLeaves2 = Scratch(reuse ? recycled.dirLeaves2 : null, numberLeaves);
+        
+        int ol1 = restricted ? 0 : OE1.getOrgLeaves2compLeaves().length;
+        int ol2 = restricted ? 0 : OE2.getOrgLeaves2compLeaves().length;
+        
+        int V1 = OE1.getBackMap().length;
+        int V2 = OE2.getBackMap().length;
+        subgradient1 = Scratch(reuse ? recycled.subgradient1 : null, V1);
+        subgradient2 = Scratch(reuse ? recycled.subgradient2 : null, V2);
+        
+        var2Edge1 = new int[V1];
+        var2Leaf1 = new int[V1];
+        var2OtherEdge1 = new int[V1];
+        var2OtherLeaf1 = new int[V1];
+        var2Edge2 = new int[V2];
+        var2Leaf2 = new int[V2];
+        var2OtherEdge2 = new int[V2];
+        var2OtherLeaf2 = new int[V2];
+        Arrays.fill(var2Edge1, -1);
+        Arrays.fill(var2Leaf1, -1);
+        Arrays.fill(var2OtherEdge1, -1);
+        Arrays.fill(var2OtherLeaf1, -1);
+        Arrays.fill(var2Edge2, -1);
+        Arrays.fill(var2Leaf2, -1);
+        Arrays.fill(var2OtherEdge2, -1);
+        Arrays.fill(var2OtherLeaf2, -1);
+        
+        //The leaf edges to the original leaves come first, and if a leaf is not in the other original tree, the other tree copies its value.
+        int count1 = 0;
+        int count2 = 0;
+        scanOrder1 = new int[V1];
+        scanOrder2 = new int[V2];
+        for (int i = 0; i < ol1; i++){
+            var2Leaf1[i] = OE1.getOrgLeaves2compLeaves(i);
+            if (OE2.getCompLeaves2orgLeaves(OE1.getOrgLeaves2compLeaves(i)) == -1){
+                var2OtherLeaf1[i] = OE1.getOrgLeaves2compLeaves(i);
+            }
+            scanOrder1[count1++] = i;
+        }
+        for (int i = 0; i < ol2; i++){
+            var2Leaf2[i] = OE2.getOrgLeaves2compLeaves(i);
+            if (OE1.getCompLeaves2orgLeaves(OE2.getOrgLeaves2compLeaves(i)) == -1){
+                var2OtherLeaf2[i] = OE2.getOrgLeaves2compLeaves(i);
+            }
+            scanOrder2[count2++] = i;
+        }
+        
+        //Then the interior edges, which are variables only if the axis maps to an edge in the original tree.
+        for (int i = 0; i < cur1Edges2Axis.size(); i++){
+            int v = cur1Edges2Axis.get(i) + ol1;
+            if (OE1.getBackMap(v) != -1){
+                var2Edge1[v] = i;
+                if ((ET1toET2 != null) && ET1toET2.containsKey(Integer.valueOf(i))){
+                    var2OtherEdge1[v] = ET1toET2.get(Integer.valueOf(i)).intValue();
+                }
+                scanOrder1[count1++] = v;
+            }
+        }
+        for (int i = 0; i < cur2Edges2Axis.size(); i++){
+            int v = cur2Edges2Axis.get(i) + ol2;
+            if (OE2.getBackMap(v) != -1){
+                var2Edge2[v] = i;
+                if ((ET2toET1 != null) && ET2toET1.containsKey(Integer.valueOf(i))){
+                    var2OtherEdge2[v] = ET2toET1.get(Integer.valueOf(i)).intValue();
+                }
+                scanOrder2[count2++] = v;
+            }
+        }
+        scanOrder1 = Arrays.copyOf(scanOrder1, count1);
+        scanOrder2 = Arrays.copyOf(scanOrder2, count2);
+        
+        geodesicCount = 0;
+    }
+    
+    //The old array if it has the given length (its content is always overwritten before it is read), or a new one otherwise.
+    private static double[] Scratch(double[] old, int length){
+        if ((old != null) && (old.length == length)){
+            return old;
+        }
+        return new double[length];
+    }
+    
+    //Current value of the variables as given by the base trees, which for the starting trees of the orthant extensions is the point where the optimization starts by default.
+    public double[] getStartingValues1(){
+        return StartingValues(var2Edge1, var2Leaf1, baseEdges1, baseLeaves1);
+    }
+    
+    public double[] getStartingValues2(){
+        return StartingValues(var2Edge2, var2Leaf2, baseEdges2, baseLeaves2);
+    }
+    
+    private double[] StartingValues(int[] var2Edge, int[] var2Leaf, double[] baseEdges, double[] baseLeaves){
+        double[] x = new double[var2Edge.length];
+        for (int v = 0; v < x.length; v++){
+            if (var2Edge[v] != -1){
+                x[v] = baseEdges[var2Edge[v]];
+            } else if (var2Leaf[v] != -1){
+                x[v] = baseLeaves[var2Leaf[v]];
+            }
+        }
+        return x;
+    }
+    
+    //Writes the values of the variables of both trees into the arrays of edge and leaf lengths. The entries that no variable gives a value to start at the value in base.
+    private void WriteLengths(double[] x1, double[] x2, double[] bE1, double[] bE2, double[] bL1, double[] bL2, double[] e1, double[] e2, double[] l1, double[] l2){
+        if (bE1 == null){
+            Arrays.fill(e1, 0);
+            Arrays.fill(e2, 0);
+            Arrays.fill(l1, 0);
+            Arrays.fill(l2, 0);
+        } else {
+            System.arraycopy(bE1, 0, e1, 0, e1.length);
+            System.arraycopy(bE2, 0, e2, 0, e2.length);
+            System.arraycopy(bL1, 0, l1, 0, l1.length);
+            System.arraycopy(bL2, 0, l2, 0, l2.length);
+        }
+        for (int v = 0; v < x1.length; v++){
+            if (var2Edge1[v] != -1){
+                e1[var2Edge1[v]] = x1[v];
+            } else if (var2Leaf1[v] != -1){
+                l1[var2Leaf1[v]] = x1[v];
+            }
+            if (var2OtherEdge1[v] != -1){
+                e2[var2OtherEdge1[v]] = x1[v];
+            }
+            if (var2OtherLeaf1[v] != -1){
+                l2[var2OtherLeaf1[v]] = x1[v];
+            }
+        }
+        for (int v = 0; v < x2.length; v++){
+            if (var2Edge2[v] != -1){
+                e2[var2Edge2[v]] = x2[v];
+            } else if (var2Leaf2[v] != -1){
+                l2[var2Leaf2[v]] = x2[v];
+            }
+            if (var2OtherEdge2[v] != -1){
+                e1[var2OtherEdge2[v]] = x2[v];
+            }
+            if (var2OtherLeaf2[v] != -1){
+                l1[var2OtherLeaf2[v]] = x2[v];
+            }
+        }
+    }
+    
+    //Computes the geodesic between the trees given by the variables x1 and x2, returning its length. If gradient1 and gradient2 are not null, they receive the derivatives of half the squared length with respect to each variable.
+    public double evaluate(double[] x1, double[] x2, double[] gradient1, double[] gradient2){
+        WriteLengths(x1, x2, baseEdges1, baseEdges2, baseLeaves1, baseLeaves2, edges1, edges2, leaves1, leaves2);
+        geodesicCount++;
+        if (gradient1 == null){
+            return kernel.compute(edges1, edges2, leaves1, leaves2);
+        }
+        double dist = kernel.compute(edges1, edges2, leaves1, leaves2, edgeGrad1, edgeGrad2, leafGrad1, leafGrad2);
+        for (int v = 0; v < x1.length; v++){
+            if (var2Edge1[v] != -1){
+                gradient1[v] = edgeGrad1[var2Edge1[v]];
+            } else if (var2Leaf1[v] != -1){
+                gradient1[v] = leafGrad1[var2Leaf1[v]];
+            } else {
+                gradient1[v] = 0;
+            }
+        }
+        for (int v = 0; v < x2.length; v++){
+            if (var2Edge2[v] != -1){
+                gradient2[v] = edgeGrad2[var2Edge2[v]];
+            } else if (var2Leaf2[v] != -1){
+                gradient2[v] = leafGrad2[var2Leaf2[v]];
+            } else {
+                gradient2[v] = 0;
+            }
+        }
+        return dist;
+    }
+    
+    //Derivative of half the squared length of the last geodesic computed, in the direction given for the variables of each tree.
+    public double directionalDerivative(double[] dDirection1, double[] dDirection2){
+        WriteLengths(dDirection1, dDirection2, null, null, null, null, dirEdges1, dirEdges2, dirLeaves1, dirLeaves2);
+        return kernel.directionalDerivative(dirEdges1, dirEdges2, dirLeaves1, dirLeaves2);
+    }
+    
+    //Quadratic surrogate of the squared distance between the trees given by the variables x1 and x2, which does not need a geodesic: edges with the same split in both trees are matched as in a common orthant, and the rest of the edges are matched with zero, as in the path through the star tree (cone path) but without the cross terms. The gradients with respect to each variable are written in gradient1 and gradient2.
+    public double surrogate(double[] x1, double[] x2, double[] gradient1, double[] gradient2){
+        WriteLengths(x1, x2, baseEdges1, baseEdges2, baseLeaves1, baseLeaves2, edges1, edges2, leaves1, leaves2);
+        int[] common1 = kernel.getCommonMap1();
+        int[] common2 = kernel.getCommonMap2();
+        double value = 0;
+        for (int i = 0; i < edges1.length; i++){
+            edgeGrad1[i] = (common1[i] == -1) ? edges1[i] : edges1[i] - edges2[common1[i]];
+            value += edgeGrad1[i]*edgeGrad1[i];
+        }
+        for (int i = 0; i < edges2.length; i++){
+            edgeGrad2[i] = (common2[i] == -1) ? edges2[i] : edges2[i] - edges1[common2[i]];
+            if (common2[i] == -1){
+                value += edgeGrad2[i]*edgeGrad2[i];
+            }
+        }
+        for (int i = 0; i < leaves1.length; i++){
+            leafGrad1[i] = leaves1[i] - leaves2[i];
+            leafGrad2[i] = -leafGrad1[i];
+            value += leafGrad1[i]*leafGrad1[i];
+        }
+        for (int v = 0; v < x1.length; v++){
+            if (var2Edge1[v] != -1){
+                gradient1[v] = 2*edgeGrad1[var2Edge1[v]];
+            } else if (var2Leaf1[v] != -1){
+                gradient1[v] = 2*leafGrad1[var2Leaf1[v]];
+            } else {
+                gradient1[v] = 0;
+            }
+        }
+        for (int v = 0; v < x2.length; v++){
+            if (var2Edge2[v] != -1){
+                gradient2[v] = 2*edgeGrad2[var2Edge2[v]];
+            } else if (var2Leaf2[v] != -1){
+                gradient2[v] = 2*leafGrad2[var2Leaf2[v]];
+            } else {
+                gradient2[v] = 0;
+            }
+        }
+        return value;
+    }
+    
+    //Lower bound of the distance of the pair, given the distance and the gradients (as returned by evaluate) at the feasible point x1, x2. Half the squared distance is convex over the pair of orthant extensions, since the distance is convex in the BHV space and the lengths move along straight lines inside each orthant, so it is at least its value plus the smallest value of its linearization over the feasible set. The linearization is smallest when the whole fixed length of each row is on the variable with the smallest derivative (the Frank-Wolfe gap).
+    public double lowerBound(double distance, double[] x1, double[] x2, double[] gradient1, double[] gradient2){
+        double bound = distance*distance/2 + RowGap(OE1, x1, gradient1) + RowGap(OE2, x2, gradient2);
+        return Math.sqrt(2*Math.max(0, bound));
+    }
+    
+    private static double RowGap(OrthExt OE, double[] x, double[] gradient){
+        double gap = 0;
+        for (int r = 0; r < OE.getFixedLengths().length; r++){
+            Vector<Integer> row = OE.getMapList().get(r);
+            if (row.isEmpty()){
+                continue;
+            }
+            double minGradient = Double.POSITIVE_INFINITY;
+            for (int v : row){
+                minGradient = Math.min(minGradient, gradient[v]);
+                gap -= gradient[v]*x[v];
+            }
+            gap += OE.getFixedLengths(r)*minGradient;
+        }
+        return Math.min(gap, 0);
+    }
+    
+    //Same as lowerBound, for the distance and gradients returned by the last call to evaluate, which should have been at x1, x2. At a block of zero length (a ratio of the geodesic with one side of norm 0) evaluate gives every one of its m edges the one-sided derivative F, and that vector, of norm F*sqrt(m), is not a subgradient: it would make the bound larger than the distance. The bound uses F/sqrt(m) on each edge instead, which is one, and the gradients given are not changed.
+    public double geodesicLowerBound(double distance, double[] x1, double[] x2, double[] gradient1, double[] gradient2){
+        int[] ratioOf1 = kernel.getRatioOf1();
+        int[] ratioOf2 = kernel.getRatioOf2();
+        for (int v = 0; v < x1.length; v++){
+            subgradient1[v] = gradient1[v];
+            if ((var2Edge1[v] != -1) && (ratioOf1[var2Edge1[v]] != -1) && (kernel.getELength(ratioOf1[var2Edge1[v]]) == 0)){
+                subgradient1[v] /= Math.sqrt(kernel.getESize(ratioOf1[var2Edge1[v]]));
+            }
+        }
+        for (int v = 0; v < x2.length; v++){
+            subgradient2[v] = gradient2[v];
+            if ((var2Edge2[v] != -1) && (ratioOf2[var2Edge2[v]] != -1) && (kernel.getFLength(ratioOf2[var2Edge2[v]]) == 0)){
+                subgradient2[v] /= Math.sqrt(kernel.getFSize(ratioOf2[var2Edge2[v]]));
+            }
+        }
+        return lowerBound(distance, x1, x2, subgradient1, subgradient2);
+    }
+    
+    //True if there is a cut-off and the lower bound at the point x1, x2 (see geodesicLowerBound) is larger than it, so the optimization can stop. Without a cut-off nothing is computed. The distance and gradients should be the ones of the last call to evaluate.
+    public boolean cutoffExceeded(double distance, double[] x1, double[] x2, double[] gradient1, double[] gradient2){
+        if (cutoff == Double.POSITIVE_INFINITY){
+            return false;
+        }
+        lowerBound = Math.max(lowerBound, geodesicLowerBound(distance, x1, x2, gradient1, gradient2));
+        return lowerBound > cutoff;
+    }
+    
+    //Distance above which the optimization of this pair is not needed (infinity for no cut-off).
+    public void setCutoff(double cutoff){
+        this.cutoff = cutoff;
+    }
+    
+    public double getCutoff(){
+        return cutoff;
+    }
+    
+    //Largest lower bound found by cutoffExceeded (0 if none was computed).
+    public double getLowerBound(){
+        return lowerBound;
+    }
+    
+    //Builds the pair of trees given by the variables x1 and x2.
+    public PhyloTree[] buildTrees(double[] x1, double[] x2){
+        WriteLengths(x1, x2, baseEdges1, baseEdges2, baseLeaves1, baseLeaves2, edges1, edges2, leaves1, leaves2);
+        PhyloTree[] trees = new PhyloTree[2];
+        trees[0] = BuildTree(baseT1, edges1, leaves1);
+        trees[1] = BuildTree(baseT2, edges2, leaves2);
+        return trees;
+    }
+    
+    //Builds a PhyloTree with the splits of the base tree and the lengths given.
+    private PhyloTree BuildTree(PhyloTree base, double[] edgeLengths, double[] leafLengths){
+        Vector<PhyloTreeEdge> newEdges = Tools.myVectorClonePhyloTreeEdge(base.getEdges());
+        for (int i = 0; i < newEdges.size(); i++){
+            double[] tempVecEA = {edgeLengths[i]};
+            newEdges.get(i).setAttribute(new EdgeAttribute(tempVecEA));
+        }
+        EdgeAttribute[] newLeafEdgeAtt = base.getCopyLeafEdgeAttribs();
+        if (!restrictedPair){
+            for (int i = 0; i < newLeafEdgeAtt.length; i++){
+                double[] tempVecEA = {leafLengths[i]};
+                newLeafEdgeAtt[i] = new EdgeAttribute(tempVecEA);
+            }
+        }
+        return new PhyloTree(newEdges, base.getLeaf2NumMap(), newLeafEdgeAtt, false);
+    }
+    
+    //Getters
+    public OrthExt getOE1(){
+        return OE1;
+    }
+    
+    public OrthExt getOE2(){
+        return OE2;
+    }
+    
+    public boolean isRestricted(){
+        return restrictedPair;
+    }
+    
+    public double getTauMaxGap(){
+        return tauMaxGap;
+    }
+    
+    public int getNumVariables1(){
+        return var2Edge1.length;
+    }
+    
+    public int getNumVariables2(){
+        return var2Edge2.length;
+    }
+    
+    public int[] getScanOrder1(){
+        return scanOrder1;
+    }
+    
+    public int[] getScanOrder2(){
+        return scanOrder2;
+    }
+    
+    public int getGeodesicCount(){
+        return geodesicCount;
+    }
+}
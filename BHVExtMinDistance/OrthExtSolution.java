@@ -0,0 +1,41 @@
+/** Final point found by an OrthExtOptimizer for a pair of orthant extensions: the values of the variables of each orthant extension, the number of iterations and the criterion that stopped the optimization.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+public class OrthExtSolution{
+    private double[] x1; //Values of the variables of the first orthant extension
+    private double[] x2; //Values of the variables of the second orthant extension
+    private int iterCount;
+    private StopCriterion stopCriterion;
+    
+    //Constructor
+    public OrthExtSolution(double[] x1, double[] x2, int iterCount, StopCriterion stopCriterion){
+        this.x1 = x1;
+        this.x2 = x2;
+        this.iterCount = iterCount;
+        this.stopCriterion = stopCriterion;
+    }
+    
+    //Getters
+    public double[] getX1(){
+        return x1;
+    }
+    
+    public double[] getX2(){
+        return x2;
+    }
+    
+    public int getIterCount(){
+        return iterCount;
+    }
+    
+    public StopCriterion getStopCriterion(){
+        return stopCriterion;
+    }
+}
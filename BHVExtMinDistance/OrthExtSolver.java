@@ -0,0 +1,292 @@
+/** This is intended as the engine that computes the distance between pairs of orthant extension spaces. A solver is set up once with the options of the computation (restricted or unrestricted, convergence policy, optimizer and strategy for the starting point) and then solves as many pairs as needed, returning for each one an OrthExtDistance, which does not change after it is built.
+
+The solver keeps its scratch from one pair to the next: the lists of edges and axes of the current trees, the maps between copied edges, and the GeodesicKernel and arrays of lengths and gradients of the last OrthExtPair. The kernel is reset for the splits of each new pair, and its arrays only grow to the largest pair seen. In the restricted case the starting trees of the orthant extensions are used as they are, without copies. Each pair still allocates its small maps from variables to edges, and in the unrestricted case the starting trees that share the edges of the other tree (see NewMutualTrees), which depend on the pair. For this reason a solver should only be used by one thread at a time: the idea is to have one solver per worker thread, with no synchronization needed. The OrthExtDistance results can be shared freely.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import distanceAlg1.*;
+import polyAlg.*;
+
+public class OrthExtSolver{
+    private boolean restricted;
+    private ConvergencePolicy policy; //Tolerances and limits used to stop the optimization.
+    private OrthExtOptimizer optimizer; //Method used to minimize the distance (see OrthExtOptimizer).
+    private StartStrategy startStrategy; //How the starting point is chosen when there is no better warm start.
+    private GeodesicCache cache; //Cache of the final geodesics (see GeodesicCache), or null to compute every one of them.
+    
+    //Scratch kept between pairs
+    private Vector<Integer> cur1Edges2Axis = new Vector<Integer>();
+    private Vector<Integer> cur2Edges2Axis = new Vector<Integer>();
+    private Map<Integer, Integer> ET1toET2 = new HashMap<>(); //These HashMaps serve to point consequential edges towards the common
+    private Map<Integer, Integer> ET2toET1 = new HashMap<>(); //inconsequential in the other tree.
+    private OrthExtPair lastPair; //Pair solved last, whose scratch arrays are passed on to the next one.
+    
+    private int solvedCount; //Number of pairs solved with this solver.
+    
+    //Constructors
+    public OrthExtSolver(boolean restricted){
+        this(restricted, ConvergencePolicy.certified(), new ReducedGradientOptimizer(), StartStrategy.STARTING_TREES);
+    }
+    
+    public OrthExtSolver(boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer){
+        this(restricted, policy, optimizer, StartStrategy.STARTING_TREES);
+    }
+    
+    public OrthExtSolver(boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, StartStrategy startStrategy){
+        this(restricted, policy, optimizer, startStrategy, null);
+    }
+    
+    //The final geodesics are taken from cache (shared with other solvers, for example those of the other cells of a DistanceMatrix) when the same pair of trees was already computed.
+    public OrthExtSolver(boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, StartStrategy startStrategy, GeodesicCache cache){
+        this.restricted = restricted;
+        this.policy = policy;
+        this.optimizer = optimizer;
+        this.startStrategy = startStrategy;
+        this.cache = cache;
+        this.solvedCount = 0;
+    }
+    
+    //Distance between the orthant extensions OE1 and OE2, starting from the starting trees (or the pair-aware starting point).
+    public OrthExtDistance solve(OrthExt OE1, OrthExt OE2){
+        return solve(OE1, OE2, null);
+    }
+    
+    //Distance between the orthant extensions OE1 and OE2, warm started from the solution of a neighbouring pair (for example, one with the same orthant in one extension space and an orthant adjacent by rotation in the other). If neighbour is null, or its solution is farther apart than the starting point, it is not used.
+    public OrthExtDistance solve(OrthExt OE1, OrthExt OE2, OrthExtDistance neighbour){
+        return solve(OE1, OE2, neighbour, Double.POSITIVE_INFINITY);
+    }
+    
+    //Distance between the orthant extensions OE1 and OE2 with a cut-off: if during the optimization the distance of the pair is proved to be larger than cutoff, the optimization stops and the result is marked as pruned (see OrthExtDistance.isPruned). Its distance is then only an upper bound of the distance of the pair.
+    public OrthExtDistance solve(OrthExt OE1, OrthExt OE2, OrthExtDistance neighbour, double cutoff){
+        OrthExtPair pair = BuildPair(OE1, OE2);
+        pair.setCutoff(cutoff);
+        solvedCount++;
+        
+        return Optimize(pair, neighbour);
+    }
+    
+    //Cheap lower bound for the distance between the orthant extensions OE1 and OE2, computed without any geodesic (see PairLowerBound).
+    public double lowerBound(OrthExt OE1, OrthExt OE2){
+        return PairLowerBound.compute(BuildPair(OE1, OE2));
+    }
+    
+    //Lower bound for the distance between the orthant extensions OE1 and OE2 obtained at the feasible point x1, x2, the one used to abandon a pair at a cut-off (see OrthExtPair.geodesicLowerBound). One geodesic is computed.
+    public double lowerBoundAt(OrthExt OE1, OrthExt OE2, double[] x1, double[] x2){
+        OrthExtPair pair = BuildPair(OE1, OE2);
+        double[] gradient1 = new double[x1.length];
+        double[] gradient2 = new double[x2.length];
+        double distance = pair.evaluate(x1, x2, gradient1, gradient2);
+        return pair.geodesicLowerBound(distance, x1, x2, gradient1, gradient2);
+    }
+
+    //Distance between two equivalent orthant extensions (see PairSymmetry), which is zero: both trees are the starting tree, and nothing is optimized.
+    public OrthExtDistance identical(OrthExt OE1, OrthExt OE2){
+        OrthExtPair pair = BuildPair(OE1, OE2);
+        solvedCount++;
+        double[] start1 = pair.getStartingValues1();
+        double[] start2 = pair.getStartingValues2();
+        PhyloTree[] trees = pair.buildTrees(start1, start2);
+        Geodesic FinalGeode = GeodesicCache.geodesic(cache, trees[0], trees[1]);
+        OrthExtSolution solution = new OrthExtSolution(start1, start2, 0, StopCriterion.IDENTICAL);
+        return new OrthExtDistance(OE1, OE2, trees[0], trees[1], FinalGeode, solution, 1, 0, policy, optimizer, startStrategy, false, false);
+    }
+    
+    //Result of a pair solved before (for example, read from a PairJournal), rebuilt from the final values x1 and x2 of its variables: only the trees and one geodesic are computed.
+    public OrthExtDistance restore(OrthExt OE1, OrthExt OE2, double[] x1, double[] x2, int iterCount, StopCriterion stopCriterion){
+        PhyloTree[] trees = buildTrees(OE1, OE2, x1, x2);
+        Geodesic FinalGeode = GeodesicCache.geodesic(cache, trees[0], trees[1]);
+        OrthExtSolution solution = new OrthExtSolution(x1, x2, iterCount, stopCriterion);
+        return new OrthExtDistance(OE1, OE2, trees[0], trees[1], FinalGeode, solution, 1, 0, policy, optimizer, startStrategy, false, false);
+    }
+    
+    //Trees of the orthant extensions OE1 and OE2 given by the values x1 and x2 of their variables (for example, the final values of an earlier solution), without optimizing anything.
+    public PhyloTree[] buildTrees(OrthExt OE1, OrthExt OE2, double[] x1, double[] x2){
+        return BuildPair(OE1, OE2).buildTrees(x1, x2);
+    }
+    
+    //Primitive representation of the pair of orthant extensions OE1 and OE2 (see OrthExtPair), as the optimizers receive it, for example to compare its geodesics with the ones of PolyMain. It shares the kernel of the solver, so it can only be used until the next call to the solver.
+    public OrthExtPair pair(OrthExt OE1, OrthExt OE2){
+        return BuildPair(OE1, OE2);
+    }
+    
+    //Sets up the starting trees and the primitive representation of the pair (see OrthExtPair), reusing the scratch of the solver.
+    private OrthExtPair BuildPair(OrthExt OE1, OrthExt OE2){
+        cur1Edges2Axis.clear();
+        cur2Edges2Axis.clear();
+        cur1Edges2Axis.addAll(OE1.getCloneEdges2Axis());
+        cur2Edges2Axis.addAll(OE2.getCloneEdges2Axis());
+        ET1toET2.clear();
+        ET2toET1.clear();
+        
+        PhyloTree T1;
+        PhyloTree T2;
+        OrthExtPair pair;
+        if (restricted){
+            //We start by the starting trees in each orthant extension.
+            //The pair only reads them, so no copies are needed.
+            T1 = OE1.getStartTree();
+            T2 = OE2.getStartTree();
+            pair = new OrthExtPair(OE1, OE2, T1, T2, cur1Edges2Axis, cur2Edges2Axis, null, null, true, 0.0000000000000001, lastPair);
+        } else {
+            //In the unrestricted case, lenghts of external edges to the original leaves are also potential variables, and edges or leaves missing in one of the trees copy the value in the other one.
+            PhyloTree[] NewStartingTrees = NewMutualTrees(OE1, OE2); //New trees for this pair, so they are not copied again.
+            T1 = NewStartingTrees[0];
+            T2 = NewStartingTrees[1];
+            pair = new OrthExtPair(OE1, OE2, T1, T2, cur1Edges2Axis, cur2Edges2Axis, ET1toET2, ET2toET1, false, 0.0000000000001, lastPair);
+        }
+        lastPair = pair;
+        
+        return pair;
+    }
+    
+    //Runs the optimizer on the pair from the best available starting point, and builds the final trees and geodesic.
+    private OrthExtDistance Optimize(OrthExtPair pair, OrthExtDistance neighbour){
+        OrthExt OE1 = pair.getOE1();
+        OrthExt OE2 = pair.getOE2();
+        
+        double[] start1 = pair.getStartingValues1();
+        double[] start2 = pair.getStartingValues2();
+        boolean warmStarted = false;
+        boolean pairAwareStarted = false;
+        double startDistance = Double.POSITIVE_INFINITY;
+        
+        //The pair-aware starting point replaces the starting trees if it is closer.
+        if (startStrategy == StartStrategy.PAIR_AWARE){
+            startDistance = pair.evaluate(start1, start2, null, null);
+            double[][] pairAware = PairAwareStart.compute(pair, start1, start2);
+            double pairAwareDistance = pair.evaluate(pairAware[0], pairAware[1], null, null);
+            if (pairAwareDistance < startDistance){
+                start1 = pairAware[0];
+                start2 = pairAware[1];
+                startDistance = pairAwareDistance;
+                pairAwareStarted = true;
+            }
+        }
+        
+        //If a neighbouring pair has already been solved, its solution is mapped through the shared axes and used as starting point, unless it is farther apart than the starting point so far.
+        if ((neighbour != null) && (neighbour.getFinalValues1() != null)){
+            double[] warm1 = WarmStartValues(OE1, neighbour.getOrthExt1(), neighbour.getFinalValues1());
+            double[] warm2 = WarmStartValues(OE2, neighbour.getOrthExt2(), neighbour.getFinalValues2());
+            if (startDistance == Double.POSITIVE_INFINITY){
+                startDistance = pair.evaluate(start1, start2, null, null);
+            }
+            if (pair.evaluate(warm1, warm2, null, null) < startDistance){
+                start1 = warm1;
+                start2 = warm2;
+                warmStarted = true;
+                pairAwareStarted = false;
+            }
+        }
+        
+        OrthExtSolution solution = optimizer.optimize(pair, start1, start2, policy);
+        
+        //Getting the final values after the optimization has been performed. Only here the trees and the geodesic are built.
+        PhyloTree[] finalTrees = pair.buildTrees(solution.getX1(), solution.getX2());
+        Geodesic FinalGeode = GeodesicCache.geodesic(cache, finalTrees[0], finalTrees[1]); //Computed directly unless the solver has a GeodesicCache.
+        
+        return new OrthExtDistance(OE1, OE2, finalTrees[0], finalTrees[1], FinalGeode, solution, pair.getGeodesicCount(), pair.getLowerBound(), policy, optimizer, startStrategy, warmStarted, pairAwareStarted);
+    }
+    
+    //Values of the variables of OE given by the values of the variables of fromOE (an orthant extension of the same extension space), keeping the lengths of the shared axes as far as the fixed lengths allow it.
+    private static double[] WarmStartValues(OrthExt OE, OrthExt fromOE, double[] fromValues){
+        if (OE == fromOE){
+            return fromValues.clone();
+        }
+        int[] correspondence = OE.variableCorrespondence(fromOE);
+        double[] guess = new double[correspondence.length];
+        for (int v = 0; v < guess.length; v++){
+            if (correspondence[v] != -1){
+                guess[v] = fromValues[correspondence[v]];
+            }
+        }
+        return OE.feasibleValues(guess);
+    }
+    
+    //Starting trees for the unrestricted case: each tree receives a copy of the edges of the other tree that are axes of its orthant extension but not edges of its original tree, and of the leaves missing in its original tree.
+    private PhyloTree[] NewMutualTrees(OrthExt OE1, OrthExt OE2){
+        PhyloTree T1 = new PhyloTree(OE1.getStartTree());
+        PhyloTree T2 = new PhyloTree(OE2.getStartTree());
+        
+        EdgeAttribute[] EAT1 = T1.getCopyLeafEdgeAttribs();
+        EdgeAttribute[] EAT2 = T2.getCopyLeafEdgeAttribs();
+        
+        for (int i = 0; i < OE1.getCompleteLeafSet().size(); i++){
+            if ((OE1.getCompLeaves2orgLeaves(i) == -1) && (OE2.getCompLeaves2orgLeaves(i) != -1)){
+                EAT1[i] = EAT2[i].clone();
+            }
+            if ((OE2.getCompLeaves2orgLeaves(i) == -1) && (OE1.getCompLeaves2orgLeaves(i) != -1)){
+                EAT2[i] = EAT1[i].clone();
+            }
+        }
+        
+        Vector<PhyloTreeEdge> T1Edges = polyAlg.Tools.myVectorClonePhyloTreeEdge(T1.getEdges());
+        Vector<PhyloTreeEdge> T2Edges = polyAlg.Tools.myVectorClonePhyloTreeEdge(T2.getEdges());
+        
+        int orgNumLeaves1 = OE1.getOriginalLeaves().cardinality();
+        int orgNumLeaves2 = OE2.getOriginalLeaves().cardinality();
+        
+        for (int i = orgNumLeaves1; i < OE1.getBackMap().length; i++){
+            if(OE1.getBackMap(i) == -1){
+                for (int j = 0; j < T2Edges.size(); j++){
+                    PhyloTreeEdge e = T2Edges.get(j);
+                    if (e.sameBipartition(OE1.getOrthantAxis(i-orgNumLeaves1))){
+                        cur1Edges2Axis.add(Integer.valueOf(i-orgNumLeaves1));
+                        ET2toET1.put(Integer.valueOf(j), Integer.valueOf(T1Edges.size()));
+                        PhyloTreeEdge eCl = e.clone();
+                        eCl.setOriginalID(T1Edges.size());
+                        T1Edges.add(eCl);
+                    }
+                }
+            }
+        }
+        
+        for (int i = orgNumLeaves2; i < OE2.getBackMap().length; i++){
+            if(OE2.getBackMap(i) == -1){
+                for (int j = 0; j < T1Edges.size(); j++){
+                    PhyloTreeEdge e = T1Edges.get(j);
+                    if (e.sameBipartition(OE2.getOrthantAxis(i-orgNumLeaves2))){
+                        cur2Edges2Axis.add(Integer.valueOf(i-orgNumLeaves2));
+                        ET1toET2.put(Integer.valueOf(j), Integer.valueOf(T2Edges.size()));
+                        PhyloTreeEdge eCl = e.clone();
+                        eCl.setOriginalID(T2Edges.size());
+                        T2Edges.add(eCl);
+                    }
+                }
+            }
+        }
+        
+        PhyloTree[] NewArray = new PhyloTree[2];
+        NewArray[0] = new PhyloTree(T1Edges, T1.getLeaf2NumMap(), EAT1, false);
+        NewArray[1] = new PhyloTree(T2Edges, T2.getLeaf2NumMap(), EAT2, false);
+        
+        return(NewArray);
+    }
+    
+    //Getters
+    public boolean isRestricted(){
+        return restricted;
+    }
+    
+    public ConvergencePolicy getPolicy(){
+        return policy;
+    }
+    
+    public OrthExtOptimizer getOptimizer(){
+        return optimizer;
+    }
+    
+    public StartStrategy getStartStrategy(){
+        return startStrategy;
+    }
+    
+    public int getSolvedCount(){
+        return solvedCount;
+    }
+}
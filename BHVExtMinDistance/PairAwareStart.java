@@ -0,0 +1,62 @@
+/** This is intended as the pair-aware starting point for OrthExtDistance. The starting tree of an OrthExt splits each fixed length evenly among the axes that merge into it, without looking at the other orthant extension. Here, the starting lengths are chosen by minimizing a quadratic surrogate of the squared distance (see OrthExtPair.surrogate): edges with the same split in both trees are matched as in a common orthant, and the rest as in the cone path through the star tree. The surrogate does not need any geodesic, and it is minimized with a few projected gradient steps over the product of simplices given by the rows of the mapping matrices.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+
+public class PairAwareStart{
+    private static final int MAX_STEPS = 200; //Maximum number of projected gradient steps.
+    private static final double STEP = 0.25; //Step length; the hessian of the surrogate is at most 4 times the identity.
+    private static final double CHANGE_TOL = 0.0000000001; //Steps stop when no length changes more than this.
+
+    //Returns the starting values {x1, x2} for the pair, minimizing the surrogate from start1 and start2.
+    public static double[][] compute(OrthExtPair pair, double[] start1, double[] start2){
+        OrthExt OE1 = pair.getOE1();
+        OrthExt OE2 = pair.getOE2();
+
+        double[] x1 = start1.clone();
+        double[] x2 = start2.clone();
+        double[] gradient1 = new double[x1.length];
+        double[] gradient2 = new double[x2.length];
+        double[] buffer = new double[Math.max(x1.length, x2.length) + 1];
+
+        for (int step = 0; step < MAX_STEPS; step++){
+            pair.surrogate(x1, x2, gradient1, gradient2);
+            double change = Math.max(Step(OE1, x1, gradient1, buffer), Step(OE2, x2, gradient2, buffer));
+            if (change <= CHANGE_TOL){
+                break;
+            }
+        }
+
+        double[][] start = new double[2][];
+        start[0] = x1;
+        start[1] = x2;
+        return start;
+    }
+
+    //Projected gradient step on the variables of one orthant extension, returning the largest change in a length.
+    private static double Step(OrthExt OE, double[] x, double[] gradient, double[] buffer){
+        double change = 0;
+        for (int r = 0; r < OE.getFixedLengths().length; r++){
+            Vector<Integer> row = OE.getMapList().get(r);
+            int[] rowArray = new int[row.size()];
+            double[] before = new double[row.size()];
+            for (int j = 0; j < row.size(); j++){
+                rowArray[j] = row.get(j);
+                before[j] = x[rowArray[j]];
+                x[rowArray[j]] -= STEP*gradient[rowArray[j]];
+            }
+            ProjectedLBFGSOptimizer.ProjectRow(x, rowArray, OE.getFixedLengths(r), buffer);
+            for (int j = 0; j < row.size(); j++){
+                change = Math.max(change, Math.abs(x[rowArray[j]] - before[j]));
+            }
+        }
+        return change;
+    }
+}
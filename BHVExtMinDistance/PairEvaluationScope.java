@@ -0,0 +1,273 @@
+/** This is intended as the scope of one request computing pairs of orthant extensions (see constructor 5 of ExtensionSpaceDistance), for programs that serve many requests in the same JVM. Each pair is a subtask running in its own thread, and the scope makes sure that:
+ * no more than maxConcurrency subtasks of the request run at the same time;
+ * a subtask only computes while holding a permit of cpuPermits, a semaphore that can be shared by all the requests of the JVM to limit the total number of busy CPUs;
+ * the whole scope is cancelled when the deadline passes, when a pair at distance zero is found (if stopAtZero), when cancel() is called, or when the thread waiting for the scope is interrupted. Cancelling interrupts the subtasks, and the optimizers stop at their next iteration (StopCriterion.CANCELLED);
+ * evaluate only returns when every subtask has finished, so no work of the request is left running.
+
+The threads are virtual threads when the JVM has them (Java 21 or later), and daemon platform threads otherwise; any other ThreadFactory can be given. A scope is used for one evaluation and then closed.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+public class PairEvaluationScope implements AutoCloseable{
+    //How the evaluation of a scope ended.
+    public enum Outcome{
+        RUNNING, //The evaluation has not finished.
+        COMPLETED, //All the pairs were computed.
+        DEADLINE, //The deadline passed before all the pairs were computed.
+        ZERO_DISTANCE, //A pair at distance zero was found, so the rest were not needed.
+        CANCELLED, //cancel() was called or the waiting thread was interrupted.
+        FAILED //A subtask threw an exception.
+    }
+
+    private static final Semaphore sharedCpuPermits = new Semaphore(Runtime.getRuntime().availableProcessors()); //Default permits, shared by all the scopes of the JVM.
+    private static final double ZERO_TOL = 0.000000000001; //Distances up to this are considered zero.
+
+    private int maxConcurrency; //Maximum number of subtasks of this scope running at the same time.
+    private Semaphore cpuPermits;
+    private Semaphore concurrency;
+    private long deadline; //In System.nanoTime() units, or Long.MAX_VALUE without deadline.
+    private boolean stopAtZero;
+    private ThreadFactory factory;
+
+    private final AtomicReference<Outcome> outcome = new AtomicReference<Outcome>(Outcome.RUNNING);
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private final List<Thread> subtasks = Collections.synchronizedList(new ArrayList<Thread>());
+    private final ConcurrentLinkedQueue<OrthExtSolver> idleSolvers = new ConcurrentLinkedQueue<OrthExtSolver>(); //Solvers are reused by later subtasks, so there are at most maxConcurrency of them.
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private boolean used = false;
+
+    //Constructors
+    //Scope with the shared CPU permits of the JVM, stopping at a pair at distance zero. timeoutMillis <= 0 means no deadline.
+    public PairEvaluationScope(int maxConcurrency, long timeoutMillis){
+        this(maxConcurrency, timeoutMillis, sharedCpuPermits, true);
+    }
+
+    public PairEvaluationScope(int maxConcurrency, long timeoutMillis, Semaphore cpuPermits, boolean stopAtZero){
+        this(maxConcurrency, timeoutMillis, cpuPermits, stopAtZero, DefaultThreadFactory());
+    }
+
+    public PairEvaluationScope(int maxConcurrency, long timeoutMillis, Semaphore cpuPermits, boolean stopAtZero, ThreadFactory factory){
+        if (maxConcurrency < 1){
+            throw new IllegalArgumentException("The maximum concurrency of a scope should be at least 1.");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.concurrency = new Semaphore(maxConcurrency);
+        this.cpuPermits = cpuPermits;
+        this.deadline = (timeoutMillis > 0) ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : Long.MAX_VALUE;
+        this.stopAtZero = stopAtZero;
+        this.factory = factory;
+    }
+
+    //Virtual threads if the JVM has them, daemon platform threads otherwise.
+    private static ThreadFactory DefaultThreadFactory(){
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e){
+            return r -> {
+                Thread t = new Thread(r, "PairEvaluationScope-subtask");
+                t.setDaemon(true);
+                return t;
+            };
+        }
+    }
+
+    public static Semaphore getSharedCpuPermits(){
+        return sharedCpuPermits;
+    }
+
+    //Computes the pairs of orthant extensions in the order given by PairScheduler, with solvers given by newSolver. The pairs that were computed are returned in position k1*OEs2.size() + k2, and the rest are null.
+    public OrthExtDistance[] evaluate(Vector<OrthExt> OEs1, Vector<OrthExt> OEs2, Supplier<OrthExtSolver> newSolver){
+        synchronized (this){
+            if (used){
+                throw new IllegalStateException("A PairEvaluationScope can only evaluate once.");
+            }
+            used = true;
+        }
+        int oNum2 = OEs2.size();
+        OrthExtDistance[] computed = new OrthExtDistance[OEs1.size()*oNum2];
+
+        try {
+            //Forking: a subtask is started when there is room for it in the concurrency of the scope.
+            forking:
+            for (PairScheduler.Block block : new PairScheduler(OEs1, OEs2, maxConcurrency).getBlocks()){
+                for (int k2 = block.getFrom(); k2 < block.getTo(); k2++){
+                    if (!AcquireBeforeDeadline(concurrency)){
+                        break forking;
+                    }
+                    if (outcome.get() != Outcome.RUNNING){
+                        concurrency.release();
+                        break forking;
+                    }
+                    final OrthExt OE1 = OEs1.get(block.getK1());
+                    final OrthExt OE2 = OEs2.get(k2);
+                    final int position = block.getK1()*oNum2 + k2;
+                    Thread t = factory.newThread(() -> Subtask(OE1, OE2, position, computed, newSolver));
+                    subtasks.add(t);
+                    t.start();
+                }
+            }
+
+            //Joining: waiting for all the subtasks, until the deadline. The list is copied because the subtasks may need it to cancel the scope.
+            List<Thread> started;
+            synchronized (subtasks){
+                started = new ArrayList<Thread>(subtasks);
+            }
+            for (Thread t : started){
+                if (deadline == Long.MAX_VALUE){
+                    t.join();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0){
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedJoin(t, remaining);
+                }
+            }
+        } catch (InterruptedException e){
+            cancel(Outcome.CANCELLED);
+            Thread.currentThread().interrupt();
+        } finally {
+            //After a cancellation the subtasks stop at their next iteration; they are always joined before returning.
+            if (outcome.get() == Outcome.RUNNING && IsAlive()){
+                cancel(Outcome.DEADLINE);
+            }
+            JoinAll();
+            outcome.compareAndSet(Outcome.RUNNING, Outcome.COMPLETED);
+        }
+
+        if (failure.get() != null){
+            throw new RuntimeException("An error occurred computing an orthant pair.", failure.get());
+        }
+        return computed;
+    }
+
+    //One subtask: computes one pair with an idle solver while holding a CPU permit.
+    private void Subtask(OrthExt OE1, OrthExt OE2, int position, OrthExtDistance[] computed, Supplier<OrthExtSolver> newSolver){
+        try {
+            if (outcome.get() != Outcome.RUNNING){
+                return;
+            }
+            cpuPermits.acquire();
+            try {
+                OrthExtSolver solver = idleSolvers.poll();
+                if (solver == null){
+                    solver = newSolver.get();
+                }
+                OrthExtDistance result = solver.solve(OE1, OE2);
+                idleSolvers.offer(solver);
+                if (result.getStopCriterion() != StopCriterion.CANCELLED){
+                    computed[position] = result;
+                    completedCount.incrementAndGet();
+                    if (stopAtZero && (result.getDistance() <= ZERO_TOL)){
+                        cancel(Outcome.ZERO_DISTANCE);
+                    }
+                }
+            } finally {
+                cpuPermits.release();
+            }
+        } catch (InterruptedException e){
+            //Cancelled while waiting for a CPU permit.
+        } catch (Throwable e){
+            failure.compareAndSet(null, e);
+            cancel(Outcome.FAILED);
+        } finally {
+            concurrency.release();
+        }
+    }
+
+    private boolean AcquireBeforeDeadline(Semaphore semaphore) throws InterruptedException{
+        if (deadline == Long.MAX_VALUE){
+            semaphore.acquire();
+            return true;
+        }
+        if (semaphore.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)){
+            return true;
+        }
+        cancel(Outcome.DEADLINE);
+        return false;
+    }
+
+    private boolean IsAlive(){
+        synchronized (subtasks){
+            for (Thread t : subtasks){
+                if (t.isAlive()){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //Waits for every subtask, even if the waiting thread is interrupted (the interruption is kept).
+    private void JoinAll(){
+        boolean interrupted = false;
+        List<Thread> all;
+        synchronized (subtasks){
+            all = new ArrayList<Thread>(subtasks);
+        }
+        for (Thread t : all){
+            while (t.isAlive()){
+                try {
+                    t.join();
+                } catch (InterruptedException e){
+                    interrupted = true;
+                    cancel(Outcome.CANCELLED);
+                }
+            }
+        }
+        if (interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void cancel(Outcome reason){
+        if (outcome.compareAndSet(Outcome.RUNNING, reason)){
+            synchronized (subtasks){
+                for (Thread t : subtasks){
+                    t.interrupt();
+                }
+            }
+        }
+    }
+
+    //Cancels the scope from any thread; the subtasks running stop at their next iteration.
+    public void cancel(){
+        cancel(Outcome.CANCELLED);
+    }
+
+    public boolean isCancelled(){
+        Outcome current = outcome.get();
+        return (current != Outcome.RUNNING) && (current != Outcome.COMPLETED);
+    }
+
+    public Outcome getOutcome(){
+        return outcome.get();
+    }
+
+    public int getCompletedCount(){
+        return completedCount.get();
+    }
+
+    public int getMaxConcurrency(){
+        return maxConcurrency;
+    }
+
+    //Cancels whatever is still running and waits for it.
+    public void close(){
+        cancel(Outcome.CANCELLED);
+        JoinAll();
+    }
+}
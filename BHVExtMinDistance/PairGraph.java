@@ -0,0 +1,188 @@
+/** This is intended as the graph between the pairs of orthant extensions in the ranked list of an ExtensionSpaceDistance, as built by JointNNI, StartTreeNNI and EndTreeNNI. The vertices are the positions of the pairs in the list, and the graph is stored in compressed sparse rows: the neighbours of vertex i are targets[offsets[i]] to targets[offsets[i+1] - 1], in increasing order.
+
+The graphs are built without comparing every pair with every other pair: a table gives the position in the list of each pair of orthant IDs (or the positions of the pairs with a given orthant ID), and the neighbours of a pair are looked up through the adjacency lists of the orthants in the orthantGraphs. So a graph is built in time proportional to the number of pairs times the number of neighbours of each orthant, plus the size of the graph itself.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+
+public class PairGraph{
+    private int[] offsets; //Row i of the graph goes from offsets[i] (included) to offsets[i+1] (excluded) in targets.
+    private int[] targets;
+
+    //Constructor
+    PairGraph(int[] offsets, int[] targets){
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    //Pairs with the same orthant in one extension space and orthants adjacent by rotation in the other one (see ExtensionSpaceDistance.JointNNI).
+    public static PairGraph joint(List<OrthExtDistance> pairs, orthantGraph connectCluster1, orthantGraph connectCluster2){
+        int oNum2 = connectCluster2.getVertexNum();
+        int[][] adj1 = Adjacency(connectCluster1);
+        int[][] adj2 = Adjacency(connectCluster2);
+
+        //Position in the list of the pair (O1ID, O2ID), stored in O1ID*oNum2 + O2ID, or -1.
+        int[] position = new int[connectCluster1.getVertexNum()*oNum2];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < pairs.size(); i++){
+            position[pairs.get(i).getO1ID()*oNum2 + pairs.get(i).getO2ID()] = i;
+        }
+
+        Rows rows = new Rows(pairs.size());
+        for (int i = 0; i < pairs.size(); i++){
+            int o1 = pairs.get(i).getO1ID();
+            int o2 = pairs.get(i).getO2ID();
+            for (int a2 : adj2[o2]){
+                rows.add(position[o1*oNum2 + a2]);
+            }
+            for (int a1 : adj1[o1]){
+                rows.add(position[a1*oNum2 + o2]);
+            }
+            rows.endRow();
+        }
+        return rows.toGraph();
+    }
+
+    //Pairs whose orthants in the first extension space are the same or adjacent by rotation (see ExtensionSpaceDistance.StartTreeNNI).
+    public static PairGraph startTree(List<OrthExtDistance> pairs, orthantGraph connectCluster1){
+        int[] IDs = new int[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++){
+            IDs[i] = pairs.get(i).getO1ID();
+        }
+        return SameOrAdjacent(IDs, connectCluster1);
+    }
+
+    //Pairs whose orthants in the second extension space are the same or adjacent by rotation (see ExtensionSpaceDistance.EndTreeNNI).
+    public static PairGraph endTree(List<OrthExtDistance> pairs, orthantGraph connectCluster2){
+        int[] IDs = new int[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++){
+            IDs[i] = pairs.get(i).getO2ID();
+        }
+        return SameOrAdjacent(IDs, connectCluster2);
+    }
+
+    //Graph joining pairs i and j when the orthant IDs[j] is IDs[i] or adjacent to it in connectCluster.
+    private static PairGraph SameOrAdjacent(int[] IDs, orthantGraph connectCluster){
+        int[][] adj = Adjacency(connectCluster);
+
+        //Positions of the pairs with each orthant ID, also in compressed rows (counting sort, so each bucket is in increasing order).
+        int vertexNum = connectCluster.getVertexNum();
+        int[] bucketStart = new int[vertexNum + 1];
+        for (int id : IDs){
+            bucketStart[id + 1]++;
+        }
+        for (int k = 0; k < vertexNum; k++){
+            bucketStart[k + 1] += bucketStart[k];
+        }
+        int[] bucket = new int[IDs.length];
+        int[] next = Arrays.copyOf(bucketStart, vertexNum);
+        for (int i = 0; i < IDs.length; i++){
+            bucket[next[IDs[i]]++] = i;
+        }
+
+        Rows rows = new Rows(IDs.length);
+        for (int i = 0; i < IDs.length; i++){
+            for (int b = bucketStart[IDs[i]]; b < bucketStart[IDs[i] + 1]; b++){
+                rows.add(bucket[b]);
+            }
+            for (int a : adj[IDs[i]]){
+                for (int b = bucketStart[a]; b < bucketStart[a + 1]; b++){
+                    rows.add(bucket[b]);
+                }
+            }
+            rows.endRow();
+        }
+        return rows.toGraph();
+    }
+
+    //Adjacency lists of all the orthants of the graph, read once.
+    private static int[][] Adjacency(orthantGraph connectCluster){
+        int[][] adj = new int[connectCluster.getVertexNum()][];
+        for (int k = 0; k < adj.length; k++){
+            adj[k] = connectCluster.getAdjIDs(k);
+        }
+        return adj;
+    }
+
+    //Compressed rows under construction: the targets of each row are sorted and repeated ones removed when the row ends.
+    private static class Rows{
+        private int[] offsets;
+        private int[] targets = new int[16];
+        private int row = 0;
+        private int size = 0;
+
+        Rows(int rowNum){
+            offsets = new int[rowNum + 1];
+        }
+
+        void add(int target){
+            if (target < 0){
+                return; //The pair is not in the list.
+            }
+            if (size == targets.length){
+                targets = Arrays.copyOf(targets, 2*size);
+            }
+            targets[size++] = target;
+        }
+
+        void endRow(){
+            int start = offsets[row];
+            Arrays.sort(targets, start, size);
+            int kept = start;
+            for (int t = start; t < size; t++){
+                if ((t == start) || (targets[t] != targets[t - 1])){
+                    targets[kept++] = targets[t];
+                }
+            }
+            size = kept;
+            offsets[++row] = size;
+        }
+
+        PairGraph toGraph(){
+            return new PairGraph(offsets, Arrays.copyOf(targets, size));
+        }
+    }
+
+    //Getters
+    //Number of vertices (pairs in the list).
+    public int size(){
+        return offsets.length - 1;
+    }
+
+    public int getDegree(int i){
+        return offsets[i + 1] - offsets[i];
+    }
+
+    //Neighbours of the pair in position i of the list, in increasing order.
+    public int[] getNeighbours(int i){
+        return Arrays.copyOfRange(targets, offsets[i], offsets[i + 1]);
+    }
+
+    public int[] getOffsets(){
+        return offsets;
+    }
+
+    public int[] getTargets(){
+        return targets;
+    }
+
+    //The graph as adjacency lists, as JointNNI, StartTreeNNI and EndTreeNNI returned it before.
+    public Map<Integer, List<Integer>> toMap(){
+        Map<Integer, List<Integer>> map = new HashMap<>();
+        for (int i = 0; i < size(); i++){
+            List<Integer> adjTemp = new ArrayList<Integer>(getDegree(i));
+            for (int t = offsets[i]; t < offsets[i + 1]; t++){
+                adjTemp.add(targets[t]);
+            }
+            map.put(i, adjTemp);
+        }
+        return map;
+    }
+}
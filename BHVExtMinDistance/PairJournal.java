@@ -0,0 +1,299 @@
+/** This is intended as the on-disk journal of a long computation of ExtensionSpaceDistance (see constructor 7), so that it can continue after the JVM is restarted. Each pair of orthant extensions is appended to the journal as soon as it is computed, with the IDs of its orthants, its distance, the number of iterations, the stop criterion and the final values of the variables of both orthant extensions, from which its trees and geodesic can be rebuilt.
+
+The file starts with a fingerprint of the computation: the Newick strings of both original trees, the complete leaf set, the axes of every orthant extension in the order of their IDs (so extension spaces whose orthants are numbered differently, for example built from another tree with the same topology through ExtensionSpaceFactory or EnumerationStore, do not match), the number of variables of every orthant extension, whether the computation is restricted, and the convergence policy and optimizer with all their values. A journal can only be continued by the same computation; opening it with a different fingerprint is an error. The stop criterion of every record is written by its name, so the journals do not depend on the order of the values of StopCriterion.
+
+The writes are buffered and only appended. The journal is flushed and forced to the disk (fsync) every SYNC_RECORDS records, every SYNC_MILLIS milliseconds and when it is closed, so at most the pairs of the last interval are lost when the JVM ends abruptly. Every record carries its length and a CRC32 checksum: when the journal is opened, the records are read up to the first incomplete or corrupt one, which can only be the tail of an interrupted write, and the file is truncated there.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import distanceAlg1.*;
+
+public class PairJournal implements AutoCloseable{
+    private static final int MAGIC = 0x42485632; //"BHV2"
+    private static final int SYNC_RECORDS = 64;
+    private static final long SYNC_MILLIS = 5000;
+
+    private File file;
+    private String fingerprint;
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private List<Record> records; //Records found when the journal was opened.
+
+    private ByteArrayOutputStream payload = new ByteArrayOutputStream(); //Scratch for the record being appended.
+    private DataOutputStream payloadOut = new DataOutputStream(payload);
+    private CRC32 crc = new CRC32();
+    private int unsyncedCount = 0;
+    private long lastSync = System.currentTimeMillis();
+    private int appendedCount = 0;
+
+    //One pair of orthant extensions in the journal.
+    public static class Record{
+        private int O1ID;
+        private int O2ID;
+        private double distance;
+        private int iterCount;
+        private StopCriterion stopCriterion;
+        private double[] finalValues1;
+        private double[] finalValues2;
+
+        Record(int O1ID, int O2ID, double distance, int iterCount, StopCriterion stopCriterion, double[] finalValues1, double[] finalValues2){
+            this.O1ID = O1ID;
+            this.O2ID = O2ID;
+            this.distance = distance;
+            this.iterCount = iterCount;
+            this.stopCriterion = stopCriterion;
+            this.finalValues1 = finalValues1;
+            this.finalValues2 = finalValues2;
+        }
+
+        public int getO1ID(){
+            return O1ID;
+        }
+
+        public int getO2ID(){
+            return O2ID;
+        }
+
+        public double getDistance(){
+            return distance;
+        }
+
+        public int getIterCount(){
+            return iterCount;
+        }
+
+        public StopCriterion getStopCriterion(){
+            return stopCriterion;
+        }
+
+        public double[] getFinalValues1(){
+            return finalValues1;
+        }
+
+        public double[] getFinalValues2(){
+            return finalValues2;
+        }
+    }
+
+    //Constructor: opens the journal, reading the records already in it, or creates it if it does not exist or is empty.
+    public PairJournal(File file, String fingerprint) throws IOException{
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.records = new ArrayList<Record>();
+
+        long validLength = (file.exists() && (file.length() > 0)) ? Read() : 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+            raf.setLength(validLength); //Drops the tail of an interrupted write, if any.
+        }
+        fileOut = new FileOutputStream(file, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+        if (validLength == 0){
+            out.writeInt(MAGIC);
+            out.writeUTF(fingerprint);
+            sync();
+        }
+    }
+
+    //Reads the header and the valid records, returning the length of the file up to the last valid record (0 if not even the header is valid).
+    private long Read() throws IOException{
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))){
+            String found;
+            try {
+                if (in.readInt() != MAGIC){
+                    throw new IOException("The file " + file + " is not a journal of orthant pairs.");
+                }
+                found = in.readUTF();
+            } catch (EOFException e){
+                return 0; //Interrupted while writing the header.
+            }
+            if (!found.equals(fingerprint)){
+                throw new IllegalArgumentException("The journal " + file + " belongs to a different computation (other trees, leaf set, orthants, mode, policy or optimizer).");
+            }
+            long validLength = 4 + 2 + found.getBytes(StandardCharsets.UTF_8).length;
+
+            byte[] buffer = new byte[256];
+            CRC32 check = new CRC32();
+            while (true){
+                int length;
+                try {
+                    length = in.readInt();
+                    if ((length <= 0) || (validLength + 8 + length > file.length())){
+                        break;
+                    }
+                    if (length > buffer.length){
+                        buffer = new byte[length];
+                    }
+                    in.readFully(buffer, 0, length);
+                    check.reset();
+                    check.update(buffer, 0, length);
+                    if (in.readInt() != (int) check.getValue()){
+                        break;
+                    }
+                } catch (EOFException e){
+                    break;
+                }
+                records.add(Decode(new DataInputStream(new ByteArrayInputStream(buffer, 0, length))));
+                validLength += 8 + length;
+            }
+            return validLength;
+        }
+    }
+
+    private static Record Decode(DataInputStream in) throws IOException{
+        int O1ID = in.readInt();
+        int O2ID = in.readInt();
+        double distance = in.readDouble();
+        int iterCount = in.readInt();
+        String criterion = in.readUTF();
+        StopCriterion stopCriterion;
+        try {
+            stopCriterion = StopCriterion.valueOf(criterion);
+        } catch (IllegalArgumentException e){
+            throw new IOException("Unknown stop criterion " + criterion + " in the journal.", e);
+        }
+        double[] finalValues1 = new double[in.readInt()];
+        for (int v = 0; v < finalValues1.length; v++){
+            finalValues1[v] = in.readDouble();
+        }
+        double[] finalValues2 = new double[in.readInt()];
+        for (int v = 0; v < finalValues2.length; v++){
+            finalValues2[v] = in.readDouble();
+        }
+        return new Record(O1ID, O2ID, distance, iterCount, stopCriterion, finalValues1, finalValues2);
+    }
+
+    //Fingerprint of the computation of the distance between the extension spaces (see the description of the class).
+    public static String fingerprint(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer){
+        StringBuilder description = new StringBuilder();
+        description.append(ES1.getOriginalTree().getNewick(true)).append('\n');
+        description.append(ES2.getOriginalTree().getNewick(true)).append('\n');
+        description.append(ES1.getCompleteLeafSet()).append('\n');
+        DescribeAxes(description, ES1);
+        DescribeAxes(description, ES2);
+        description.append(restricted ? "restricted" : "unrestricted").append('\n');
+        description.append(policy.getName()).append(',').append(policy.getGradientTol()).append(',').append(policy.getDerivTauTol()).append(',').append(policy.getRelObjectiveTol()).append(',').append(policy.getAbsObjectiveTol()).append(',').append(policy.getTauIntervalMin()).append(',').append(policy.getMaxIterations()).append(',').append(policy.getMaxGeodesicCalls()).append('\n');
+        DescribeOptimizer(description, optimizer);
+        return Sha256(description.toString());
+    }
+
+    //Number of variables and axes of every orthant extension of ES, in the order of their IDs.
+    static void DescribeAxes(StringBuilder description, ExtensionSpace ES){
+        for (OrthExt OE : ES.getOrthExts()){
+            description.append(OE.getBackMap().length).append('[');
+            for (Bipartition axis : OE.getOrthantAxis()){
+                description.append(axis.getPartition()).append(';');
+            }
+            description.append(']');
+        }
+        description.append('\n');
+    }
+
+    static String Sha256(String description){
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(description.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest){
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    //Name and parameters of the optimizer, for the fingerprint.
+    private static void DescribeOptimizer(StringBuilder description, OrthExtOptimizer optimizer){
+        description.append(optimizer.getName()).append('(');
+        if (optimizer instanceof ProjectedLBFGSOptimizer){
+            description.append(((ProjectedLBFGSOptimizer) optimizer).getMemory());
+        } else if (optimizer instanceof AlternatingProjectionOptimizer){
+            AlternatingProjectionOptimizer alternating = (AlternatingProjectionOptimizer) optimizer;
+            description.append(alternating.getSlowRate()).append(',');
+            if (alternating.getFallback() != null){
+                DescribeOptimizer(description, alternating.getFallback());
+            }
+        } else if (!(optimizer instanceof ReducedGradientOptimizer)){
+            description.append(optimizer.getClass().getName());
+        }
+        description.append(')');
+    }
+
+    //Appends the pair to the journal. It reaches the disk at the next sync.
+    public synchronized void append(OrthExtDistance OED) throws IOException{
+        double[] x1 = OED.getFinalValues1();
+        double[] x2 = OED.getFinalValues2();
+        payload.reset();
+        payloadOut.writeInt(OED.getO1ID());
+        payloadOut.writeInt(OED.getO2ID());
+        payloadOut.writeDouble(OED.getDistance());
+        payloadOut.writeInt(OED.getIterCount());
+        payloadOut.writeUTF(OED.getStopCriterion().name());
+        payloadOut.writeInt(x1.length);
+        for (double v : x1){
+            payloadOut.writeDouble(v);
+        }
+        payloadOut.writeInt(x2.length);
+        for (double v : x2){
+            payloadOut.writeDouble(v);
+        }
+        payloadOut.flush();
+
+        crc.reset();
+        crc.update(payload.toByteArray());
+        out.writeInt(payload.size());
+        payload.writeTo(out);
+        out.writeInt((int) crc.getValue());
+        appendedCount++;
+
+        unsyncedCount++;
+        if ((unsyncedCount >= SYNC_RECORDS) || (System.currentTimeMillis() - lastSync >= SYNC_MILLIS)){
+            sync();
+        }
+    }
+
+    //Flushes the buffer and forces the journal to the disk.
+    public synchronized void sync() throws IOException{
+        out.flush();
+        fileOut.getFD().sync();
+        unsyncedCount = 0;
+        lastSync = System.currentTimeMillis();
+    }
+
+    public synchronized void close() throws IOException{
+        try {
+            sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    //Getters
+    //The pairs that were already in the journal when it was opened, in the order they were computed.
+    public List<Record> getRecords(){
+        return records;
+    }
+
+    public int getAppendedCount(){
+        return appendedCount;
+    }
+
+    public String getFingerprint(){
+        return fingerprint;
+    }
+
+    public File getFile(){
+        return file;
+    }
+}
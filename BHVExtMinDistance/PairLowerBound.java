@@ -0,0 +1,33 @@
+/** This is intended as a cheap lower bound for the distance between two orthant extension spaces, used to skip pairs in the branch and bound search of ExtensionSpaceDistance. No geodesic is computed.
+
+The bound comes from the quadratic surrogate of OrthExtPair.surrogate, which is the squared Euclidean distance between the vectors of lengths indexed by splits. In the formula of the geodesic distance (GTP), the distance is the square root of the sum over common splits of the squared differences of their lengths plus (||A_1|| + ||B_1||)^2 + ... + (||A_k|| + ||B_k||)^2, over the support pairs (A_i, B_i) of the geodesic. Each (||A_i|| + ||B_i||)^2 is at least ||A_i||^2 + ||B_i||^2, so the surrogate is never larger than the squared distance. The surrogate is convex, so after minimizing it approximately with PairAwareStart, the Frank-Wolfe gap over the product of simplices given by the rows of the mapping matrices turns the approximate minimum into a certified lower bound of the true minimum.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+public class PairLowerBound{
+
+    //Lower bound for the distance between the orthant extensions of the pair.
+    public static double compute(OrthExtPair pair){
+        double[][] x = PairAwareStart.compute(pair, pair.getStartingValues1(), pair.getStartingValues2());
+        double[] gradient1 = new double[x[0].length];
+        double[] gradient2 = new double[x[1].length];
+        double value = pair.surrogate(x[0], x[1], gradient1, gradient2);
+
+        //The surrogate is convex, so it is at least its value plus the smallest value of its linearization over the feasible set (see OrthExtPair.lowerBound, which does the same for half the squared distance).
+        return pair.lowerBound(Math.sqrt(value), x[0], x[1], Half(gradient1), Half(gradient2));
+    }
+
+    //Gradient of half the surrogate.
+    private static double[] Half(double[] gradient){
+        for (int v = 0; v < gradient.length; v++){
+            gradient[v] /= 2;
+        }
+        return gradient;
+    }
+}
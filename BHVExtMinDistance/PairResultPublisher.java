@@ -0,0 +1,353 @@
+/** This is intended as an asynchronous version of ExtensionSpaceDistance: the pairs of orthant extensions are computed in the background, and each OrthExtDistance is published as soon as it is computed, through java.util.concurrent.Flow, so that long computations can be followed while they run. Subscribers of subscribeBest receive instead each new best pair found so far (each one at a shorter distance than the previous one). When all the pairs have been computed, getCompletion gives the same ExtensionSpaceDistance as the synchronous constructors.
+
+The publishers are SubmissionPublishers with a buffer of bufferCapacity items per subscriber. Every subscriber is wrapped to count the items submitted to it that it has not consumed yet, and when one of them has bufferCapacity of them the workers wait on a condition signalled by the consumption of an item (or by the end of the subscription), so a slow subscriber slows down the computation instead of making the buffers grow (backpressure). The workers do not wait inside SubmissionPublisher.submit, which would hold the lock of the publisher and keep cancel() from closing it. Subscribers should subscribe before start(), since items published before a subscription are not delivered to it.
+
+The best so far signals are strictly improving: a worker that found a new best pair submits it only if it is still the best pair of the collector, and shorter than the last one sent, once it holds the lock of the best so far channel and there is room for it. If another worker found a shorter pair meanwhile, the stale one is dropped.
+
+The pairs are computed by numThreads threads of the publisher, in the order of PairScheduler, and each thread keeps its own OrthExtSolver. The computation can be cancelled with cancel(); the subscribers then receive onError with a CancellationException.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+public class PairResultPublisher implements Flow.Publisher<OrthExtDistance>, AutoCloseable{
+    private ExtensionSpace ES1;
+    private ExtensionSpace ES2;
+    private boolean restricted;
+    private ConvergencePolicy policy;
+    private OrthExtOptimizer optimizer;
+    private int numThreads;
+
+    private Channel results; //Every pair, as it is computed.
+    private Channel bestSoFar; //Every new best pair.
+    private int bufferCapacity;
+    private double lastBestSent = Double.POSITIVE_INFINITY; //Distance of the last best pair sent; guarded by the lock of bestSoFar.
+    private CompletableFuture<ExtensionSpaceDistance> completion = new CompletableFuture<ExtensionSpaceDistance>();
+
+    private RankedCollector collector = new RankedCollector(); //Guarded by itself.
+    private Set<Thread> running = ConcurrentHashMap.newKeySet(); //Threads computing a block right now, interrupted by cancel().
+    private volatile boolean cancelled = false;
+    private AtomicBoolean started = new AtomicBoolean(false);
+    private AtomicBoolean finished = new AtomicBoolean(false);
+    private AtomicInteger remainingBlocks = new AtomicInteger();
+    private AtomicInteger publishedCount = new AtomicInteger();
+
+    //Constructors
+    public PairResultPublisher(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, int numThreads){
+        this(ES1, ES2, restricted, ConvergencePolicy.certified(), new ReducedGradientOptimizer(), numThreads, Flow.defaultBufferSize());
+    }
+
+    public PairResultPublisher(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, int numThreads, int bufferCapacity){
+        if (numThreads < 1){
+            throw new IllegalArgumentException("The number of threads should be at least 1.");
+        }
+        this.ES1 = ES1;
+        this.ES2 = ES2;
+        this.restricted = restricted;
+        this.policy = policy;
+        this.optimizer = optimizer;
+        this.numThreads = numThreads;
+        this.bufferCapacity = bufferCapacity;
+
+        //The items are delivered to the subscribers by daemon threads of their own, which end when they are idle, so the common pool is not used.
+        ExecutorService delivery = Executors.newCachedThreadPool(DaemonFactory("PairResultPublisher-delivery-"));
+        results = new Channel(new SubmissionPublisher<OrthExtDistance>(delivery, bufferCapacity));
+        bestSoFar = new Channel(new SubmissionPublisher<OrthExtDistance>(delivery, bufferCapacity));
+    }
+
+    //A publisher with the subscribers it delivers to, counting the items each one has not consumed yet. Only one worker submits to it at a time, holding its lock.
+    private class Channel{
+        private SubmissionPublisher<OrthExtDistance> publisher;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition space = lock.newCondition(); //Signalled when an item is consumed, a subscription ends, or the computation ends.
+        private List<Tracked> subscribers = new CopyOnWriteArrayList<Tracked>();
+
+        Channel(SubmissionPublisher<OrthExtDistance> publisher){
+            this.publisher = publisher;
+        }
+
+        void subscribe(Flow.Subscriber<? super OrthExtDistance> subscriber){
+            lock.lock();
+            try {
+                Tracked tracked = new Tracked(subscriber, this);
+                subscribers.add(tracked);
+                publisher.subscribe(tracked);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        //Submits the item once every subscriber has room for it, returning false if the computation ends first or if stillWanted (when not null) is false once there is room. The caller holds the lock.
+        boolean Submit(OrthExtDistance OED, BooleanSupplier stillWanted) throws InterruptedException{
+            while (Full()){
+                if (cancelled || publisher.isClosed()){
+                    return false;
+                }
+                space.await();
+            }
+            if (cancelled || publisher.isClosed() || ((stillWanted != null) && !stillWanted.getAsBoolean())){
+                return false;
+            }
+            for (Tracked tracked : subscribers){
+                if (tracked.active){
+                    tracked.outstanding.incrementAndGet();
+                }
+            }
+            publisher.submit(OED); //Does not wait: every subscriber has room.
+            return true;
+        }
+
+        private boolean Full(){
+            for (Tracked tracked : subscribers){
+                if (tracked.active && (tracked.outstanding.get() >= bufferCapacity)){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void Wake(){
+            lock.lock();
+            try {
+                space.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close(){
+            publisher.close();
+            Wake();
+        }
+
+        void closeExceptionally(Throwable e){
+            publisher.closeExceptionally(e);
+            Wake();
+        }
+    }
+
+    //Subscriber that forwards everything to the real one, counting the items it has not consumed yet and waking the workers waiting for room.
+    private static class Tracked implements Flow.Subscriber<OrthExtDistance>{
+        private Flow.Subscriber<? super OrthExtDistance> subscriber;
+        private Channel channel;
+        private AtomicInteger outstanding = new AtomicInteger();
+        private volatile boolean active = true;
+
+        Tracked(Flow.Subscriber<? super OrthExtDistance> subscriber, Channel channel){
+            this.subscriber = subscriber;
+            this.channel = channel;
+        }
+
+        public void onSubscribe(Flow.Subscription subscription){
+            subscriber.onSubscribe(new Flow.Subscription(){
+                public void request(long n){
+                    subscription.request(n);
+                }
+
+                public void cancel(){
+                    subscription.cancel();
+                    End();
+                }
+            });
+        }
+
+        public void onNext(OrthExtDistance OED){
+            try {
+                subscriber.onNext(OED);
+            } finally {
+                outstanding.decrementAndGet();
+                channel.Wake();
+            }
+        }
+
+        public void onError(Throwable e){
+            End();
+            subscriber.onError(e);
+        }
+
+        public void onComplete(){
+            End();
+            subscriber.onComplete();
+        }
+
+        private void End(){
+            active = false;
+            channel.Wake();
+        }
+    }
+
+    private static ThreadFactory DaemonFactory(String prefix){
+        AtomicInteger created = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + created.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    //Subscription to every pair, as it is computed.
+    public void subscribe(Flow.Subscriber<? super OrthExtDistance> subscriber){
+        results.subscribe(subscriber);
+    }
+
+    //Subscription to the best pair so far, each time it changes.
+    public void subscribeBest(Flow.Subscriber<? super OrthExtDistance> subscriber){
+        bestSoFar.subscribe(subscriber);
+    }
+
+    //Starts the computation in the background and returns immediately.
+    public void start(){
+        if (!started.compareAndSet(false, true)){
+            throw new IllegalStateException("The computation of the publisher was already started.");
+        }
+        Vector<OrthExt> OEs1 = ES1.getOrthExts();
+        Vector<OrthExt> OEs2 = ES2.getOrthExts();
+        List<PairScheduler.Block> blocks = new PairScheduler(OEs1, OEs2, numThreads).getBlocks();
+        remainingBlocks.set(blocks.size());
+        if (blocks.isEmpty()){
+            Finish();
+            return;
+        }
+
+        ThreadLocal<OrthExtSolver> solvers = ThreadLocal.withInitial(() -> new OrthExtSolver(restricted, policy, optimizer));
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads, DaemonFactory("PairResultPublisher-worker-"));
+        for (PairScheduler.Block block : blocks){
+            workers.execute(() -> {
+                running.add(Thread.currentThread());
+                try {
+                    OrthExtSolver solver = solvers.get();
+                    OrthExt OE1 = OEs1.get(block.getK1());
+                    for (int k2 = block.getFrom(); (k2 < block.getTo()) && !cancelled; k2++){
+                        OrthExtDistance OED = solver.solve(OE1, OEs2.get(k2));
+                        if (OED.getStopCriterion() != StopCriterion.CANCELLED){
+                            Publish(OED);
+                        }
+                    }
+                } catch (InterruptedException e){
+                    //Cancelled while waiting for room in the buffers of the subscribers.
+                } catch (Throwable e){
+                    Fail(e);
+                } finally {
+                    running.remove(Thread.currentThread());
+                    Thread.interrupted(); //The worker thread is reused, so it should not keep the interruption of a cancellation.
+                    if (remainingBlocks.decrementAndGet() == 0){
+                        Finish();
+                    }
+                }
+            });
+        }
+        workers.shutdown(); //The workers end once the blocks already submitted are done.
+    }
+
+    private void Publish(OrthExtDistance OED) throws InterruptedException{
+        results.lock.lockInterruptibly();
+        try {
+            if (!results.Submit(OED, null)){
+                return;
+            }
+        } finally {
+            results.lock.unlock();
+        }
+        publishedCount.incrementAndGet();
+        boolean improved;
+        synchronized (collector){
+            OrthExtDistance previousBest = collector.getBest();
+            collector.add(OED);
+            improved = (collector.getBest() == OED) && (OED != previousBest);
+        }
+        if (improved){
+            bestSoFar.lock.lockInterruptibly();
+            try {
+                //Another worker may have found a shorter pair while this one waited, so the pair is only sent if it is still the best one and shorter than the last one sent.
+                if (bestSoFar.Submit(OED, () -> (getBestSoFar() == OED) && (OED.getDistance() < lastBestSent))){
+                    lastBestSent = OED.getDistance();
+                }
+            } finally {
+                bestSoFar.lock.unlock();
+            }
+        }
+    }
+
+    private void Fail(Throwable e){
+        if (finished.compareAndSet(false, true)){
+            cancelled = true;
+            InterruptRunning();
+            results.closeExceptionally(e);
+            bestSoFar.closeExceptionally(e);
+            completion.completeExceptionally(e);
+        }
+    }
+
+    private void Finish(){
+        if (cancelled){
+            Fail(new CancellationException("The computation of the orthant pairs was cancelled."));
+            return;
+        }
+        if (finished.compareAndSet(false, true)){
+            ExtensionSpaceDistance ESD;
+            synchronized (collector){
+                ESD = new ExtensionSpaceDistance(collector, policy, optimizer);
+            }
+            results.close();
+            bestSoFar.close();
+            completion.complete(ESD);
+        }
+    }
+
+    private void InterruptRunning(){
+        for (Thread t : running){
+            t.interrupt();
+        }
+    }
+
+    //Stops the computation: the running optimizations stop at their next iteration and the remaining pairs are not computed.
+    public void cancel(){
+        cancelled = true;
+        InterruptRunning();
+        results.Wake();
+        bestSoFar.Wake();
+        if (!started.get() || (remainingBlocks.get() == 0)){
+            Fail(new CancellationException("The computation of the orthant pairs was cancelled."));
+        }
+    }
+
+    public void close(){
+        cancel();
+    }
+
+    //The ExtensionSpaceDistance with all the pairs, once they have been computed.
+    public CompletableFuture<ExtensionSpaceDistance> getCompletion(){
+        return completion;
+    }
+
+    //Best pair so far (null if no pair has been computed yet).
+    public OrthExtDistance getBestSoFar(){
+        synchronized (collector){
+            return collector.getBest();
+        }
+    }
+
+    public int getPublishedCount(){
+        return publishedCount.get();
+    }
+
+    public int getTotalPairs(){
+        return ES1.getOrthExts().size()*ES2.getOrthExts().size();
+    }
+
+    public boolean isCancelled(){
+        return cancelled;
+    }
+}
@@ -0,0 +1,176 @@
+/** This is intended as the scheduler of the pairs of orthant extensions computed in parallel by ExtensionSpaceDistance. The pairs are split into blocks of pairs sharing the orthant extension of the first extension space. The blocks are ordered by their expected cost, longest first, so that the longest blocks do not end up at the tail of the computation while the other workers are idle (see getBlocks).
+
+The scheduler also has one queue of blocks per worker (see nextBlock): all the blocks of an OE1 go to the same queue, one after the other, so a worker computes consecutive pairs with the same OE1 (and the same starting tree and mapping matrix in memory). The OE1s are given, longest first, to the queue with less expected cost so far. A worker whose queue is empty takes the last block of the queue with more cost left, so only the tail of the computation moves an OE1 to another worker.
+
+The expected cost of a pair grows with the number of free degrees of both orthant extensions (getDim), which gives the size of the optimization, and with the number of axes of each orthant that are not axes of the other one, which gives the size of each geodesic (the common axes are matched directly, and only the rest go through the ratios of the geodesic). Every maximal orthant of an extension space has the same number of axes, so the number of axes alone would not tell the pairs apart.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import distanceAlg1.*;
+
+public class PairScheduler{
+    private static final int BLOCKS_PER_THREAD = 4; //Blocks are small enough to have about this many per thread, to balance the load.
+
+    private List<Block> blocks; //Blocks in the order they should be computed.
+    private List<ArrayDeque<Block>> queues; //Blocks of each worker, with the blocks of an OE1 together.
+    private double[] queueCosts; //Expected cost left in each queue.
+
+    //Pairs (k1, k2) for k2 between from (included) and to (excluded), with their expected cost.
+    public static class Block{
+        private int k1;
+        private int from;
+        private int to;
+        private double cost;
+
+        Block(int k1, int from, int to, double cost){
+            this.k1 = k1;
+            this.from = from;
+            this.to = to;
+            this.cost = cost;
+        }
+
+        public int getK1(){
+            return k1;
+        }
+
+        public int getFrom(){
+            return from;
+        }
+
+        public int getTo(){
+            return to;
+        }
+
+        public double getCost(){
+            return cost;
+        }
+    }
+
+    //Constructor
+    public PairScheduler(Vector<OrthExt> OEs1, Vector<OrthExt> OEs2, int numThreads){
+        if (numThreads < 1){
+            throw new IllegalArgumentException("The number of threads should be at least 1.");
+        }
+        int oNum1 = OEs1.size();
+        int oNum2 = OEs2.size();
+
+        //Each OE1 is split in as many blocks as needed to have BLOCKS_PER_THREAD blocks per thread overall.
+        int blocksPerOE1 = Math.max(1, (BLOCKS_PER_THREAD*numThreads + oNum1 - 1)/Math.max(oNum1, 1));
+        int blockSize = Math.max(1, (oNum2 + blocksPerOE1 - 1)/blocksPerOE1);
+
+        blocks = new ArrayList<Block>();
+        for (int k1 = 0; k1 < oNum1; k1++){
+            for (int from = 0; from < oNum2; from += blockSize){
+                int to = Math.min(from + blockSize, oNum2);
+                double cost = 0;
+                for (int k2 = from; k2 < to; k2++){
+                    cost += expectedCost(OEs1.get(k1), OEs2.get(k2));
+                }
+                blocks.add(new Block(k1, from, to, cost));
+            }
+        }
+        //The queues of the workers, before the blocks are sorted (they are still grouped by OE1, in order of k2).
+        queues = new ArrayList<ArrayDeque<Block>>(numThreads);
+        for (int w = 0; w < numThreads; w++){
+            queues.add(new ArrayDeque<Block>());
+        }
+        queueCosts = new double[numThreads];
+        double[] oe1Costs = new double[oNum1];
+        Integer[] oe1Order = new Integer[oNum1];
+        for (Block block : blocks){
+            oe1Costs[block.k1] += block.cost;
+        }
+        for (int k1 = 0; k1 < oNum1; k1++){
+            oe1Order[k1] = k1;
+        }
+        Arrays.sort(oe1Order, (a, b) -> Double.compare(oe1Costs[b], oe1Costs[a]));
+        int[] queueOf = new int[oNum1];
+        for (int k1 : oe1Order){
+            int lightest = 0;
+            for (int w = 1; w < numThreads; w++){
+                if (queueCosts[w] < queueCosts[lightest]){
+                    lightest = w;
+                }
+            }
+            queueOf[k1] = lightest;
+            queueCosts[lightest] += oe1Costs[k1];
+        }
+        List<List<Block>> blocksOf = new ArrayList<List<Block>>(oNum1);
+        for (int k1 = 0; k1 < oNum1; k1++){
+            blocksOf.add(new ArrayList<Block>());
+        }
+        for (Block block : blocks){
+            blocksOf.get(block.k1).add(block);
+        }
+        for (int k1 : oe1Order){
+            queues.get(queueOf[k1]).addAll(blocksOf.get(k1));
+        }
+
+        //Longest first; the sort is stable, so blocks with the same cost keep the order of the pairs.
+        blocks.sort((a, b) -> Double.compare(b.cost, a.cost));
+    }
+
+    //Next block for the worker (between 0 and numThreads - 1): the next one of its own queue, or, if it is empty, the last one of the queue with more expected cost left. Null when there are no blocks left.
+    public synchronized Block nextBlock(int worker){
+        Block block = queues.get(worker).pollFirst();
+        if (block == null){
+            int heaviest = -1;
+            for (int w = 0; w < queues.size(); w++){
+                if (!queues.get(w).isEmpty() && ((heaviest == -1) || (queueCosts[w] > queueCosts[heaviest]))){
+                    heaviest = w;
+                }
+            }
+            if (heaviest == -1){
+                return null;
+            }
+            worker = heaviest;
+            block = queues.get(worker).pollLast();
+        }
+        queueCosts[worker] -= block.cost;
+        return block;
+    }
+
+    //Expected cost of the optimization of a pair, in arbitrary units.
+    public static double expectedCost(OrthExt OE1, OrthExt OE2){
+        int numberLeaves = OE1.getCompleteLeafSet().size();
+        Set<BitSet> splits1 = CanonicalSplits(OE1.getOrthantAxis(), numberLeaves);
+        Set<BitSet> splits2 = CanonicalSplits(OE2.getOrthantAxis(), numberLeaves);
+        int nonCommon = 0;
+        for (BitSet split : splits1){
+            if (!splits2.contains(split)){
+                nonCommon++;
+            }
+        }
+        for (BitSet split : splits2){
+            if (!splits1.contains(split)){
+                nonCommon++;
+            }
+        }
+        return (1 + OE1.getDim() + OE2.getDim())*(double) (1 + nonCommon);
+    }
+
+    //The splits of the axes, each one as the side without the last leaf, so the same split is found whichever side the Bipartition has.
+    private static Set<BitSet> CanonicalSplits(Vector<Bipartition> axes, int numberLeaves){
+        Set<BitSet> splits = new HashSet<BitSet>();
+        for (Bipartition axis : axes){
+            BitSet split = (BitSet) axis.getPartition().clone();
+            if (split.get(numberLeaves - 1)){
+                split.flip(0, numberLeaves);
+            }
+            splits.add(split);
+        }
+        return splits;
+    }
+
+    //All the blocks, longest first, for the computations that take them from a single queue.
+    public List<Block> getBlocks(){
+        return blocks;
+    }
+}
@@ -0,0 +1,207 @@
+/** This is intended as a memory-light record of the distances between all the pairs of orthant extensions of two extension spaces (see constructor 6 of ExtensionSpaceDistance). Each OrthExtDistance keeps two PhyloTrees and a Geodesic with its RatioSequence, which for runs with many thousands of pairs is most of the heap. The table keeps instead, for every pair, only the IDs of the orthants, the distance, the number of iterations and the stop criterion, in primitive columns, together with the final values of the variables of both orthant extensions. Only the keepFull pairs with shorter distances are kept as full OrthExtDistance objects.
+
+The trees and the geodesic of any other pair are rebuilt on request from the final values of its variables, which give the optimal lengths of the edges, so no optimization is repeated: only one geodesic is computed.
+
+A table is not thread-safe.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import distanceAlg1.*;
+
+public class PairSummaryTable{
+    private static final StopCriterion[] CRITERIA = StopCriterion.values();
+
+    private ExtensionSpace ES1;
+    private ExtensionSpace ES2;
+    private boolean restricted;
+    private RankedCollector full; //The keepFull pairs with shorter distances, as full objects.
+    private Map<Long, OrthExtDistance> fullIndex = new HashMap<>(); //The same pairs by the IDs of their orthants (see PairKey), updated as they enter and leave the collector.
+    private OrthExtSolver rebuilder; //Created the first time a pair is rebuilt.
+
+    //Columns, one entry per pair in the order they were added.
+    private int size = 0;
+    private int[] o1IDs = new int[16];
+    private int[] o2IDs = new int[16];
+    private double[] distances = new double[16];
+    private int[] iterCounts = new int[16];
+    private byte[] stopCriteria = new byte[16];
+    //Final values of the variables of all the pairs, one after the other: those of pair i start at valueStarts[i], first the ones of the first orthant extension (valueSplits[i] of them) and then the ones of the second.
+    private int[] valueStarts = new int[17];
+    private int[] valueSplits = new int[16];
+    private double[] values = new double[64];
+
+    //Constructor
+    public PairSummaryTable(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, int keepFull){
+        this.ES1 = ES1;
+        this.ES2 = ES2;
+        this.restricted = restricted;
+        this.full = new RankedCollector(keepFull);
+    }
+
+    //Records the pair. The object itself is only kept if it is among the keepFull shorter distances.
+    public void add(OrthExtDistance OED){
+        if (size == o1IDs.length){
+            Grow();
+        }
+        double[] x1 = OED.getFinalValues1();
+        double[] x2 = OED.getFinalValues2();
+        int start = valueStarts[size];
+        int end = start + x1.length + x2.length;
+        if (end > values.length){
+            values = Arrays.copyOf(values, Math.max(end, 2*values.length));
+        }
+        System.arraycopy(x1, 0, values, start, x1.length);
+        System.arraycopy(x2, 0, values, start + x1.length, x2.length);
+
+        o1IDs[size] = OED.getO1ID();
+        o2IDs[size] = OED.getO2ID();
+        distances[size] = OED.getDistance();
+        iterCounts[size] = OED.getIterCount();
+        stopCriteria[size] = (byte) OED.getStopCriterion().ordinal();
+        valueSplits[size] = x1.length;
+        valueStarts[size + 1] = end;
+        size++;
+
+        OrthExtDistance dropped = full.add(OED);
+        if (dropped != OED){
+            fullIndex.put(PairKey(OED.getO1ID(), OED.getO2ID()), OED);
+        }
+        if ((dropped != null) && (dropped != OED)){
+            fullIndex.remove(PairKey(dropped.getO1ID(), dropped.getO2ID()));
+        }
+    }
+
+    private static long PairKey(int O1ID, int O2ID){
+        return (((long) O1ID) << 32) | (O2ID & 0xffffffffL);
+    }
+
+    private void Grow(){
+        int capacity = 2*o1IDs.length;
+        o1IDs = Arrays.copyOf(o1IDs, capacity);
+        o2IDs = Arrays.copyOf(o2IDs, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+        iterCounts = Arrays.copyOf(iterCounts, capacity);
+        stopCriteria = Arrays.copyOf(stopCriteria, capacity);
+        valueSplits = Arrays.copyOf(valueSplits, capacity);
+        valueStarts = Arrays.copyOf(valueStarts, capacity + 1);
+    }
+
+    //Positions of the pairs from the shorter distance to the longer one (pairs at the same distance by the IDs of their orthants, as in RankedCollector).
+    public int[] rankedOrder(){
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int c = Double.compare(distances[a], distances[b]);
+            if (c == 0){
+                c = Integer.compare(o1IDs[a], o1IDs[b]);
+            }
+            if (c == 0){
+                c = Integer.compare(o2IDs[a], o2IDs[b]);
+            }
+            return c;
+        });
+        int[] ranked = new int[size];
+        for (int i = 0; i < size; i++){
+            ranked[i] = order[i];
+        }
+        return ranked;
+    }
+
+    //Full object of the pair in position i if it is kept, null otherwise.
+    public OrthExtDistance getFull(int i){
+        return fullIndex.get(PairKey(o1IDs[i], o2IDs[i]));
+    }
+
+    //Trees of the pair in position i, rebuilt from the final values of its variables unless the full object is kept.
+    public PhyloTree[] getTrees(int i){
+        OrthExtDistance OED = getFull(i);
+        if (OED != null){
+            return new PhyloTree[]{OED.getFirstTree(), OED.getSecondTree()};
+        }
+        if (rebuilder == null){
+            rebuilder = new OrthExtSolver(restricted);
+        }
+        OrthExt OE1 = ES1.getOrthExts().get(o1IDs[i]);
+        OrthExt OE2 = ES2.getOrthExts().get(o2IDs[i]);
+        return rebuilder.buildTrees(OE1, OE2, getFinalValues1(i), getFinalValues2(i));
+    }
+
+    //Geodesic of the pair in position i, computed again from its trees unless the full object is kept.
+    public Geodesic getGeodesic(int i){
+        OrthExtDistance OED = getFull(i);
+        if (OED != null){
+            return OED.getFinalGeode();
+        }
+        PhyloTree[] trees = getTrees(i);
+        return polyAlg.PolyMain.getGeodesic(trees[0], trees[1], null);
+    }
+
+    //Getters
+    public int size(){
+        return size;
+    }
+
+    public int getO1ID(int i){
+        return o1IDs[i];
+    }
+
+    public int getO2ID(int i){
+        return o2IDs[i];
+    }
+
+    public double getDistance(int i){
+        return distances[i];
+    }
+
+    public int getIterCount(int i){
+        return iterCounts[i];
+    }
+
+    public StopCriterion getStopCriterion(int i){
+        return CRITERIA[stopCriteria[i]];
+    }
+
+    public double[] getFinalValues1(int i){
+        return Arrays.copyOfRange(values, valueStarts[i], valueStarts[i] + valueSplits[i]);
+    }
+
+    public double[] getFinalValues2(int i){
+        return Arrays.copyOfRange(values, valueStarts[i] + valueSplits[i], valueStarts[i + 1]);
+    }
+
+    //The pairs kept as full objects, from the shorter distance to the longer one.
+    public List<OrthExtDistance> getFullPairs(){
+        return full.toSortedList();
+    }
+
+    RankedCollector getFullCollector(){
+        return full;
+    }
+
+    public ExtensionSpace getES1(){
+        return ES1;
+    }
+
+    public ExtensionSpace getES2(){
+        return ES2;
+    }
+
+    public boolean isRestricted(){
+        return restricted;
+    }
+
+    //Approximate number of bytes of the columns.
+    public long getColumnBytes(){
+        long perPair = 4 + 4 + 8 + 4 + 1 + 4 + 4;
+        return perPair*o1IDs.length + 8L*values.length;
+    }
+}
@@ -0,0 +1,120 @@
+/** This is intended as the detection of symmetric computations in ExtensionSpaceDistance. When both extension spaces are the same (the same ExtensionSpace twice, or two built from the same tree), each orthant extension OE1_a of the first one is equivalent to an orthant extension OE2_pi(a) of the second one: they have the same axes, mapping matrix, fixed lengths and starting tree, so they are the same set of trees. Then:
+ * the pair (a, pi(a)) is at distance zero, since both orthant extensions have the starting tree in common (see OrthExtSolver.identical);
+ * the pair (a, b) is the mirror of the pair (pi^-1(b), pi(a)): the same two sets of trees, in the opposite order, so the solution of one gives the solution of the other with the trees swapped (see OrthExtDistance.mirror).
+So only the pairs (a, b) with a < pi^-1(b) have to be optimized, and each of them also gives its mirror.
+
+The equivalence is found by a canonical key of every orthant extension, built from its leaf set, the splits of its axes, its mapping matrix, its fixed lengths and the lengths of its starting tree. If some orthant extension has no equivalent one in the other extension space, there is no symmetry and every pair is computed.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import distanceAlg1.*;
+
+public class PairSymmetry{
+    //What has to be done for each pair
+    public enum Role{
+        SOLVE, //The pair is optimized, and gives also its mirror.
+        IDENTICAL, //The orthant extensions are equivalent, so the distance is zero.
+        MIRROR //The pair is the mirror of a pair that is optimized.
+    }
+
+    private int[] pi; //pi[a] is the orthant extension of the second space equivalent to the a-th one of the first space, or null if there is no symmetry.
+    private int[] piInverse;
+
+    //Constructor
+    public PairSymmetry(Vector<OrthExt> OEs1, Vector<OrthExt> OEs2){
+        if (OEs1.size() != OEs2.size()){
+            return;
+        }
+        int oNum = OEs1.size();
+        int[] map = new int[oNum];
+        int[] inverse = new int[oNum];
+        if (OEs1 == OEs2){
+            for (int a = 0; a < oNum; a++){
+                map[a] = a;
+                inverse[a] = a;
+            }
+        } else {
+            Map<List<Object>, Integer> keys2 = new HashMap<List<Object>, Integer>();
+            for (int b = 0; b < oNum; b++){
+                if (keys2.put(CanonicalKey(OEs2.get(b)), b) != null){
+                    return; //Repeated orthant extensions: no bijection to rely on.
+                }
+            }
+            for (int a = 0; a < oNum; a++){
+                Integer b = keys2.remove(CanonicalKey(OEs1.get(a)));
+                if (b == null){
+                    return;
+                }
+                map[a] = b;
+                inverse[b] = a;
+            }
+        }
+        pi = map;
+        piInverse = inverse;
+    }
+
+    //Canonical key of the orthant extension: two orthant extensions with the same key are the same set of trees, with the variables in the same order.
+    private static List<Object> CanonicalKey(OrthExt OE){
+        List<Object> key = new ArrayList<Object>();
+        key.add(OE.getCompleteLeafSet());
+        List<BitSet> axes = new ArrayList<BitSet>();
+        for (Bipartition axis : OE.getOrthantAxis()){
+            axes.add(axis.getPartition());
+        }
+        key.add(axes);
+        key.add(new TreeMap<Integer, Vector<Integer>>(OE.getMapList()));
+        key.add(Boxed(OE.getFixedLengths()));
+        List<Integer> backMap = new ArrayList<Integer>();
+        for (int e : OE.getBackMap()){
+            backMap.add(e);
+        }
+        key.add(backMap);
+
+        PhyloTree start = OE.getStartTree();
+        List<Double> lengths = new ArrayList<Double>();
+        for (PhyloTreeEdge edge : start.getEdges()){
+            lengths.add(edge.getNorm());
+        }
+        for (EdgeAttribute leaf : start.getLeafEdgeAttribs()){
+            lengths.add((leaf == null) ? 0.0 : leaf.norm());
+        }
+        key.add(lengths);
+        return key;
+    }
+
+    private static List<Double> Boxed(double[] values){
+        List<Double> boxed = new ArrayList<Double>(values.length);
+        for (double v : values){
+            boxed.add(v);
+        }
+        return boxed;
+    }
+
+    //True if the extension spaces are the same, so the pairs can be deduplicated.
+    public boolean isSymmetric(){
+        return pi != null;
+    }
+
+    public Role getRole(int k1, int k2){
+        if (pi == null){
+            return Role.SOLVE;
+        }
+        int a = piInverse[k2];
+        if (k1 == a){
+            return Role.IDENTICAL;
+        }
+        return (k1 < a) ? Role.SOLVE : Role.MIRROR;
+    }
+
+    //The pair that is the mirror of (k1, k2), as {k1, k2}.
+    public int[] getMirror(int k1, int k2){
+        return new int[]{piInverse[k2], pi[k1]};
+    }
+}
@@ -0,0 +1,353 @@
+/** This is intended as an alternative optimizer for OrthExtDistance: a projected limited-memory quasi-Newton method (L-BFGS) on the lengths of the edges, instead of the reduced gradient method with hand managed B, S and N sets.
+
+The feasible set of each orthant extension is a product of simplices: for each row of the mapping matrix, the lengths in the row are non-negative and add up to the fixed length of the row. Instead of eliminating one basic variable per row, every step is projected back onto these simplices, which keeps the equality constraints and the bounds at the same time and lets many variables reach zero (or leave zero) in a single step. The L-BFGS direction is used whenever its projection is a descent direction, otherwise a scaled projected gradient step is taken and the memory is cleared. The step length is chosen by backtracking with the Armijo condition on half the squared distance.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+
+public class ProjectedLBFGSOptimizer implements OrthExtOptimizer{
+    private static final double ARMIJO = 0.0001; //Fraction of the predicted decrease required in the line search.
+    private static final int MAX_BACKTRACKS = 40; //Maximum number of times the step is halved.
+    private static final double CURVATURE_MIN = 0.0000000001; //Pairs (s, y) with s.y below this (relative to y.y) are not stored.
+
+    private int memory; //Number of pairs (s, y) kept by the limited-memory approximation.
+
+    //Constructors
+    public ProjectedLBFGSOptimizer(){
+        this(7);
+    }
+
+    public ProjectedLBFGSOptimizer(int memory){
+        if (memory < 1){
+            throw new IllegalArgumentException("The memory of the L-BFGS optimizer should be at least 1.");
+        }
+        this.memory = memory;
+    }
+
+    public String getName(){
+        return "projected-lbfgs";
+    }
+
+    public int getMemory(){
+        return memory;
+    }
+
+    //Rows of the mapping matrices of the orthant extensions that move, with the variables of the second one shifted by the number of variables of the first one.
+    private static int[][] Rows(OrthExt OE1, OrthExt OE2, int V1, boolean move1, boolean move2){
+        int m1 = move1 ? OE1.getFixedLengths().length : 0;
+        int m2 = move2 ? OE2.getFixedLengths().length : 0;
+        int[][] rows = new int[m1 + m2][];
+        for (int r = 0; r < m1; r++){
+            Vector<Integer> row = OE1.getMapList().get(r);
+            rows[r] = new int[row.size()];
+            for (int j = 0; j < row.size(); j++){
+                rows[r][j] = row.get(j);
+            }
+        }
+        for (int r = 0; r < m2; r++){
+            Vector<Integer> row = OE2.getMapList().get(r);
+            rows[m1 + r] = new int[row.size()];
+            for (int j = 0; j < row.size(); j++){
+                rows[m1 + r][j] = V1 + row.get(j);
+            }
+        }
+        return rows;
+    }
+
+    //Fixed lengths of the rows given by Rows.
+    private static double[] Totals(OrthExt OE1, OrthExt OE2, boolean move1, boolean move2){
+        int m1 = move1 ? OE1.getFixedLengths().length : 0;
+        int m2 = move2 ? OE2.getFixedLengths().length : 0;
+        double[] totals = new double[m1 + m2];
+        for (int r = 0; r < m1; r++){
+            totals[r] = OE1.getFixedLengths(r);
+        }
+        for (int r = 0; r < m2; r++){
+            totals[m1 + r] = OE2.getFixedLengths(r);
+        }
+        return totals;
+    }
+
+    //Euclidean projection of the entries of x in row onto the simplex of non-negative values adding up to total. The buffer should have at least the length of the row.
+    static void ProjectRow(double[] x, int[] row, double total, double[] buffer){
+        if (row.length == 1){
+            x[row[0]] = total;
+            return;
+        }
+        for (int j = 0; j < row.length; j++){
+            buffer[j] = x[row[j]];
+        }
+        Arrays.sort(buffer, 0, row.length);
+        double cumulative = 0;
+        double theta = 0;
+        for (int j = row.length - 1; j >= 0; j--){
+            cumulative += buffer[j];
+            double candidate = (cumulative - total)/(row.length - j);
+            if (buffer[j] - candidate > 0){
+                theta = candidate;
+            } else {
+                break;
+            }
+        }
+        for (int j = 0; j < row.length; j++){
+            x[row[j]] = Math.max(x[row[j]] - theta, 0);
+        }
+    }
+
+    private static void Project(double[] x, int[][] rows, double[] totals, double[] buffer){
+        for (int r = 0; r < rows.length; r++){
+            ProjectRow(x, rows[r], totals[r], buffer);
+        }
+    }
+
+    //Half the squared distance between the trees given by x (variables of both orthant extensions together), filling the gradient if it is not null.
+    private static double HalfSquared(OrthExtPair pair, double[] x, double[] x1, double[] x2, double[] g1, double[] g2, double[] gradient){
+        int V1 = x1.length;
+        System.arraycopy(x, 0, x1, 0, V1);
+        System.arraycopy(x, V1, x2, 0, x2.length);
+        double dist;
+        if (gradient == null){
+            dist = pair.evaluate(x1, x2, null, null);
+        } else {
+            dist = pair.evaluate(x1, x2, g1, g2);
+            System.arraycopy(g1, 0, gradient, 0, V1);
+            System.arraycopy(g2, 0, gradient, V1, g2.length);
+        }
+        return dist*dist/2;
+    }
+
+    private static double Dot(double[] a, double[] b, boolean[] free){
+        double sum = 0;
+        for (int i = 0; i < a.length; i++){
+            if (free[i]){
+                sum += a[i]*b[i];
+            }
+        }
+        return sum;
+    }
+
+    public OrthExtSolution optimize(OrthExtPair pair, double[] start1, double[] start2, ConvergencePolicy policy){
+        return Run(pair, start1, start2, policy, true, true);
+    }
+
+    //Projection of a fixed tree onto one orthant extension: finds the tree in the orthant extension given by side (1 or 2) closest to the tree given by the other side, which does not move. The values of the fixed side in the solution are those of the start.
+    public OrthExtSolution projectOnto(OrthExtPair pair, int side, double[] start1, double[] start2, ConvergencePolicy policy){
+        if ((side != 1) && (side != 2)){
+            throw new IllegalArgumentException("The side to project onto should be 1 or 2.");
+        }
+        return Run(pair, start1, start2, policy, side == 1, side == 2);
+    }
+
+    private OrthExtSolution Run(OrthExtPair pair, double[] start1, double[] start2, ConvergencePolicy policy, boolean move1, boolean move2){
+        OrthExt OE1 = pair.getOE1();
+        OrthExt OE2 = pair.getOE2();
+        int V1 = pair.getNumVariables1();
+        int V2 = pair.getNumVariables2();
+        int n = V1 + V2;
+
+        int[][] rows = Rows(OE1, OE2, V1, move1, move2);
+        double[] totals = Totals(OE1, OE2, move1, move2);
+        int longestRow = 1;
+        //Only the variables in some row of the mapping matrices move; the rest keep their starting value.
+        boolean[] free = new boolean[n];
+        for (int[] row : rows){
+            longestRow = Math.max(longestRow, row.length);
+            for (int v : row){
+                free[v] = true;
+            }
+        }
+        double[] buffer = new double[longestRow];
+
+        //Scratch arrays
+        double[] x1 = new double[V1];
+        double[] x2 = new double[V2];
+        double[] g1 = new double[V1];
+        double[] g2 = new double[V2];
+
+        double[] x = new double[n];
+        System.arraycopy(start1, 0, x, 0, V1);
+        System.arraycopy(start2, 0, x, V1, V2);
+        Project(x, rows, totals, buffer);
+
+        double[] gradient = new double[n];
+        double f = HalfSquared(pair, x, x1, x2, g1, g2, gradient);
+
+        //The memory is a ring of memory pairs (s, y), allocated once per solve. A new pair is computed in sNew and yNew, and only if it is stored it is swapped with the slot of the oldest one.
+        double[][] sMemory = new double[memory][n];
+        double[][] yMemory = new double[memory][n];
+        double[] sNew = new double[n];
+        double[] yNew = new double[n];
+        double[] rhoMemory = new double[memory];
+        double[] alpha = new double[memory];
+        int stored = 0; //Number of pairs in memory, stored circularly ending at newest.
+        int newest = -1;
+        double gamma = 1; //Scaling of the initial approximation of the inverse hessian.
+
+        double[] direction = new double[n];
+        double[] target = new double[n];
+        double[] xNew = new double[n];
+        double[] gradientNew = new double[n];
+
+        int iterCount = 0;
+        StopCriterion stopCriterion = StopCriterion.GRADIENT;
+
+        while (true){
+            //The gradient of both orthant extensions gives a lower bound of the optimum of the pair (even when only one of them moves), so we can stop as soon as the pair cannot beat the cut-off.
+            if (pair.getCutoff() < Double.POSITIVE_INFINITY){
+                System.arraycopy(x, 0, x1, 0, V1);
+                System.arraycopy(x, V1, x2, 0, V2);
+                System.arraycopy(gradient, 0, g1, 0, V1);
+                System.arraycopy(gradient, V1, g2, 0, V2);
+                if (pair.cutoffExceeded(Math.sqrt(2*f), x1, x2, g1, g2)){
+                    stopCriterion = StopCriterion.PRUNED;
+                    break;
+                }
+            }
+
+            //Stationarity is measured by the projected gradient x - P(x - g).
+            for (int i = 0; i < n; i++){
+                target[i] = x[i] - gradient[i];
+            }
+            Project(target, rows, totals, buffer);
+            double pgNorm = 0;
+            for (int i = 0; i < n; i++){
+                if (free[i]){
+                    pgNorm = Math.max(pgNorm, Math.abs(x[i] - target[i]));
+                }
+            }
+            if (pgNorm <= policy.getGradientTol()){
+                stopCriterion = StopCriterion.GRADIENT;
+                break;
+            }
+            if (Thread.currentThread().isInterrupted()){
+                stopCriterion = StopCriterion.CANCELLED;
+                break;
+            }
+            if (iterCount >= policy.getMaxIterations()){
+                stopCriterion = StopCriterion.MAX_ITERATIONS;
+                break;
+            }
+            if (pair.getGeodesicCount() >= policy.getMaxGeodesicCalls()){
+                stopCriterion = StopCriterion.MAX_GEODESIC_CALLS;
+                break;
+            }
+            iterCount++;
+
+            //Two-loop recursion for the L-BFGS direction -H g.
+            for (int i = 0; i < n; i++){
+                direction[i] = free[i] ? gradient[i] : 0;
+            }
+            for (int k = 0; k < stored; k++){
+                int j = (newest - k + memory) % memory;
+                alpha[j] = rhoMemory[j]*Dot(sMemory[j], direction, free);
+                for (int i = 0; i < n; i++){
+                    direction[i] -= alpha[j]*yMemory[j][i];
+                }
+            }
+            for (int i = 0; i < n; i++){
+                direction[i] *= gamma;
+            }
+            for (int k = stored - 1; k >= 0; k--){
+                int j = (newest - k + memory) % memory;
+                double beta = rhoMemory[j]*Dot(yMemory[j], direction, free);
+                for (int i = 0; i < n; i++){
+                    direction[i] += (alpha[j] - beta)*sMemory[j][i];
+                }
+            }
+
+            //Projected direction: from x to the projection of the quasi-Newton point.
+            for (int i = 0; i < n; i++){
+                target[i] = free[i] ? x[i] - direction[i] : x[i];
+            }
+            Project(target, rows, totals, buffer);
+            for (int i = 0; i < n; i++){
+                direction[i] = target[i] - x[i];
+            }
+            double slope = Dot(gradient, direction, free);
+
+            if (!(slope < 0)){
+                //The quasi-Newton direction does not descend after the projection, so we take a projected gradient step and forget the curvature pairs.
+                stored = 0;
+                newest = -1;
+                for (int i = 0; i < n; i++){
+                    target[i] = free[i] ? x[i] - gamma*gradient[i] : x[i];
+                }
+                Project(target, rows, totals, buffer);
+                for (int i = 0; i < n; i++){
+                    direction[i] = target[i] - x[i];
+                }
+                slope = Dot(gradient, direction, free);
+                if (!(slope < 0)){
+                    stopCriterion = StopCriterion.GRADIENT;
+                    break;
+                }
+            }
+
+            //Backtracking on the segment from x to the projected point, which stays feasible.
+            double t = 1;
+            double fNew = 0;
+            boolean accepted = false;
+            for (int b = 0; b <= MAX_BACKTRACKS; b++){
+                for (int i = 0; i < n; i++){
+                    xNew[i] = x[i] + t*direction[i];
+                }
+                fNew = HalfSquared(pair, xNew, x1, x2, g1, g2, gradientNew);
+                if (fNew <= f + ARMIJO*t*slope){
+                    accepted = true;
+                    break;
+                }
+                if (pair.getGeodesicCount() >= policy.getMaxGeodesicCalls()){
+                    break;
+                }
+                t = t/2;
+            }
+            if (!accepted){
+                //The distance cannot be decreased any further in this direction (up to rounding).
+                stopCriterion = (pair.getGeodesicCount() >= policy.getMaxGeodesicCalls()) ? StopCriterion.MAX_GEODESIC_CALLS : StopCriterion.OBJECTIVE;
+                break;
+            }
+
+            //Updating the memory with the new curvature pair.
+            for (int i = 0; i < n; i++){
+                sNew[i] = xNew[i] - x[i];
+                yNew[i] = gradientNew[i] - gradient[i];
+            }
+            double sy = Dot(sNew, yNew, free);
+            double yy = Dot(yNew, yNew, free);
+            if (sy > CURVATURE_MIN*yy && yy > 0){
+                newest = (newest + 1) % memory;
+                double[] swap = sMemory[newest];
+                sMemory[newest] = sNew;
+                sNew = swap;
+                swap = yMemory[newest];
+                yMemory[newest] = yNew;
+                yNew = swap;
+                rhoMemory[newest] = 1/sy;
+                stored = Math.min(stored + 1, memory);
+                gamma = sy/yy;
+            }
+
+            double previousDistance = Math.sqrt(2*f);
+            double currentDistance = Math.sqrt(2*fNew);
+            System.arraycopy(xNew, 0, x, 0, n);
+            System.arraycopy(gradientNew, 0, gradient, 0, n);
+            f = fNew;
+
+            if (policy.objectiveConverged(previousDistance, currentDistance)){
+                stopCriterion = StopCriterion.OBJECTIVE;
+                break;
+            }
+        }
+
+        double[] final1 = Arrays.copyOfRange(x, 0, V1);
+        double[] final2 = Arrays.copyOfRange(x, V1, n);
+        return new OrthExtSolution(final1, final2, iterCount, stopCriterion);
+    }
+}
@@ -0,0 +1,113 @@
+/** This is intended as the collector of the distances between pairs of orthant extensions computed by ExtensionSpaceDistance, ranking them from the shorter distance to the longer one. With a capacity k only the k shorter distances are kept, in a heap whose root is the longest of them, so each pair costs O(log k); without capacity all of them are kept and sorted once at the end.
+
+The pairs are ranked by distance, and pairs at the same distance by the IDs of their orthants, so the ranking does not depend on the order in which the pairs were added. In particular, each thread can collect its own pairs and the collectors can be merged at the end.
+
+A collector is not thread-safe.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+
+public class RankedCollector{
+    //Order of the ranking: shorter distance first, then by the IDs of the orthants.
+    public static final Comparator<OrthExtDistance> RANKING = Comparator.comparingDouble(OrthExtDistance::getDistance).thenComparingInt(OrthExtDistance::getO1ID).thenComparingInt(OrthExtDistance::getO2ID);
+
+    private int capacity; //Number of pairs kept, Integer.MAX_VALUE to keep all.
+    private PriorityQueue<OrthExtDistance> heap; //The kept pairs when there is a capacity, with the worst one at the root.
+    private ArrayList<OrthExtDistance> all; //All the pairs when there is no capacity.
+    private OrthExtDistance best;
+    private long addedCount; //Number of pairs offered to the collector.
+
+    //Constructors
+    //Collector keeping all the pairs.
+    public RankedCollector(){
+        this(Integer.MAX_VALUE);
+    }
+
+    //Collector keeping the capacity shorter distances.
+    public RankedCollector(int capacity){
+        if (capacity < 1){
+            throw new IllegalArgumentException("The number of orthant pairs to keep should be at least 1.");
+        }
+        this.capacity = capacity;
+        if (capacity == Integer.MAX_VALUE){
+            all = new ArrayList<OrthExtDistance>();
+        } else {
+            heap = new PriorityQueue<OrthExtDistance>(Math.min(capacity, 1024) + 1, RANKING.reversed());
+        }
+        addedCount = 0;
+    }
+
+    //Adds the pair, and returns the pair that is not kept because of it: the one evicted, OED itself if it does not enter the collector, or null if nothing left.
+    public OrthExtDistance add(OrthExtDistance OED){
+        addedCount++;
+        if ((best == null) || (RANKING.compare(OED, best) < 0)){
+            best = OED;
+        }
+        if (all != null){
+            all.add(OED);
+        } else if (heap.size() < capacity){
+            heap.add(OED);
+        } else if (RANKING.compare(OED, heap.peek()) < 0){
+            OrthExtDistance evicted = heap.poll();
+            heap.add(OED);
+            return evicted;
+        } else {
+            return OED;
+        }
+        return null;
+    }
+
+    public void addAll(Collection<OrthExtDistance> OEDs){
+        for (OrthExtDistance OED : OEDs){
+            add(OED);
+        }
+    }
+
+    //Adds the pairs kept by another collector (for example, the one of another thread).
+    public void merge(RankedCollector other){
+        Collection<OrthExtDistance> kept = (other.all != null) ? other.all : other.heap;
+        long otherAdded = other.addedCount;
+        addAll(kept);
+        addedCount += otherAdded - kept.size();
+    }
+
+    //Pair with the shorter distance (null if there are none).
+    public OrthExtDistance getBest(){
+        return best;
+    }
+
+    //Longest distance that can still enter the collector: the k-th shorter distance once there are k pairs, infinity before.
+    public double getThreshold(){
+        if ((heap != null) && (heap.size() == capacity)){
+            return heap.peek().getDistance();
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    //Number of pairs kept
+    public int size(){
+        return (all != null) ? all.size() : heap.size();
+    }
+
+    public long getAddedCount(){
+        return addedCount;
+    }
+
+    public int getCapacity(){
+        return capacity;
+    }
+
+    //The pairs kept, from the shorter distance to the longer one.
+    public List<OrthExtDistance> toSortedList(){
+        ArrayList<OrthExtDistance> sorted = new ArrayList<OrthExtDistance>((all != null) ? all : heap);
+        sorted.sort(RANKING);
+        return sorted;
+    }
+}
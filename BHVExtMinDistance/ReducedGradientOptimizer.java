@@ -0,0 +1,479 @@
+/** This is intended as the original optimizer of OrthExtDistance: the reduced gradient method, with the Polak-Ribiere conjugate gradient method inside each classification of the variables into basic (B), superbasic (S) and non-basic (N).
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+
+public class ReducedGradientOptimizer implements OrthExtOptimizer{
+    
+    //New values of the variables after moving tau in the direction of change: the superbasic variables move, the basic variables keep the sum of each row equal to the fixed lengths, and the non-basic variables are zero.
+    private static double[] NewValues(OrthExt OE, double[] x, double[] dDirection, double tau, IndexSet B, IndexSet S){
+        double[] newValues = new double[x.length];
+        for (int i = 0; i < B.size(); i++){
+            newValues[B.get(i)] = OE.getFixedLengths(i);
+        }
+        for (int i = 0; i < S.size(); i++){
+            newValues[S.get(i)] = x[S.get(i)] + tau*dDirection[S.get(i)];
+            newValues[B.get(OE.getBackMap(S.get(i)))] -= newValues[S.get(i)];
+        }
+        return newValues;
+    }
+    
+    public String getName(){
+        return "reduced-gradient";
+    }
+    
+    //Reduced gradient method shared by the restricted and unrestricted cases. The tolerances and limits come from the convergence policy, and how far from tau_max the derivative is checked from the pair.
+    public OrthExtSolution optimize(OrthExtPair pair, double[] start1, double[] start2, ConvergencePolicy policy){
+        OrthExt OE1 = pair.getOE1();
+        OrthExt OE2 = pair.getOE2();
+        double tauMaxGap = pair.getTauMaxGap();
+        double gradientTol = policy.getGradientTol();
+        double derivTauTol = policy.getDerivTauTol();
+        double tauIntervalMin = policy.getTauIntervalMin();
+        
+        int V1 = pair.getNumVariables1();
+        int V2 = pair.getNumVariables2();
+        int m1 = OE1.getFixedLengths().length;
+        int m2 = OE2.getFixedLengths().length;
+        
+        //We start at the point given (by default, the starting trees in each orthant extension).
+        double[] x1 = start1.clone();
+        double[] x2 = start2.clone();
+        
+        //TO DO: add code to verify both orthant extensions are in fact inside the same BHV tree space. For now, I just assume every user will be careful about this.
+        
+        
+        //The following while will perform reduced gradient method algorithm, with a conjugate gradient method in each classification of variables. In each iteration the gradient of the "active variables" (those clasified into S1 and S2) function from the current trees is computed, the optimal descent direction is selected following the conjugate gradient method, and the minimum in that direction is computed. If we hit a boundary, we reclasify variables in order to increment those forced to be zero. We continue until finding a semi-stationary point, and corroborate this is the optimum or add new non-basic variables otherwise.
+        
+        //Initializing the indexes sets B, S and N, with some extra structures to easy change.
+        //THIS COULD POTENTIALLY BE A PART OF OrthExt class TO AVOID IT BEING COMPUTED EVERY TIME A DISTANCE IS COMPUTED
+        
+        IndexSet B1 = new IndexSet(V1);
+        IndexSet B2 = new IndexSet(V2);
+        
+        IndexSet S1 = new IndexSet(V1);
+        IndexSet S2 = new IndexSet(V2);
+        
+        IndexSet N1 = new IndexSet(V1);
+        IndexSet N2 = new IndexSet(V2);
+        
+        //We will keep a vector of indexes that have already been non-basic variables, to give priority to new potential non-basic variables with possible, trying to prevent cycling.
+        IndexSet alreadyN1 = new IndexSet(V1);
+        IndexSet alreadyN2 = new IndexSet(V2);
+        
+        //Sets reused in every iteration for the promising non-basic variables, and the variables that could become non-basic.
+        IndexSet promisingEN1 = new IndexSet(V1);
+        IndexSet promisingEN2 = new IndexSet(V2);
+        IndexSet potentialN1 = new IndexSet(V1);
+        IndexSet potentialN2 = new IndexSet(V2);
+        
+        for (int i = 0; i < m1; i++){//For each row in the map matrix
+            Vector<Integer> tempVect = OE1.getMapList().get(i); //Get the edges that merge into the final edge in the original tree
+            B1.add(tempVect.get(0)); //Add the first entry of this list of edges into B1
+            for (int j = 1; j < tempVect.size(); j++){ //The rest is added to S1
+                S1.add(tempVect.get(j));
+            }
+        }
+        
+        for (int i = 0; i < m2; i++){//For each row in the map matrix for the second extension
+            Vector<Integer> tempVect = OE2.getMapList().get(i); //Get the edges that merge into the final edge in the original tree
+            B2.add(tempVect.get(0)); //Add the first entry of this list of edges into B1
+            for (int j = 1; j < tempVect.size(); j++){ //The rest is added to S1
+                S2.add(tempVect.get(j));
+            }
+        }
+        
+        //Some values before the iterations start
+        
+        int iterCount = 0; //Counter of the number of iterations performed.
+        
+        boolean optimNotReached = true;//We will stop the loop when the gradient is small enough to guarantee we have reach the minimum.
+        
+        int conjugate_initial_counter = 0; //Counter for re-initialization of the conjugate gradient method
+        
+        //We need to keep track on gradients and change directions
+        
+        double[] gradientxs1 = new double[S1.size()];
+        double[] gradientxs2 = new double[S2.size()];
+        
+        double[] dDirectionxs1 = new double[S1.size()];
+        double[] dDirectionxs2 = new double[S2.size()];
+        
+        //Gradients of the variables in the current trees, and the complete change vectors.
+        double[] gradient1 = new double[V1];
+        double[] gradient2 = new double[V2];
+        double[] dDirection1 = new double[V1];
+        double[] dDirection2 = new double[V2];
+        double[] trial1 = new double[V1];
+        double[] trial2 = new double[V2];
+        
+        boolean pointChanged = true; //The gradient only needs to be computed again if the trees changed.
+        
+        double currentDistance = Double.POSITIVE_INFINITY; //Distance between the current trees, and before the last step.
+        double previousDistance = Double.POSITIVE_INFINITY;
+        boolean lastStepInterior = false; //True if the last step stopped inside the face, in which case a small change in distance means we are close to a stationary point.
+        
+        StopCriterion stopCriterion = StopCriterion.GRADIENT;
+        
+        while ((optimNotReached)){
+            //Limits given by the policy, and cancellation of the computation by interrupting the thread.
+            if (Thread.currentThread().isInterrupted()){
+                stopCriterion = StopCriterion.CANCELLED;
+                break;
+            }
+            if (iterCount >= policy.getMaxIterations()){
+                stopCriterion = StopCriterion.MAX_ITERATIONS;
+                break;
+            }
+            if (pair.getGeodesicCount() >= policy.getMaxGeodesicCalls()){
+                stopCriterion = StopCriterion.MAX_GEODESIC_CALLS;
+                break;
+            }
+            
+            iterCount++;
+            
+            if (conjugate_initial_counter > S1.size() + S2.size()){
+                conjugate_initial_counter = 0;
+            }
+            
+            //The derivatives depend on the ratio sequence and the common edges of the geodesic between the current trees, which the kernel uses to fill the gradients.
+            boolean objectiveSmall = false;
+            if (pointChanged){
+                previousDistance = currentDistance;
+                currentDistance = pair.evaluate(x1, x2, gradient1, gradient2);
+                pointChanged = false;
+                //Every new point gives a lower bound of the optimum, so we can stop as soon as the pair cannot beat the cut-off.
+                if (pair.cutoffExceeded(currentDistance, x1, x2, gradient1, gradient2)){
+                    stopCriterion = StopCriterion.PRUNED;
+                    break;
+                }
+                objectiveSmall = lastStepInterior && policy.objectiveConverged(previousDistance, currentDistance);
+            }
+            
+            //Using the gradients for each "variable" (the values of the edges for each current tree) we compute the gradients of the free variables in the reduced gradient method. But first, we need to save the previous values if we are not in the first iteration of a re-initialization of the conjugate gradient method.
+            
+            double[] gradientxs1Prev = gradientxs1;
+            double[] gradientxs2Prev = gradientxs2;
+            
+            double akDenom = 0;
+            
+            if (conjugate_initial_counter > 0){
+                for (int i = 0; i < gradientxs1Prev.length; i++){
+                    akDenom += gradientxs1Prev[i]*gradientxs1Prev[i];
+                }
+                for (int i = 0; i < gradientxs2Prev.length; i++){
+                    akDenom += gradientxs2Prev[i]*gradientxs2Prev[i];
+                }
+            }
+            
+            boolean gradient_small = true; // as we compute the new gradient, we assess if the size is big enough to justify another loop or we have arrive to an stationary point.
+            
+            gradientxs1 = new double[S1.size()];
+            gradientxs2 = new double[S2.size()];
+            
+            for (int i = 0; i < S1.size(); i++){
+                gradientxs1[i] = gradient1[S1.get(i)] - gradient1[B1.get(OE1.getBackMap(S1.get(i)))];
+                if((gradientxs1[i] < -gradientTol) || (gradientxs1[i] > gradientTol)){
+                    gradient_small = false;
+                }
+            }
+            
+            for (int i = 0; i < S2.size(); i++){
+                gradientxs2[i] = gradient2[S2.get(i)] - gradient2[B2.get(OE2.getBackMap(S2.get(i)))];
+                if((gradientxs2[i] < -gradientTol) || (gradientxs2[i] > gradientTol)){
+                    gradient_small = false;
+                }
+            }
+            
+            //We use continue; in case we have arrived to an stationary point in the current face being considered.
+            
+            if(gradient_small || objectiveSmall){
+                //If the gradient is small (or the distance stopped decreasing), we have arrived to an semi-stationary point. We will check if it holds the condition to be the optimum or we need to shuffle things around to find the potential one.
+                stopCriterion = gradient_small ? StopCriterion.GRADIENT : StopCriterion.OBJECTIVE;
+                lastStepInterior = false;
+                promisingEN1.clear();
+                promisingEN2.clear();
+                
+                optimNotReached = false; //Assume at first that the current semi-stationary point is in fact the optimum.
+                
+                for (int i = 0; i < N1.size(); i++){
+                    if ((gradient1[N1.get(i)] - gradient1[B1.get(OE1.getBackMap(N1.get(i)))]) < 0){
+                        promisingEN1.add(N1.get(i));
+                    }
+                }
+                
+                for (int i = 0; i < N2.size(); i++){
+                    if ((gradient2[N2.get(i)] - gradient2[B2.get(OE2.getBackMap(N2.get(i)))]) < 0){
+                        promisingEN2.add(N2.get(i));
+                    }
+                }
+                
+                if ((promisingEN1.size()>0) || (promisingEN2.size()>0)){
+                    N1.removeAll(promisingEN1);
+                    S1.addAll(promisingEN1);
+                    
+                    N2.removeAll(promisingEN2);
+                    S2.addAll(promisingEN2);
+                    
+                    conjugate_initial_counter = 0;
+                    optimNotReached = true;
+                }
+                
+                continue;//We go back to the beginning of the loop.
+            }
+            
+            //We know need to determine the best direction of change depending on whether we are in the first iteration of a re=initialization of the conjutage gradient method or not
+            
+            if (conjugate_initial_counter == 0){
+                dDirectionxs1 = new double[S1.size()];
+                dDirectionxs2 = new double[S2.size()];
+                for (int i = 0; i < dDirectionxs1.length; i++){
+                    dDirectionxs1[i] = -gradientxs1[i];
+                }
+                for (int i = 0; i < dDirectionxs2.length; i++){
+                    dDirectionxs2[i] = -gradientxs2[i];
+                }
+            } else {
+                double akNum = 0;
+                for (int i = 0; i < gradientxs1.length; i++){
+                    akNum += gradientxs1[i]*(gradientxs1[i] - gradientxs1Prev[i]);
+                }
+                for (int i = 0; i < gradientxs2.length; i++){
+                    akNum += gradientxs2[i]*(gradientxs2[i] - gradientxs2Prev[i]);
+                }
+                
+                double ak = akNum/akDenom;
+                
+                for (int i = 0; i < gradientxs1.length; i++){
+                    dDirectionxs1[i] = ak*dDirectionxs1[i] - gradientxs1[i];
+                }
+                for (int i = 0; i < gradientxs2.length; i++){
+                    dDirectionxs2[i] = ak*dDirectionxs2[i] - gradientxs2[i];
+                }
+            }
+            
+            //Computing the complete change vector
+            
+            Arrays.fill(dDirection1, 0);
+            for (int i = 0; i < S1.size(); i++){
+                dDirection1[S1.get(i)] = dDirectionxs1[i];
+                dDirection1[B1.get(OE1.getBackMap(S1.get(i)))] += -dDirectionxs1[i];
+            }
+            
+            Arrays.fill(dDirection2, 0);
+            for (int i = 0; i < S2.size(); i++){
+                dDirection2[S2.get(i)] = dDirectionxs2[i];
+                dDirection2[B2.get(OE2.getBackMap(S2.get(i)))] += -dDirectionxs2[i];
+            }
+            
+            //Determining the closed set for tau, in order to mantain all edges with positive size.
+            double tau_max = 0;
+            double tau_min = 0;
+            boolean tauNeedsChange = true;
+            
+            potentialN1.clear();
+            potentialN2.clear();
+            
+            for (int v : pair.getScanOrder1()){
+                if (dDirection1[v] < 0){
+                    if (tauNeedsChange || (-x1[v]/dDirection1[v] < tau_max)){
+                        tau_max = -x1[v]/dDirection1[v];
+                        
+                        if (!N1.contains(v)){
+                            potentialN1.clear();
+                            potentialN1.add(v);
+                        } else {
+                            System.out.println("An element on N1 sneaked in (situation 1): "+ v);
+                        }
+                        tauNeedsChange = false;
+                    } else if (-x1[v]/dDirection1[v] == tau_max){
+                        if (!N1.contains(v)){
+                            potentialN1.add(v);
+                        }else {
+                            System.out.println("An element on N1 sneaked in (situation 2): "+ v);
+                        }
+                    }
+                }
+            }
+            
+            for (int v : pair.getScanOrder2()){
+                if (dDirection2[v] < 0){
+                    if (tauNeedsChange || (-x2[v]/dDirection2[v] < tau_max)){
+                        tau_max = -x2[v]/dDirection2[v];
+                        
+                        if (!N2.contains(v)){
+                            potentialN1.clear();
+                            potentialN2.clear();
+                            potentialN2.add(v);
+                        } else{
+                            System.out.println("An element on N2 sneaked in (situation 1): "+ v);
+                        }
+                        tauNeedsChange = false;
+                    } else if (-x2[v]/dDirection2[v] == tau_max){
+                        if (!N2.contains(v)){
+                            potentialN2.add(v);
+                        } else{
+                            System.out.println("An element on N2 sneaked in (situation 2): "+ v);
+                        }
+                    }
+                }
+            }
+            
+            // We will look for the tau that minimizes f(x + tau* dDirection) between tau_min and tau_max.
+            //We will first check if the minimum is the actual tau_max
+            
+            //Computing the new values of the variables by moving in the direction of change, and the derivative of the distance in that direction.
+            for (int v = 0; v < V1; v++){
+                trial1[v] = x1[v] + (tau_max - tauMaxGap)*dDirection1[v];
+            }
+            for (int v = 0; v < V2; v++){
+                trial2[v] = x2[v] + (tau_max - tauMaxGap)*dDirection2[v];
+            }
+            
+            pair.evaluate(trial1, trial2, null, null);
+            double derivTau = pair.directionalDerivative(dDirection1, dDirection2);
+            
+            double tau = 0;
+            
+            if (derivTau <= 0){//In this case the minimum is reached right at the tau_max limit and the search is over.
+                tau = tau_max;
+                boolean ChangeInIndexMade = false;
+                
+                //We have hitted a boundary face, so we need to reclasify some variable to N1 or N2.
+                
+                if (potentialN1.size() > 0){
+                    //We want to give priority to indexes that have not been non-basic variables yet to try and avoid cycling.
+                    int[] IndexListOrdered = new int[potentialN1.size()];
+                    int leftInd = 0;
+                    int rightInd = potentialN1.size() - 1;
+                    for (int i = 0; i < potentialN1.size(); i++){
+                        if (alreadyN1.contains(potentialN1.get(i))){
+                            IndexListOrdered[rightInd] = i;
+                            rightInd--;
+                        } else {
+                            IndexListOrdered[leftInd] = i;
+                            leftInd++;
+                        }
+                    }
+                    for (int i : IndexListOrdered){
+                        if (S1.contains(potentialN1.get(i))){
+                            N1.add(potentialN1.get(i));
+                            S1.remove(potentialN1.get(i));
+                            ChangeInIndexMade = true;
+                        } else if (B1.contains(potentialN1.get(i))){
+                            int rowIndexTemp = B1.indexOf(potentialN1.get(i));
+                            int newB1element = -1;
+                            for (int j : OE1.getMapList().get(rowIndexTemp)){
+                                if (S1.contains(j)){
+                                    newB1element = j;
+                                    break;
+                                }
+                            }
+                            if (newB1element == -1){
+                                System.out.println("ERROR: No superbasic variable to replace the one in B1 at : " + i);
+                            } else {
+                                B1.set(rowIndexTemp, newB1element);
+                                S1.remove(newB1element);
+                                N1.add(potentialN1.get(i));
+                                ChangeInIndexMade = true;
+                                break;
+                            }
+                        
+                        }
+                    }
+                } else if (potentialN2.size() > 0){
+                    //We want to give priority to indexes that have not been non-basic variables yet to try and avoid cycling.
+                    int[] IndexListOrdered = new int[potentialN2.size()];
+                    int leftInd = 0;
+                    int rightInd = potentialN2.size() - 1;
+                    for (int i = 0; i < potentialN2.size(); i++){
+                        if (alreadyN2.contains(potentialN2.get(i))){
+                            IndexListOrdered[rightInd] = i;
+                            rightInd--;
+                        } else {
+                            IndexListOrdered[leftInd] = i;
+                            leftInd++;
+                        }
+                    }
+                    for (int i : IndexListOrdered){
+                        if (S2.contains(potentialN2.get(i))){
+                            N2.add(potentialN2.get(i));
+                            S2.remove(potentialN2.get(i));
+                            ChangeInIndexMade = true;
+                        } else if (B2.contains(potentialN2.get(i))){
+                            int rowIndexTemp = B2.indexOf(potentialN2.get(i));
+                            int newB2element = -1;
+                            for (int j : OE2.getMapList().get(rowIndexTemp)){
+                                if (S2.contains(j)){
+                                    newB2element = j;
+                                    break;
+                                }
+                            }
+                            if (newB2element == -1){
+                                System.out.println("ERROR: No superbasic variable to replace the one in B2 at : "+ i);
+                            } else {
+                                B2.set(rowIndexTemp, newB2element);
+                                S2.remove(newB2element);
+                                N2.add(potentialN2.get(i));
+                                ChangeInIndexMade = true;
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (!ChangeInIndexMade){
+                    System.out.println("ERROR: Although a variable should be reclassified as non-basic, it did not happen.");
+                    stopCriterion = StopCriterion.RECLASSIFICATION_FAILED;
+                    break;
+                }
+                
+                conjugate_initial_counter = 0; // We are re-initializing the conjugate gradient method in a new face;
+                lastStepInterior = false;
+            
+            } else {//We still need to find the optimum tau for this case.
+                tau = 0.1;
+                if (tau > tau_max/2){
+                    tau = tau_max/2;
+                }
+                
+                while(((derivTau < -derivTauTol) || (derivTau > derivTauTol)) && ((tau_max - tau_min) > tauIntervalMin) && (pair.getGeodesicCount() < policy.getMaxGeodesicCalls())){
+                    tau = (tau_max + tau_min)/2;
+                    
+                    //Computing the new values of the variables by moving in the direction of change
+                    for (int v = 0; v < V1; v++){
+                        trial1[v] = x1[v] + tau*dDirection1[v];
+                    }
+                    for (int v = 0; v < V2; v++){
+                        trial2[v] = x2[v] + tau*dDirection2[v];
+                    }
+                    
+                    pair.evaluate(trial1, trial2, null, null);
+                    derivTau = pair.directionalDerivative(dDirection1, dDirection2);
+                    
+                    if (derivTau <= 0){// This would mean the minimum is between tau and tau_max
+                        tau_min = tau;
+                    } else {
+                        tau_max = tau;
+                    }
+                }
+                
+                conjugate_initial_counter++; // Keeping count on how many loops we have done in this face.
+                lastStepInterior = true;
+            }
+            
+            //Defining the new trees to go back to the main while loop:
+            x1 = NewValues(OE1, x1, dDirection1, tau, B1, S1);
+            x2 = NewValues(OE2, x2, dDirection2, tau, B2, S2);
+            pointChanged = true;
+        }
+        
+        return new OrthExtSolution(x1, x2, iterCount, stopCriterion);
+    }
+}
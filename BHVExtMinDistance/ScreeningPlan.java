@@ -0,0 +1,54 @@
+/** This is intended as the settings of the screening and refinement mode of ExtensionSpaceDistance (see constructor 9): how many of the shorter pairs of orthant extensions are wanted (topK), and how many of the pairs best ranked by the proxy are refined in the first round (initialCount), which is doubled in every following round until the topK pairs are stable. It is a separate object so the mode cannot be mistaken for branch and bound with a cut-off, whose constructor also receives the number of pairs to keep. It can also carry a GeodesicCache for the proxies: with a positive quantum, pairs of starting trees whose lengths round to the same multiples share one geodesic (see GeodesicCache.approximateDistance).
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+public class ScreeningPlan{
+    private int topK; //Number of shorter pairs of orthant extensions wanted.
+    private int initialCount; //Number of pairs refined in the first round (at least topK).
+    private GeodesicCache proxyCache; //Cache used for the proxies, or null to compute every one of them.
+
+    //Constructors
+    //Refining first 4 times as many pairs as wanted.
+    public ScreeningPlan(int topK){
+        this(topK, 4*topK);
+    }
+
+    public ScreeningPlan(int topK, int initialCount){
+        this(topK, initialCount, null);
+    }
+
+    public ScreeningPlan(int topK, int initialCount, GeodesicCache proxyCache){
+        if (topK < 1){
+            throw new IllegalArgumentException("The number of orthant pairs to keep should be at least 1.");
+        }
+        if (initialCount < 1){
+            throw new IllegalArgumentException("The number of orthant pairs refined in the first round should be at least 1.");
+        }
+        this.topK = topK;
+        this.initialCount = Math.max(topK, initialCount);
+        this.proxyCache = proxyCache;
+    }
+
+    //Getters
+    public int getTopK(){
+        return topK;
+    }
+
+    public int getInitialCount(){
+        return initialCount;
+    }
+
+    public GeodesicCache getProxyCache(){
+        return proxyCache;
+    }
+
+    public String toString(){
+        return "screening of the " + topK + " shorter pairs, refining " + initialCount + " first";
+    }
+}
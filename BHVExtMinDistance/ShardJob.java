@@ -0,0 +1,207 @@
+/** This is intended as the input of one shard of a sharded computation of ExtensionSpaceDistance (see constructor 8), in a form that can be sent to another process. The pairs of orthant extensions are split into shardCount shards in a deterministic way, so every process computes the same split: the blocks of PairScheduler are given, longest first, to the shard with less expected cost so far.
+
+The extension spaces are not sent as objects: the job has the Newick strings of both original trees, the complete leaf set and the mode, and the worker builds the extension spaces again with ExtensionSpace(tree, leaf set, restricted). The construction is deterministic, so the orthant extensions have the same IDs in every process. The job also carries a hash of the axes of every orthant extension of the extension spaces of the coordinator, in the order of their IDs, and buildExtensionSpaces checks that the extension spaces rebuilt by the worker have the same ones, so a coordinator whose extension spaces were built in another way (for example through ExtensionSpaceFactory or EnumerationStore, which can number the orthants differently) makes the shards fail before computing anything. The convergence policy is sent with all its values, and the optimizer as its name and parameters (only the optimizers of this package can be sent).
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.io.*;
+import distanceAlg1.*;
+
+public class ShardJob{
+    private static final int MAGIC = 0x42485333; //"BHS3"
+
+    private String newick1;
+    private String newick2;
+    private Vector<String> completeLeafSet;
+    private boolean restricted;
+    private ConvergencePolicy policy;
+    private OrthExtOptimizer optimizer;
+    private int shardIndex;
+    private int shardCount;
+    private String axesHash; //Hash of the axes of the orthant extensions of both extension spaces of the coordinator (see AxesHash).
+
+    //Constructors
+    public ShardJob(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, int shardIndex, int shardCount){
+        this(ES1.getOriginalTree().getNewick(true), ES2.getOriginalTree().getNewick(true), ES1.getCompleteLeafSet(), restricted, policy, optimizer, shardIndex, shardCount, AxesHash(ES1, ES2));
+    }
+
+    public ShardJob(String newick1, String newick2, Vector<String> completeLeafSet, boolean restricted, ConvergencePolicy policy, OrthExtOptimizer optimizer, int shardIndex, int shardCount, String axesHash){
+        if ((shardCount < 1) || (shardIndex < 0) || (shardIndex >= shardCount)){
+            throw new IllegalArgumentException("The shard " + shardIndex + " does not exist in " + shardCount + " shards.");
+        }
+        this.newick1 = newick1;
+        this.newick2 = newick2;
+        this.completeLeafSet = completeLeafSet;
+        this.restricted = restricted;
+        this.policy = policy;
+        this.optimizer = optimizer;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.axesHash = axesHash;
+    }
+
+    //Hash of the axes of every orthant extension of both extension spaces, in the order of their IDs.
+    static String AxesHash(ExtensionSpace ES1, ExtensionSpace ES2){
+        StringBuilder description = new StringBuilder();
+        PairJournal.DescribeAxes(description, ES1);
+        PairJournal.DescribeAxes(description, ES2);
+        return PairJournal.Sha256(description.toString());
+    }
+
+    //The blocks of pairs of this shard.
+    public List<PairScheduler.Block> getBlocks(Vector<OrthExt> OEs1, Vector<OrthExt> OEs2){
+        List<PairScheduler.Block> blocks = new ArrayList<PairScheduler.Block>();
+        double[] load = new double[shardCount];
+        for (PairScheduler.Block block : new PairScheduler(OEs1, OEs2, shardCount).getBlocks()){
+            int lightest = 0;
+            for (int s = 1; s < shardCount; s++){
+                if (load[s] < load[lightest]){
+                    lightest = s;
+                }
+            }
+            load[lightest] += block.getCost();
+            if (lightest == shardIndex){
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
+    //Builds the first and second extension spaces of the job, checking that their orthant extensions have the axes of those of the coordinator.
+    public ExtensionSpace[] buildExtensionSpaces(){
+        ExtensionSpace ES1 = new ExtensionSpace(new PhyloTree(newick1, false), completeLeafSet, restricted);
+        ExtensionSpace ES2 = new ExtensionSpace(new PhyloTree(newick2, false), completeLeafSet, restricted);
+        if (!AxesHash(ES1, ES2).equals(axesHash)){
+            throw new IllegalStateException("The orthant extensions rebuilt for the shard " + shardIndex + " do not have the axes of those of the coordinator. The extension spaces of a sharded computation should be built with ExtensionSpace(tree, leaf set, restricted).");
+        }
+        return new ExtensionSpace[]{ES1, ES2};
+    }
+
+    //Serialization
+    public void write(File file) throws IOException{
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+            out.writeInt(MAGIC);
+            WriteLong(out, newick1);
+            WriteLong(out, newick2);
+            out.writeInt(completeLeafSet.size());
+            for (String leaf : completeLeafSet){
+                out.writeUTF(leaf);
+            }
+            out.writeBoolean(restricted);
+            out.writeUTF(policy.getName());
+            out.writeDouble(policy.getGradientTol());
+            out.writeDouble(policy.getDerivTauTol());
+            out.writeDouble(policy.getRelObjectiveTol());
+            out.writeDouble(policy.getAbsObjectiveTol());
+            out.writeDouble(policy.getTauIntervalMin());
+            out.writeInt(policy.getMaxIterations());
+            out.writeInt(policy.getMaxGeodesicCalls());
+            WriteOptimizer(out, optimizer);
+            out.writeInt(shardIndex);
+            out.writeInt(shardCount);
+            out.writeUTF(axesHash);
+        }
+    }
+
+    public static ShardJob read(File file) throws IOException{
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            if (in.readInt() != MAGIC){
+                throw new IOException("The file " + file + " is not a shard job.");
+            }
+            String newick1 = ReadLong(in);
+            String newick2 = ReadLong(in);
+            Vector<String> completeLeafSet = new Vector<String>();
+            int leafNum = in.readInt();
+            for (int i = 0; i < leafNum; i++){
+                completeLeafSet.add(in.readUTF());
+            }
+            boolean restricted = in.readBoolean();
+            ConvergencePolicy policy = new ConvergencePolicy(in.readUTF(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readInt(), in.readInt());
+            OrthExtOptimizer optimizer = ReadOptimizer(in);
+            int shardIndex = in.readInt();
+            int shardCount = in.readInt();
+            String axesHash = in.readUTF();
+            return new ShardJob(newick1, newick2, completeLeafSet, restricted, policy, optimizer, shardIndex, shardCount, axesHash);
+        }
+    }
+
+    //Newick strings can be longer than the 64KB of writeUTF.
+    private static void WriteLong(DataOutputStream out, String s) throws IOException{
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String ReadLong(DataInputStream in) throws IOException{
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void WriteOptimizer(DataOutputStream out, OrthExtOptimizer optimizer) throws IOException{
+        if (optimizer instanceof ReducedGradientOptimizer){
+            out.writeUTF("reduced-gradient");
+        } else if (optimizer instanceof ProjectedLBFGSOptimizer){
+            out.writeUTF("projected-lbfgs");
+            out.writeInt(((ProjectedLBFGSOptimizer) optimizer).getMemory());
+        } else if (optimizer instanceof AlternatingProjectionOptimizer){
+            AlternatingProjectionOptimizer alternating = (AlternatingProjectionOptimizer) optimizer;
+            out.writeUTF("alternating-projection");
+            out.writeDouble(alternating.getSlowRate());
+            out.writeBoolean(alternating.getFallback() != null);
+            if (alternating.getFallback() != null){
+                WriteOptimizer(out, alternating.getFallback());
+            }
+        } else {
+            throw new IllegalArgumentException("The optimizer " + optimizer.getName() + " cannot be sent to another process.");
+        }
+    }
+
+    private static OrthExtOptimizer ReadOptimizer(DataInputStream in) throws IOException{
+        String name = in.readUTF();
+        switch (name){
+            case "reduced-gradient":
+                return new ReducedGradientOptimizer();
+            case "projected-lbfgs":
+                return new ProjectedLBFGSOptimizer(in.readInt());
+            case "alternating-projection":
+                double slowRate = in.readDouble();
+                OrthExtOptimizer fallback = in.readBoolean() ? ReadOptimizer(in) : null;
+                return new AlternatingProjectionOptimizer(fallback, slowRate);
+            default:
+                throw new IOException("Unknown optimizer " + name + " in the shard job.");
+        }
+    }
+
+    //Getters
+    public boolean isRestricted(){
+        return restricted;
+    }
+
+    public ConvergencePolicy getPolicy(){
+        return policy;
+    }
+
+    public OrthExtOptimizer getOptimizer(){
+        return optimizer;
+    }
+
+    public int getShardIndex(){
+        return shardIndex;
+    }
+
+    public int getShardCount(){
+        return shardCount;
+    }
+
+    public String getAxesHash(){
+        return axesHash;
+    }
+}
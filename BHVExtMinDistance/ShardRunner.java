@@ -0,0 +1,19 @@
+/** Common interface for the ways of running one shard of a sharded computation of ExtensionSpaceDistance (see constructor 8). A runner receives the job of the shard (see ShardJob) and returns when the journal of the shard, with all its pairs, is in journalFile (see ShardWorker). LocalProcessShardRunner runs each shard in a new local process; a runner for remote workers only has to send the job and bring the journal back.
+
+The runners of the shards are called at the same time from different threads.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.io.File;
+import java.io.IOException;
+
+public interface ShardRunner{
+    //Runs the shard until its journal is complete in journalFile; an exception means the shard failed.
+    public void run(ShardJob job, File journalFile) throws IOException, InterruptedException;
+}
@@ -0,0 +1,59 @@
+/** This is intended as the worker of one shard of a sharded computation of ExtensionSpaceDistance (see constructor 8 and ShardJob). It reads the job, builds the extension spaces, computes the pairs of orthant extensions of its shard and appends them to the journal of the shard (see PairJournal). If the journal already has some of the pairs, for example because the worker was restarted, they are not computed again.
+
+It can be run as a process, with the files of the job and the journal as arguments (see LocalProcessShardRunner), or called directly with compute.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+import java.util.*;
+import java.io.*;
+
+public class ShardWorker{
+
+    //Usage: java BHVExtMinDistance.ShardWorker <job file> <journal file>
+    public static void main(String[] args){
+        if (args.length < 2){
+            System.err.println("Error: Please give the files of the shard job and of its journal.");
+            System.exit(2);
+        }
+        try {
+            compute(ShardJob.read(new File(args[0])), new File(args[1]));
+        } catch (Throwable e){
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    //Computes the pairs of the shard that are not yet in the journal, returning the number of pairs computed.
+    public static int compute(ShardJob job, File journalFile) throws IOException{
+        ExtensionSpace[] ESs = job.buildExtensionSpaces();
+        Vector<OrthExt> OEs1 = ESs[0].getOrthExts();
+        Vector<OrthExt> OEs2 = ESs[1].getOrthExts();
+        int oNum2 = OEs2.size();
+        OrthExtSolver solver = new OrthExtSolver(job.isRestricted(), job.getPolicy(), job.getOptimizer());
+
+        int computedCount = 0;
+        try (PairJournal journal = new PairJournal(journalFile, PairJournal.fingerprint(ESs[0], ESs[1], job.isRestricted(), job.getPolicy(), job.getOptimizer()))){
+            BitSet done = new BitSet(OEs1.size()*oNum2);
+            for (PairJournal.Record record : journal.getRecords()){
+                done.set(record.getO1ID()*oNum2 + record.getO2ID());
+            }
+            for (PairScheduler.Block block : job.getBlocks(OEs1, OEs2)){
+                OrthExt OE1 = OEs1.get(block.getK1());
+                for (int k2 = block.getFrom(); k2 < block.getTo(); k2++){
+                    if (!done.get(block.getK1()*oNum2 + k2)){
+                        journal.append(solver.solve(OE1, OEs2.get(k2)));
+                        computedCount++;
+                    }
+                }
+            }
+        }
+        return computedCount;
+    }
+}
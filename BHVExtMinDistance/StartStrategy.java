@@ -0,0 +1,14 @@
+/** How OrthExtDistance chooses the point where the optimization starts.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+public enum StartStrategy{
+    STARTING_TREES, //The starting trees of the orthant extensions (each fixed length split evenly).
+    PAIR_AWARE //The minimum of a quadratic surrogate of the distance between the pair (see PairAwareStart), if it is closer than the starting trees.
+}
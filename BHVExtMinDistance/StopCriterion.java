@@ -0,0 +1,20 @@
+/** Criterion that stopped the optimization for a pair of orthant extensions in OrthExtDistance.
+
+Part of the package BHVExtMinDistance and it is constructed using tools from the packages:
+ * distanceAlg1; PolyAlg; constructed by Megan Owen
+
+Part of the package that computes distances between Extension Spaces.
+*/
+
+package BHVExtMinDistance;
+
+public enum StopCriterion{
+    GRADIENT, //The reduced gradient was small enough and no non-basic variable could improve the distance.
+    OBJECTIVE, //The distance stopped decreasing (relative or absolute objective tolerance) and no non-basic variable could improve it.
+    MAX_ITERATIONS, //The maximum number of iterations of the policy was reached.
+    MAX_GEODESIC_CALLS, //The maximum number of geodesics of the policy was reached.
+    RECLASSIFICATION_FAILED, //A variable should have been reclassified as non-basic but it was not possible.
+    PRUNED, //The distance of the pair was proved to be larger than the cut-off, so the optimization was abandoned.
+    CANCELLED, //The thread computing the pair was interrupted (see PairEvaluationScope), so the optimization was abandoned.
+    IDENTICAL //The orthant extensions of the pair are equivalent (see PairSymmetry), so the distance is zero without any optimization.
+}
@@ -56,6 +56,24 @@ public class orthantGraph{
         }
     }
     
+    //Constructor 2: from an enumeration already computed (see EnumerationStore). axes.get(i) are the axes of the i-th orthant, and its neighbours are adjTargets[adjOffsets[i]] to adjTargets[adjOffsets[i+1]-1], in the order they had in the original graph.
+    public orthantGraph(Vector<Vector<Bipartition>> axes, int[] adjOffsets, int[] adjTargets){
+        adjVertices = new HashMap<>();
+        orderedVertices = new Vector<orthantVertex>();
+        vertexNum = axes.size();
+    
+        for(int i=0; i < vertexNum; i++){
+            orderedVertices.add(new orthantVertex(i, axes.get(i)));
+        }
+        for(int i=0; i < vertexNum; i++){
+            List<orthantVertex> tempAdjList = new ArrayList<orthantVertex>(adjOffsets[i+1] - adjOffsets[i]);
+            for (int p = adjOffsets[i]; p < adjOffsets[i+1]; p++){
+                tempAdjList.add(orderedVertices.get(adjTargets[p]));
+            }
+            adjVertices.put(orderedVertices.get(i), tempAdjList);
+        }
+    }
+    
     //Printers and Getters
     public void Print(Vector<String> cLeafSet){
         System.out.println("This graph has " + this.vertexNum + " vertices: ");
@@ -0,0 +1,101 @@
+import java.util.*;
+import distanceAlg1.*;
+import BHVExtMinDistance.*;
+import java.io.File;
+import java.io.FileNotFoundException;
+
+//Compares the optimizers of OrthExtDistance on the same pair of extension spaces, reporting the distance found, the iterations and geodesics used, and the wall time.
+//Usage: java BenchmarkOptimizers.java <File name> [restricted (true/false)] [policy (screening/fast/standard/certified)] [repetitions]
+//The file has the same format as for DemoExtensionSpaces: first tree, second tree and complete leaf set separated by commas.
+//It only measures: no results are recorded in the repository, and the default optimizer (ReducedGradientOptimizer) is not chosen from them. Whether an optimizer is faster depends on the trees, so run it on your own data before changing the optimizer.
+public class BenchmarkOptimizers{
+
+    public static void main(String[] args){
+        if (args.length < 1){
+            System.out.println("Error: Please give the name of the file with the trees and the leaf set.");
+            System.exit(1);
+        }
+
+        PhyloTree FirstTree = null;
+        PhyloTree SecondTree = null;
+        Vector<String> completeLeafSet = new Vector<String>();
+        try {
+            Scanner myReader = new Scanner(new File(args[0]));
+            FirstTree = new PhyloTree(myReader.nextLine(), false);
+            SecondTree = new PhyloTree(myReader.nextLine(), false);
+            for(String s : myReader.nextLine().split(",")){
+                completeLeafSet.add(s);
+            }
+            myReader.close();
+        } catch (FileNotFoundException e) {
+            System.out.println("An error occurred.");
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        boolean restricted = (args.length > 1) ? Boolean.parseBoolean(args[1]) : false;
+        ConvergencePolicy policy = (args.length > 2) ? ConvergencePolicy.fromName(args[2]) : ConvergencePolicy.certified();
+        if (policy == null){
+            System.out.println("Error: Unknown policy " + args[2]);
+            System.exit(1);
+        }
+        int repetitions = (args.length > 3) ? Integer.parseInt(args[3]) : 3;
+
+        ExtensionSpace firstES = new ExtensionSpace(FirstTree, completeLeafSet, restricted);
+        ExtensionSpace secondES = new ExtensionSpace(SecondTree, completeLeafSet, restricted);
+
+        System.out.println("Orthant pairs: " + (firstES.getOrthExts().size()*secondES.getOrthExts().size()) + ", policy " + policy);
+
+        OrthExtOptimizer[] optimizers = {new ReducedGradientOptimizer(), new ProjectedLBFGSOptimizer(), new AlternatingProjectionOptimizer(null, 1), new AlternatingProjectionOptimizer()};
+
+        for (OrthExtOptimizer optimizer : optimizers){
+            for (StartStrategy startStrategy : StartStrategy.values()){
+                for (boolean warmStart : new boolean[]{false, true}){
+                    //One run to warm up the JVM, and then the timed repetitions.
+                    new ExtensionSpaceDistance(firstES, secondES, restricted, policy, optimizer, warmStart, startStrategy);
+
+                    ExtensionSpaceDistance result = null;
+                    long Start = System.nanoTime();
+                    for (int r = 0; r < repetitions; r++){
+                        result = new ExtensionSpaceDistance(firstES, secondES, restricted, policy, optimizer, warmStart, startStrategy);
+                    }
+                    long End = System.nanoTime();
+                    double TimeMillis = ((double)(End - Start))/1000000/repetitions;
+
+                    double minDistance = Double.POSITIVE_INFINITY;
+                    for (OrthExtDistance OED : result.getOOED()){
+                        minDistance = Math.min(minDistance, OED.getDistance());
+                    }
+
+                    System.out.println("---------------------------------------------------------------");
+                    System.out.println("Optimizer: " + optimizer.getName() + ", start: " + startStrategy + (warmStart ? " (warm started along rotations)" : ""));
+                    System.out.println("   Distance: " + minDistance);
+                    System.out.println("   Total iterations: " + result.getTotalIterations());
+                    System.out.println("   Total geodesics: " + result.getTotalGeodesicCount());
+                    System.out.println("   Stop criteria: " + result.getStopCriterionCounts());
+                    if (warmStart){
+                        System.out.println("   Warm started pairs: " + result.getWarmStartedCount());
+                    }
+                    if (startStrategy == StartStrategy.PAIR_AWARE){
+                        System.out.println("   Pairs started at the pair-aware point: " + result.getPairAwareStartedCount());
+                    }
+                    System.out.println("   Time per run (ms): " + TimeMillis);
+                }
+            }
+        }
+
+        //Branch and bound with the default optimizer, keeping only the shorter distance.
+        new ExtensionSpaceDistance(firstES, secondES, restricted, policy, new ReducedGradientOptimizer(), 1);
+        ExtensionSpaceDistance pruned = null;
+        long Start = System.nanoTime();
+        for (int r = 0; r < repetitions; r++){
+            pruned = new ExtensionSpaceDistance(firstES, secondES, restricted, policy, new ReducedGradientOptimizer(), 1);
+        }
+        long End = System.nanoTime();
+        System.out.println("---------------------------------------------------------------");
+        System.out.println("Optimizer: " + pruned.getOptimizer().getName() + ", branch and bound");
+        System.out.println("   Distance: " + pruned.getDistance());
+        pruned.PrintPruningSummary();
+        System.out.println("   Time per run (ms): " + ((double)(End - Start))/1000000/repetitions);
+    }
+}
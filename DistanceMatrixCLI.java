@@ -0,0 +1,74 @@
+import java.util.*;
+import distanceAlg1.*;
+import BHVExtMinDistance.*;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+//Computes the matrix of distances between the extension spaces of many trees (see DistanceMatrix), building the extension space of each tree once and computing the cells in parallel.
+//Usage: java DistanceMatrixCLI.java <Trees file> <Output file> [dense/condensed] [restricted (true/false)] [policy (screening/fast/standard/certified)] [threads] [complete leaf set, separated by commas]
+//The trees file has one tree in Newick format per line, optionally preceded by its name and a tab. Without a complete leaf set, the union of the leaf sets of the trees is used.
+//The status of every cell is written to <Output file>.status.
+public class DistanceMatrixCLI{
+
+    public static void main(String[] args){
+        if (args.length < 2){
+            System.out.println("Error: Please give the name of the file with the trees and the name of the output file.");
+            System.exit(1);
+        }
+
+        List<PhyloTree> trees = new ArrayList<PhyloTree>();
+        List<String> names = new ArrayList<String>();
+        try {
+            Scanner myReader = new Scanner(new File(args[0]));
+            while (myReader.hasNextLine()){
+                String line = myReader.nextLine().trim();
+                if (line.isEmpty()){
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                names.add((tab >= 0) ? line.substring(0, tab) : "T" + trees.size());
+                trees.add(new PhyloTree((tab >= 0) ? line.substring(tab + 1).trim() : line, false));
+            }
+            myReader.close();
+        } catch (FileNotFoundException e) {
+            System.out.println("An error occurred.");
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        boolean dense = (args.length > 2) ? !args[2].equalsIgnoreCase("condensed") : true;
+        boolean restricted = (args.length > 3) ? Boolean.parseBoolean(args[3]) : false;
+        ConvergencePolicy policy = (args.length > 4) ? ConvergencePolicy.fromName(args[4]) : ConvergencePolicy.certified();
+        if (policy == null){
+            System.out.println("Error: Unknown policy " + args[4]);
+            System.exit(1);
+        }
+        int threads = (args.length > 5) ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        Vector<String> completeLeafSet = null;
+        if (args.length > 6){
+            completeLeafSet = new Vector<String>(Arrays.asList(args[6].split(",")));
+        }
+
+        System.out.println("Computing the distances between " + trees.size() + " trees with " + threads + " threads.");
+        long Start = System.currentTimeMillis();
+        DistanceMatrix matrix = new DistanceMatrix(trees, names, completeLeafSet, restricted, policy, new ReducedGradientOptimizer(), true, threads, new GeodesicCache(1 << 16));
+        long End = System.currentTimeMillis();
+        matrix.PrintSummary();
+        System.out.println("   Time (s): " + ((double)(End - Start))/1000);
+
+        try {
+            if (dense){
+                matrix.writeDense(new File(args[1]));
+            } else {
+                matrix.writeCondensed(new File(args[1]));
+            }
+            matrix.writeStatus(new File(args[1] + ".status"));
+            System.out.println("Successfully wrote the matrix to " + args[1] + " and the status of the cells to " + args[1] + ".status");
+        } catch (IOException e) {
+            System.out.println("An error occurred.");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+import java.util.*;
+import distanceAlg1.*;
+import polyAlg.PolyMain;
+import BHVExtMinDistance.*;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+//Checks of the computations over pairs of orthant extensions against the plain computation of every pair (constructor 2 of ExtensionSpaceDistance), for the trees in TreesForDemo.txt (or the file given as argument, with the same format), in the restricted and unrestricted modes.
+//Usage: java TestOrthantPairs.java [Trees file]
+public class TestOrthantPairs{
+    private static final double TOLERANCE = 0.000001;
+    private static final double GRADIENT_TOLERANCE = 0.0001; //For derivatives estimated by central differences.
+    private static final double STEP = 0.0000001; //Step of the central differences.
+    private static final double SOLVER_TOLERANCE = 0.0001; //For distances found by separate optimizations, which converge only up to the tolerances of the policy.
+    private static int failures = 0;
+    private static int checks = 0;
+
+    public static void main(String[] args){
+        String fileName = (args.length > 0) ? args[0] : "TreesForDemo.txt";
+        PhyloTree FirstTree = null;
+        PhyloTree SecondTree = null;
+        Vector<String> completeLeafSet = new Vector<String>();
+        try {
+            Scanner myReader = new Scanner(new File(fileName));
+            FirstTree = new PhyloTree(myReader.nextLine(), false);
+            SecondTree = new PhyloTree(myReader.nextLine(), false);
+            completeLeafSet.addAll(Arrays.asList(myReader.nextLine().split(",")));
+            myReader.close();
+        } catch (FileNotFoundException e) {
+            System.out.println("An error occurred.");
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        for (boolean restricted : new boolean[]{true, false}){
+            System.out.println("Mode: " + (restricted ? "restricted" : "unrestricted"));
+            ExtensionSpace ES1 = new ExtensionSpace(FirstTree, completeLeafSet, restricted);
+            ExtensionSpace ES2 = new ExtensionSpace(SecondTree, completeLeafSet, restricted);
+            ExtensionSpaceDistance reference = new ExtensionSpaceDistance(ES1, ES2, restricted);
+
+            CheckKernel(restricted, reference);
+            CheckCutoffBound(ES1, ES2, restricted, reference);
+            CheckBranchAndBound(ES1, ES2, restricted, reference);
+            CheckSymmetry(FirstTree, completeLeafSet, restricted);
+            CheckSharded(ES1, ES2, restricted, reference);
+            CheckJournalResume(ES1, ES2, restricted, reference);
+        }
+
+        System.out.println(checks + " checks, " + failures + " failed.");
+        if (failures > 0){
+            System.exit(1);
+        }
+    }
+
+    private static void Check(boolean passed, String description){
+        checks++;
+        if (!passed){
+            failures++;
+            System.out.println("   FAILED: " + description);
+        }
+    }
+
+    private static boolean AtMost(double value, double limit){
+        return value <= limit + TOLERANCE*Math.max(1, Math.abs(limit));
+    }
+
+    //The reference above also uses GeodesicKernel in every optimization, so the kernel is compared here with the geodesics of PolyMain: for every pair, the distance the kernel gives at the final values should be the length of the geodesic between the final trees, and at interior points (every variable positive) the kernel gradient of half the squared distance should match central differences.
+    private static void CheckKernel(boolean restricted, ExtensionSpaceDistance reference){
+        OrthExtSolver solver = new OrthExtSolver(restricted);
+        for (OrthExtDistance OED : reference.getOOED()){
+            OrthExt OE1 = OED.getOrthExt1();
+            OrthExt OE2 = OED.getOrthExt2();
+            String name = "(" + OED.getO1ID() + ", " + OED.getO2ID() + ")";
+            OrthExtPair pair = solver.pair(OE1, OE2);
+
+            double kernelDistance = pair.evaluate(OED.getFinalValues1(), OED.getFinalValues2(), null, null);
+            double GTPDistance = PolyMain.getGeodesic(OED.getFirstTree(), OED.getSecondTree(), null).getDist();
+            Check(Math.abs(kernelDistance - GTPDistance) <= TOLERANCE*Math.max(1, GTPDistance), "kernel distance " + kernelDistance + " instead of " + GTPDistance + " at the final values of the pair " + name);
+
+            double[] even1 = OE1.feasibleValues(new double[OE1.getBackMap().length]);
+            double[] even2 = OE2.feasibleValues(new double[OE2.getBackMap().length]);
+            List<double[][]> points = new ArrayList<double[][]>();
+            points.add(new double[][]{even1, even2});
+            points.add(new double[][]{Halfway(even1, OED.getFinalValues1()), Halfway(even2, OED.getFinalValues2())});
+            for (double[][] point : points){
+                double[] x1 = point[0];
+                double[] x2 = point[1];
+                double[] gradient1 = new double[x1.length];
+                double[] gradient2 = new double[x2.length];
+                double distance = pair.evaluate(x1, x2, gradient1, gradient2);
+                PhyloTree[] trees = pair.buildTrees(x1, x2);
+                double pointDistance = PolyMain.getGeodesic(trees[0], trees[1], null).getDist();
+                Check(Math.abs(distance - pointDistance) <= TOLERANCE*Math.max(1, pointDistance), "kernel distance " + distance + " instead of " + pointDistance + " at an interior point of the pair " + name);
+                for (int v = 0; v < x1.length; v++){
+                    double difference = CentralDifference(pair, x1, x2, x1, v);
+                    Check(Math.abs(gradient1[v] - difference) <= GRADIENT_TOLERANCE*Math.max(1, Math.abs(difference)), "kernel derivative " + gradient1[v] + " instead of " + difference + " for the variable " + v + " of the first tree of the pair " + name);
+                }
+                for (int v = 0; v < x2.length; v++){
+                    double difference = CentralDifference(pair, x1, x2, x2, v);
+                    Check(Math.abs(gradient2[v] - difference) <= GRADIENT_TOLERANCE*Math.max(1, Math.abs(difference)), "kernel derivative " + gradient2[v] + " instead of " + difference + " for the variable " + v + " of the second tree of the pair " + name);
+                }
+            }
+        }
+        System.out.println("   Kernel checked against PolyMain for " + reference.getOOED().size() + " orthant pairs.");
+    }
+
+    //Derivative of half the squared distance of the pair with respect to the variable v of x (which is x1 or x2), by central differences. x is restored before returning.
+    private static double CentralDifference(OrthExtPair pair, double[] x1, double[] x2, double[] x, int v){
+        double value = x[v];
+        x[v] = value + STEP;
+        double forward = pair.evaluate(x1, x2, null, null);
+        x[v] = value - STEP;
+        double backward = pair.evaluate(x1, x2, null, null);
+        x[v] = value;
+        return (forward*forward - backward*backward)/(4*STEP);
+    }
+
+    //The lower bound used to abandon a pair at a cut-off should never be above the distance of the pair, at any feasible point: the starting trees, the final values, the points with the whole fixed length of every row on one variable (where blocks of edges have length zero) and points halfway.
+    private static void CheckCutoffBound(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ExtensionSpaceDistance reference){
+        OrthExtSolver solver = new OrthExtSolver(restricted);
+        for (OrthExtDistance OED : reference.getOOED()){
+            OrthExt OE1 = OED.getOrthExt1();
+            OrthExt OE2 = OED.getOrthExt2();
+            List<double[][]> points = new ArrayList<double[][]>();
+            points.add(new double[][]{OE1.feasibleValues(new double[OE1.getBackMap().length]), OE2.feasibleValues(new double[OE2.getBackMap().length])});
+            points.add(new double[][]{OED.getFinalValues1(), OED.getFinalValues2()});
+            for (boolean first : new boolean[]{true, false}){
+                double[] vertex1 = Vertex(OE1, first);
+                double[] vertex2 = Vertex(OE2, first);
+                points.add(new double[][]{vertex1, vertex2});
+                points.add(new double[][]{vertex1, OED.getFinalValues2()});
+                points.add(new double[][]{OED.getFinalValues1(), vertex2});
+                points.add(new double[][]{Halfway(vertex1, OED.getFinalValues1()), Halfway(vertex2, OED.getFinalValues2())});
+            }
+            for (double[][] point : points){
+                double bound = solver.lowerBoundAt(OE1, OE2, point[0], point[1]);
+                Check(AtMost(bound, OED.getDistance()), "cut-off bound " + bound + " above the distance " + OED.getDistance() + " of the pair (" + OED.getO1ID() + ", " + OED.getO2ID() + ")");
+            }
+        }
+        System.out.println("   Cut-off bounds checked for " + reference.getOOED().size() + " orthant pairs.");
+    }
+
+    //Branch and bound (constructor 4) should find the same topK shorter distances as the exhaustive computation, and the bounds of the pairs should never be above their distances.
+    private static void CheckBranchAndBound(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ExtensionSpaceDistance reference){
+        List<Double> sortedDistances = new ArrayList<Double>();
+        for (OrthExtDistance OED : reference.getOOED()){
+            sortedDistances.add(OED.getDistance());
+        }
+        Collections.sort(sortedDistances);
+
+        int pairCount = reference.getOOED().size();
+        for (int topK : new int[]{1, Math.min(3, pairCount), pairCount}){
+            ExtensionSpaceDistance BB = new ExtensionSpaceDistance(ES1, ES2, restricted, ConvergencePolicy.certified(), new ReducedGradientOptimizer(), topK);
+            Check(Math.abs(BB.getDistance() - reference.getDistance()) <= TOLERANCE*Math.max(1, reference.getDistance()), "branch and bound (topK = " + topK + ") distance " + BB.getDistance() + " instead of " + reference.getDistance());
+            Check(BB.getOOED().size() == topK, "branch and bound (topK = " + topK + ") kept " + BB.getOOED().size() + " pairs");
+            for (int i = 0; i < Math.min(topK, BB.getOOED().size()); i++){
+                double distance = BB.getOOED().get(i).getDistance();
+                Check(Math.abs(distance - sortedDistances.get(i)) <= TOLERANCE*Math.max(1, sortedDistances.get(i)), "branch and bound (topK = " + topK + ") distance " + i + " is " + distance + " instead of " + sortedDistances.get(i));
+            }
+            if (topK == pairCount){
+                CheckSamePairs(BB.getOOED(), reference.getOOED(), "branch and bound with every pair");
+            }
+            for (OrthExtDistance OED : reference.getOOED()){
+                double bound = BB.getLowerBound(OED.getO1ID(), OED.getO2ID());
+                Check(AtMost(bound, OED.getDistance()), "bound " + bound + " above the distance " + OED.getDistance() + " of the pair (" + OED.getO1ID() + ", " + OED.getO2ID() + ")");
+            }
+        }
+        System.out.println("   Branch and bound checked.");
+    }
+
+    //For an extension space against itself, each unordered pair of orthant extensions is optimized once and the mirrored and identical pairs are derived (see PairSymmetry). Every pair should match the one computed directly, and the mirrored pairs should have the same distance.
+    private static void CheckSymmetry(PhyloTree tree, Vector<String> completeLeafSet, boolean restricted){
+        ExtensionSpace ES1 = new ExtensionSpace(tree, completeLeafSet, restricted);
+        ExtensionSpace ES2 = new ExtensionSpace(tree, completeLeafSet, restricted);
+        ExtensionSpaceDistance deduplicated = new ExtensionSpaceDistance(ES1, ES2, restricted);
+        Check(deduplicated.isSymmetric(), "an extension space against itself was not found symmetric");
+        Check(deduplicated.getDistance() <= SOLVER_TOLERANCE, "distance " + deduplicated.getDistance() + " between an extension space and itself");
+
+        PairSymmetry symmetry = new PairSymmetry(ES1.getOrthExts(), ES2.getOrthExts());
+        OrthExtSolver solver = new OrthExtSolver(restricted, ConvergencePolicy.certified(), new ReducedGradientOptimizer());
+        Map<String, Double> distances = new HashMap<String, Double>();
+        for (OrthExtDistance OED : deduplicated.getOOED()){
+            distances.put(OED.getO1ID() + "," + OED.getO2ID(), OED.getDistance());
+        }
+        Check(distances.size() == ES1.getOrthExts().size()*ES2.getOrthExts().size(), "symmetric: " + distances.size() + " distinct pairs instead of " + ES1.getOrthExts().size()*ES2.getOrthExts().size());
+        for (OrthExtDistance OED : deduplicated.getOOED()){
+            double direct = solver.solve(OED.getOrthExt1(), OED.getOrthExt2()).getDistance();
+            Check(Math.abs(OED.getDistance() - direct) <= SOLVER_TOLERANCE*Math.max(1, direct), "symmetric: pair (" + OED.getO1ID() + ", " + OED.getO2ID() + ") at " + OED.getDistance() + " instead of " + direct + " computed directly");
+            int[] mirror = symmetry.getMirror(OED.getO1ID(), OED.getO2ID());
+            Double mirrored = distances.get(mirror[0] + "," + mirror[1]);
+            Check((mirrored != null) && (Math.abs(OED.getDistance() - mirrored) <= TOLERANCE*Math.max(1, mirrored)), "symmetric: pair (" + OED.getO1ID() + ", " + OED.getO2ID() + ") at " + OED.getDistance() + " but its mirror at " + mirrored);
+        }
+        System.out.println("   Symmetric pairs checked.");
+    }
+
+    //The sharded computation, with the shards in local processes, should find the same pairs and distances as the plain one, and a worker whose extension spaces have other orthants should fail.
+    private static void CheckSharded(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ExtensionSpaceDistance reference){
+        try {
+            File workDirectory = Files.createTempDirectory("TestOrthantPairs-shards").toFile();
+            ExtensionSpaceDistance sharded = new ExtensionSpaceDistance(ES1, ES2, restricted, ConvergencePolicy.certified(), new ReducedGradientOptimizer(), 2, new LocalProcessShardRunner(), workDirectory);
+            CheckSamePairs(sharded.getOOED(), reference.getOOED(), "sharded");
+            Check(Math.abs(sharded.getDistance() - reference.getDistance()) <= TOLERANCE*Math.max(1, reference.getDistance()), "sharded distance " + sharded.getDistance() + " instead of " + reference.getDistance());
+
+            ShardJob job = new ShardJob(ES1.getOriginalTree().getNewick(true), ES2.getOriginalTree().getNewick(true), ES1.getCompleteLeafSet(), restricted, ConvergencePolicy.certified(), new ReducedGradientOptimizer(), 0, 1, "other axes");
+            boolean failed = false;
+            try {
+                ShardWorker.compute(job, new File(workDirectory, "mismatch.journal"));
+            } catch (IllegalStateException e){
+                failed = true;
+            }
+            Check(failed, "a shard with other orthant axes was computed");
+        } catch (IOException e){
+            Check(false, "sharded computation: " + e);
+        }
+        System.out.println("   Sharded computation checked.");
+    }
+
+    //A checkpointed computation (constructor 7) whose journal was cut in the middle of its last record, as when the JVM ends during a write, should restore the complete records, compute the lost pair again and give the same pairs as the plain computation.
+    private static void CheckJournalResume(ExtensionSpace ES1, ExtensionSpace ES2, boolean restricted, ExtensionSpaceDistance reference){
+        int pairCount = reference.getOOED().size();
+        try {
+            File journalFile = File.createTempFile("TestOrthantPairs", ".journal");
+            journalFile.delete();
+            ExtensionSpaceDistance first = new ExtensionSpaceDistance(ES1, ES2, restricted, ConvergencePolicy.certified(), new ReducedGradientOptimizer(), journalFile);
+            CheckSamePairs(first.getOOED(), reference.getOOED(), "journaled");
+            Check(first.getRestoredCount() == 0, "a new journal restored " + first.getRestoredCount() + " pairs");
+
+            RandomAccessFile journal = new RandomAccessFile(journalFile, "rw");
+            journal.setLength(journal.length() - 5);
+            journal.close();
+
+            ExtensionSpaceDistance resumed = new ExtensionSpaceDistance(ES1, ES2, restricted, ConvergencePolicy.certified(), new ReducedGradientOptimizer(), journalFile);
+            CheckSamePairs(resumed.getOOED(), reference.getOOED(), "resumed");
+            Check(resumed.getRestoredCount() == pairCount - 1, "the truncated journal restored " + resumed.getRestoredCount() + " pairs instead of " + (pairCount - 1));
+            Check(Math.abs(resumed.getDistance() - reference.getDistance()) <= TOLERANCE*Math.max(1, reference.getDistance()), "resumed distance " + resumed.getDistance() + " instead of " + reference.getDistance());
+
+            ExtensionSpaceDistance complete = new ExtensionSpaceDistance(ES1, ES2, restricted, ConvergencePolicy.certified(), new ReducedGradientOptimizer(), journalFile);
+            Check(complete.getRestoredCount() == pairCount, "the repaired journal restored " + complete.getRestoredCount() + " pairs instead of " + pairCount);
+            CheckSamePairs(complete.getOOED(), reference.getOOED(), "fully restored");
+            journalFile.delete();
+        } catch (IOException e){
+            Check(false, "journaled computation: " + e);
+        }
+        System.out.println("   Journal resume checked.");
+    }
+
+    //Both lists should have the same pairs of orthants with the same distances.
+    private static void CheckSamePairs(List<OrthExtDistance> found, List<OrthExtDistance> expected, String what){
+        Map<String, Double> expectedDistances = new HashMap<String, Double>();
+        for (OrthExtDistance OED : expected){
+            expectedDistances.put(OED.getO1ID() + "," + OED.getO2ID(), OED.getDistance());
+        }
+        Check(found.size() == expected.size(), what + ": " + found.size() + " pairs instead of " + expected.size());
+        for (OrthExtDistance OED : found){
+            Double distance = expectedDistances.get(OED.getO1ID() + "," + OED.getO2ID());
+            Check((distance != null) && (Math.abs(OED.getDistance() - distance) <= TOLERANCE*Math.max(1, distance)), what + ": pair (" + OED.getO1ID() + ", " + OED.getO2ID() + ") at " + OED.getDistance() + " instead of " + distance);
+        }
+    }
+
+    //Point of the orthant extension with the whole fixed length of each row on its first (or last) variable.
+    private static double[] Vertex(OrthExt OE, boolean first){
+        double[] x = new double[OE.getBackMap().length];
+        for (int r = 0; r < OE.getFixedLengths().length; r++){
+            Vector<Integer> row = OE.getMapList().get(r);
+            if (!row.isEmpty()){
+                x[first ? row.get(0) : row.get(row.size() - 1)] = OE.getFixedLengths(r);
+            }
+        }
+        return OE.feasibleValues(x);
+    }
+
+    private static double[] Halfway(double[] x, double[] y){
+        double[] z = new double[x.length];
+        for (int v = 0; v < x.length; v++){
+            z[v] = (x[v] + y[v])/2;
+        }
+        return z;
+    }
+}
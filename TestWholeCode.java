@@ -58,7 +58,7 @@ public class TestWholeCode{
             testDistance.PrintSummary(true);    
         }
         
-        Map<Integer, List<Integer>> TestJointNNImap = testDistance.JointNNI(startES, endES);
+        Map<Integer, List<Integer>> TestJointNNImap = testDistance.JointNNI(startES, endES).toMap();
         
         System.out.println("The joint NNI map: ");
         